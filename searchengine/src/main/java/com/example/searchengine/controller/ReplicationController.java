@@ -0,0 +1,51 @@
+package com.example.searchengine.controller;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.searchengine.service.ReplicationService;
+
+/**
+ * ReplicationController.java
+ * Published generations of a primary (replication.role=primary), pulled by read replicas:
+ * the newest generation's manifest, then each file it lists. Not found in the other roles.
+ */
+@RestController
+public class ReplicationController {
+    private final ReplicationService replicationService;
+
+    public ReplicationController(ReplicationService replicationService) {
+        this.replicationService = replicationService;
+    }
+
+    @GetMapping(value = ReplicationService.LATEST_PATH, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> latest() {
+        try {
+            byte[] manifest = replicationService.getLatestManifest();
+            return manifest == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(manifest);
+        } catch (IOException e) {
+            System.err.println("Replication manifest failed: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping(value = ReplicationService.FILE_PATH, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Resource> file(@RequestParam long generation, @RequestParam String path) {
+        try {
+            Path file = replicationService.getPublishedFile(generation, path);
+            return file == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(new FileSystemResource(file));
+        } catch (IOException e) {
+            System.err.println("Replication file failed: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+}
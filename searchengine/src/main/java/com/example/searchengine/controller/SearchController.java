@@ -14,6 +14,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.searchengine.model.PageResult;
+import com.example.searchengine.service.DistributedSearchService;
 import com.example.searchengine.service.SearchService;
 import com.example.searchengine.service.SoftBooleanSearchService;
 
@@ -28,8 +29,13 @@ public class SearchController {
     @Autowired
     private SoftBooleanSearchService softBooleanSearchService;
 
+    @Autowired
+    private DistributedSearchService distributedSearchService;
+
     /**
      * Search with query
+     * A coordinator searches its shard nodes (content score only, usePageRank is ignored);
+     * X-Partial-Results: true then means some of them were left out (listed in X-Failed-Shards)
      * @param query
      * @return list of page results
      */
@@ -39,6 +45,13 @@ public class SearchController {
         @RequestParam(required = false, defaultValue = "true") boolean usePageRank) {
         try {
             System.out.println("Searching for: " + query + ", usePageRank: " + usePageRank);
+            if (distributedSearchService.isCoordinator()) {
+                DistributedSearchService.Result distributed = distributedSearchService.search(query); // no PageRank across nodes
+                return ResponseEntity.ok()
+                    .header("X-Partial-Results", String.valueOf(distributed.isPartial()))
+                    .header("X-Failed-Shards", String.join(",", distributed.failedNodes))
+                    .body(distributed.results);
+            }
             List<PageResult> results = searchService.search(query, usePageRank);
             return ResponseEntity.ok(results);
         } catch (IOException e) {
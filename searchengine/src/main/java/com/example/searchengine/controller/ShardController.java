@@ -0,0 +1,60 @@
+package com.example.searchengine.controller;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.searchengine.service.SearchService;
+import com.example.searchengine.service.ShardProtocol;
+
+/**
+ * ShardController.java
+ * Internal endpoints of a shard node (search.role=shard), called by the coordinator;
+ * bodies are ShardProtocol messages. Not found in the other roles.
+ */
+@RestController
+public class ShardController {
+    public static final String ROLE_SHARD = "shard";
+
+    private final SearchService searchService;
+    private final boolean enabled;
+
+    public ShardController(SearchService searchService, @Value("${search.role:standalone}") String role) {
+        this.searchService = searchService;
+        this.enabled = ROLE_SHARD.equalsIgnoreCase(role.trim());
+    }
+
+    // phase 1: page count and doc freqs of the query terms on this node (and its vocabulary if asked)
+    @PostMapping(value = ShardProtocol.STATS_PATH, consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE,
+        produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> stats(@RequestBody byte[] body) {
+        if (!enabled) return ResponseEntity.notFound().build();
+        try {
+            ShardProtocol.StatsRequest request = ShardProtocol.decodeStatsRequest(body);
+            return ResponseEntity.ok(ShardProtocol.encodeStats(searchService.termStats(request)));
+        } catch (IOException e) {
+            System.err.println("Shard stats failed: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // phase 2: this node's top results with the global idf and doc norms
+    @PostMapping(value = ShardProtocol.SEARCH_PATH, consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE,
+        produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> search(@RequestBody byte[] body) {
+        if (!enabled) return ResponseEntity.notFound().build();
+        try {
+            ShardProtocol.SearchRequest request = ShardProtocol.decodeSearchRequest(body);
+            return ResponseEntity.ok(ShardProtocol.encodeResults(searchService.search(request)));
+        } catch (IOException e) {
+            System.err.println("Shard search failed: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
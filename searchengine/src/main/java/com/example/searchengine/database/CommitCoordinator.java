@@ -0,0 +1,145 @@
+package com.example.searchengine.database;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * CommitCoordinator.java
+ * Single place where the JDBM transaction (and the segment flush that goes with it) is committed.
+ * Callers ask for a commit at a durability level instead of committing themselves:
+ *   SYNC     commit now, on the calling thread
+ *   BATCHED  group commit: once maxBatch requests are pending, or maxDelay after the first one
+ *   ASYNC    only the background flusher commits, maxDelay after the first pending request; the
+ *            request itself takes no lock, so a search caching its results never waits on a writer
+ * so at most maxDelay (ASYNC) or maxBatch requests / maxDelay (BATCHED) of work is lost on a crash.
+ * Writers hold the write lock for a whole unit of work; commits take it too, so a batch
+ * never ends in the middle of a page. maxDelay is therefore met up to the units of work queued
+ * ahead of the flusher: it waits its turn on the (fair) lock rather than skipping a busy tick,
+ * and a BATCHED commit that finds its oldest pending request overdue commits right away.
+ */
+public class CommitCoordinator implements Closeable {
+
+    public enum Durability { SYNC, BATCHED, ASYNC }
+
+    // the actual commit
+    public interface Committer {
+        void commit() throws IOException;
+    }
+
+    private final Committer committer;
+    private final Durability durability; // level of commit()
+    private final int maxBatch;
+    private final long maxDelayMillis;
+    private final ReentrantLock writeLock = new ReentrantLock(true); // fair: a writer relocking can't starve the flusher
+    private final ScheduledExecutorService flusher;
+
+    // requests since the last commit; ASYNC ones are counted without the write lock
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong firstPendingAt = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+
+    public CommitCoordinator(Committer committer, Durability durability, int maxBatch, long maxDelayMillis) {
+        this.committer = committer;
+        this.durability = durability;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxDelayMillis = Math.max(1, maxDelayMillis);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "commit-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tick = Math.max(1, this.maxDelayMillis / 4);
+        flusher.scheduleWithFixedDelay(this::flushIfDue, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    public ReentrantLock getWriteLock() {
+        return writeLock;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    // commit at the configured level
+    public void commit() throws IOException {
+        commit(durability);
+    }
+
+    // the caller's writes are done: a request counted here is covered by the next commit
+    public void commit(Durability level) throws IOException {
+        if (pending.incrementAndGet() == 1) firstPendingAt.set(System.currentTimeMillis());
+        if (level == Durability.ASYNC) return; // the flusher commits it
+        writeLock.lock();
+        try {
+            if (level == Durability.SYNC || pending.get() >= maxBatch || overdue()) {
+                flush();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // commit everything written so far, pending or not
+    public void flush() throws IOException {
+        writeLock.lock();
+        try {
+            // taken before the commit: a request counted meanwhile may be committed twice, never lost
+            long first = firstPendingAt.get();
+            int flushed = pending.getAndSet(0);
+            try {
+                committer.commit();
+            } catch (IOException | RuntimeException e) {
+                if (flushed > 0 && pending.getAndAdd(flushed) == 0) firstPendingAt.set(first); // still pending
+                throw e;
+            }
+            commits.incrementAndGet();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private boolean overdue() {
+        return pending.get() > 0 && System.currentTimeMillis() - firstPendingAt.get() >= maxDelayMillis;
+    }
+
+    private void flushIfDue() {
+        if (!overdue()) return; // the lock is only taken for a commit
+        try {
+            writeLock.lockInterruptibly(); // a writer mid-unit: wait for it to finish
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // shutting down; close() flushes
+            return;
+        }
+        try {
+            if (overdue()) {
+                flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Background commit failed: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // stop the flusher and commit what is pending (the one flush point on shutdown)
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
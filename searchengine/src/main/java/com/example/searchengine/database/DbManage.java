@@ -1,16 +1,50 @@
 package com.example.searchengine.database;
 
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.example.searchengine.database.index.DocStats;
+import com.example.searchengine.database.index.DocValues;
+import com.example.searchengine.database.index.IndexSnapshot;
+import com.example.searchengine.database.index.LinkGraph;
+import com.example.searchengine.database.index.PostingCursor;
+import com.example.searchengine.database.index.Segment;
+import com.example.searchengine.database.index.SegmentedIndex;
+import com.example.searchengine.database.index.ShardedIndex;
+import com.example.searchengine.database.index.StaticScores;
+import com.example.searchengine.database.index.TermDictionary;
+import com.example.searchengine.database.serializer.DoubleSerializer;
+import com.example.searchengine.database.serializer.IntListSerializer;
+import com.example.searchengine.database.serializer.KeywordListSerializer;
+import com.example.searchengine.database.serializer.IndexMetadataSerializer;
+import com.example.searchengine.database.serializer.IntegerSerializer;
+import com.example.searchengine.database.serializer.PageInfoSerializer;
+import com.example.searchengine.database.serializer.RecordSerializer;
+import com.example.searchengine.database.serializer.StringSerializer;
+import com.example.searchengine.model.KeywordFrequency;
 import com.example.searchengine.model.PageInfo;
 import com.example.searchengine.model.PageResult;
 import com.example.searchengine.model.Posting;
@@ -24,61 +58,110 @@ import jdbm.htree.HTree;
  * DbManage.java
  * Manage all the jdbm database operations
  * create, access, and update the jdbm tables
+ * Searches read a pinned IndexSnapshot; every commit or rebuild that changes the
+ * index publishes a new one (see publishSnapshot)
+ * On a read replica the store is a shipped generation: nothing is written, and
+ * installGeneration swaps in the next one
  */
 
 @Service
-public class DbManage {
+public class DbManage implements DisposableBean {
     private final RecordManagerService recordManagerService;
+    private final CommitCoordinator commitCoordinator; // every commit goes through it
+    private final boolean readOnly; // read replica (see ReplicationService)
 
 
-    private HTree pageMap; // mapping table: URL -> page id
-    private HTree pageidMap; // mapping table: page id -> URL
+    private SerializedHTree pageMap; // mapping table: URL -> page id
+    private SerializedHTree pageidMap; // mapping table: page id -> URL
     int pageidCounter = 0; // keep track of the page id
-
-    private HTree pageIndex; // page ID -> page info
-
-    private HTree parentChildMap; // mapping table: parent page id -> list of child page id
-    private HTree childParentMap; // mapping table: child page id -> parent page id
-
-    private HTree wordMap; // mapping table: word -> word id
-    private HTree wordidMap; // mapping table: word id -> word
+    private int indexedPageCount = 0; // pages in pageIndex
+    private long totalTokens = 0; // body + title tokens of the indexed pages
+    private long generation = 0; // index generation, bumped by each commit that changed something
+    private volatile boolean dirty = false; // index changed since the last commit
+    private static final String METADATA_RECORD = "indexMetadata";
+    private final IndexMetadataSerializer metadataSerializer = new IndexMetadataSerializer();
+
+    private SerializedHTree pageIndex; // page ID -> page info
+    private SerializedHTree keywordSummary; // page ID -> top body keywords (resolved words)
+    public static final int KEYWORD_SUMMARY_SIZE = 20;
+
+    private SerializedHTree parentChildMap; // mapping table: parent page id -> list of child page id
+    private SerializedHTree childParentMap; // mapping table: child page id -> parent page id
+    private volatile LinkGraph linkGraph = LinkGraph.EMPTY; // compressed copy of both maps, rebuilt after a crawl
+    private StoreTables pageTables; // the page tables above, as handed to snapshots
+
+    private SerializedHTree wordMap; // mapping table: word -> word id
+    private SerializedHTree wordidMap; // mapping table: word id -> word
+    private volatile TermDictionary termDictionary = TermDictionary.EMPTY; // in-heap copy of wordMap/wordidMap
+    private final Map<String, Integer> newWords = new ConcurrentHashMap<>(); // words not in termDictionary yet
+    private final Map<Integer, String> newWordIds = new ConcurrentHashMap<>();
     int wordidCounter = 0; // keep track of the word id
 
-    private HTree bodyIndex; // word ID -> list of posting
-    private HTree titleIndex; // word ID -> list of posting
+    private ShardedIndex bodySegments; // word ID -> postings, compressed segments per shard
+    private ShardedIndex titleSegments; // word ID -> postings, compressed segments per shard
+    private final int configuredShards; // shard count of a new index
+    private volatile DocStats docStats = DocStats.EMPTY; // doc id -> maxTf, tf-idf norm
+    private volatile DocValues docValues = DocValues.EMPTY; // doc id -> url, title, size, last modified
 
-    private HTree pageRank; // page id -> page rank score
+    private SerializedHTree pageRank; // page id -> page rank score
+    private volatile StaticScores staticScores = StaticScores.EMPTY; // doc id -> page rank / max page rank
+
+    private final AtomicReference<IndexSnapshot> snapshot = new AtomicReference<>(); // what new searches read
+    private final Set<IndexSnapshot> liveSnapshots = ConcurrentHashMap.newKeySet(); // published or still pinned
+    private final List<Segment> retiredSegments = new ArrayList<>(); // merged away, deleted once no snapshot holds them
+    private final List<RetiredStore> retiredStores = new ArrayList<>(); // replica: replaced generations, closed once no snapshot reads them
 
     private HTree searchCache; // For storing cached search results
-    private HTree cacheMetadata; // For storing cache metadata (access times, frequencies)
+    private SerializedHTree cacheMetadata; // For storing cache metadata (access times, frequencies)
     private final int CACHE_SIZE = 10; // Maximum number of cached searches
+    private final Object cacheLock = new Object(); // cache tables are used by search threads and cleared on publish
 
 
-    public DbManage(RecordManagerService recordManagerService) throws IOException {
+    public DbManage(RecordManagerService recordManagerService,
+            @Value("${db.durability:batched}") String durability,
+            @Value("${db.commit.max-batch:10}") int maxBatch,
+            @Value("${db.commit.max-delay-ms:1000}") long maxDelayMillis,
+            @Value("${index.shards:0}") int shards) throws IOException {
         this.recordManagerService = recordManagerService;
+        this.readOnly = recordManagerService.isReplica();
+        this.configuredShards = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        this.commitCoordinator = new CommitCoordinator(this::commitNow,
+            CommitCoordinator.Durability.valueOf(durability.trim().toUpperCase()), maxBatch, maxDelayMillis);
         initializeTables();
     }
     
     // Initialize or recreate the tables
     private void initializeTables() throws IOException {
        // Initialize or load the tables
-       pageMap = recordManagerService.getOrCreateHTree("pageMap"); // String -> Integer
-       pageidMap = recordManagerService.getOrCreateHTree("pageidMap"); // Integer -> String
-       pageidCounter = getTableSize(pageMap);
-
-       pageIndex = recordManagerService.getOrCreateHTree("pageIndex"); // int -> pageInfo
-       parentChildMap = recordManagerService.getOrCreateHTree("parentChildMap"); // int -> List<Integer>
-       childParentMap = recordManagerService.getOrCreateHTree("childParentMap"); // int -> List<Integer>
-
-       wordMap = recordManagerService.getOrCreateHTree("wordMap"); // String -> Integer
-       wordidMap = recordManagerService.getOrCreateHTree("wordidMap"); // Integer -> String
-
-       bodyIndex = recordManagerService.getOrCreateHTree("bodyIndex"); // word ID -> list of posting
-       titleIndex = recordManagerService.getOrCreateHTree("titleIndex"); // word ID -> list of posting
-       pageRank = recordManagerService.getOrCreateHTree("pageRank"); // page ID -> page rank score
+       pageMap = recordManagerService.getOrCreateHTree("pageMap", new IntegerSerializer()); // String -> Integer
+       pageidMap = recordManagerService.getOrCreateHTree("pageidMap", new StringSerializer()); // Integer -> String
+
+       pageIndex = recordManagerService.getOrCreateHTree("pageIndex", new PageInfoSerializer()); // int -> pageInfo
+       keywordSummary = recordManagerService.getOrCreateHTree("keywordSummary", new KeywordListSerializer()); // int -> List<KeywordFrequency>
+       parentChildMap = recordManagerService.getOrCreateHTree("parentChildMap", new IntListSerializer()); // int -> List<Integer>
+       childParentMap = recordManagerService.getOrCreateHTree("childParentMap", new IntListSerializer()); // int -> List<Integer>
+       pageTables = new StoreTables();
+
+       wordMap = recordManagerService.getOrCreateHTree("wordMap", new IntegerSerializer()); // String -> Integer
+       wordidMap = recordManagerService.getOrCreateHTree("wordidMap", new StringSerializer()); // Integer -> String
+
+       int shardCount = ShardedIndex.shardCount(recordManagerService.getIndexDirectory(), configuredShards);
+       bodySegments = new ShardedIndex(recordManagerService.getIndexDirectory(), "body", shardCount);
+       titleSegments = new ShardedIndex(recordManagerService.getIndexDirectory(), "title", shardCount);
+       bodySegments.setRetirer(this::retireSegments);
+       titleSegments.setRetirer(this::retireSegments);
+       importLegacyIndex(); // existing database from before the segment format
+       pageRank = recordManagerService.getOrCreateHTree("pageRank", new DoubleSerializer()); // page ID -> page rank score
 
        searchCache = recordManagerService.getOrCreateHTree("searchCache");
-       cacheMetadata = recordManagerService.getOrCreateHTree("cacheMetadata");
+       cacheMetadata = recordManagerService.getOrCreateHTree("cacheMetadata", new CacheMetadataSerializer());
+
+       loadMetadata();
+       loadTermDictionary();
+       loadDocColumns();
+       loadLinkGraph();
+       loadStaticScores();
+       publishSnapshot();
     }
 
     // Cache entry class (for cache data structure)
@@ -94,8 +177,22 @@ public class DbManage {
         }
     }
 
-    private int getTableSize(HTree hashTable) throws IOException { // get the id counter (for mapping table)
-        FastIterator iter = hashTable.keys();
+    private static class CacheMetadataSerializer extends RecordSerializer<CacheMetadata> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void write(DataOutputStream out, CacheMetadata metadata) throws IOException {
+            out.writeLong(metadata.lastAccessed);
+            out.writeInt(metadata.frequency);
+        }
+
+        @Override
+        protected CacheMetadata read(DataInputStream in) throws IOException {
+            return new CacheMetadata(in.readLong(), in.readInt());
+        }
+    }
+
+    private int getTableSize(FastIterator iter) throws IOException { // get the id counter (for mapping table)
         int size = 0;
         while (iter.next() != null) {
             size++;
@@ -105,24 +202,364 @@ public class DbManage {
 
     // Recreate the database after deletion
     public void recreateDatabase() throws IOException {
+        checkWritable();
+        commitCoordinator.getWriteLock().lock(); // no background commit while the record manager is replaced
+        try {
+            recreateTables();
+        } finally {
+            commitCoordinator.getWriteLock().unlock();
+        }
+    }
+
+    private void recreateTables() throws IOException {
+        deleteRetiredSegments();
+        bodySegments.clear();
+        titleSegments.clear();
+        Files.deleteIfExists(termDictionaryFile());
+        Files.deleteIfExists(docStatsFile());
+        Files.deleteIfExists(docValuesFile());
+        Files.deleteIfExists(linkGraphFile());
+        Files.deleteIfExists(staticScoresFile());
         recordManagerService.reinitializeRecordManager(); // Reinitialize the RecordManager
         initializeTables(); // Reinitialize the tables
     }
 
+    // counters and corpus stats from the metadata record (O(1)); older databases are scanned once
+    private void loadMetadata() throws IOException {
+        IndexMetadata metadata = (IndexMetadata) recordManagerService.getNamedRecord(METADATA_RECORD, metadataSerializer);
+        if (metadata == null) {
+            metadata = scanMetadata(); // on a replica only the empty store before the first generation has none
+            if (!readOnly) {
+                recordManagerService.putNamedRecord(METADATA_RECORD, metadata, metadataSerializer);
+                recordManagerService.commit();
+            }
+        }
+        pageidCounter = metadata.pageidCounter;
+        wordidCounter = metadata.wordidCounter;
+        indexedPageCount = metadata.indexedPageCount;
+        totalTokens = metadata.totalTokens;
+        generation = metadata.generation;
+    }
+
+    private IndexMetadata scanMetadata() throws IOException {
+        int pages = getTableSize(pageMap.keys());
+
+        int maxWordId = -1;
+        FastIterator wordIter = wordidMap.keys();
+        Integer wordId;
+        while ((wordId = (Integer) wordIter.next()) != null) {
+            maxWordId = Math.max(maxWordId, wordId);
+        }
+
+        int indexed = 0;
+        long tokens = 0;
+        FastIterator pageIter = pageIndex.keys();
+        Integer pageId;
+        while ((pageId = (Integer) pageIter.next()) != null) {
+            indexed++;
+            tokens += countTokens((PageInfo) pageIndex.get(pageId));
+        }
+        return new IndexMetadata(pages, maxWordId + 1, indexed, tokens, 0);
+    }
+
+    private static long countTokens(PageInfo pageInfo) {
+        long tokens = 0;
+        if (pageInfo.bodyWordList != null) {
+            for (int freq : pageInfo.bodyWordList.values()) tokens += freq;
+        }
+        if (pageInfo.titleWordList != null) {
+            for (int freq : pageInfo.titleWordList.values()) tokens += freq;
+        }
+        return tokens;
+    }
+
+    /****************** Bulk load ***********************/
+    // an initial crawl into an empty database writes to a staging store without transaction log;
+    // the live store only changes when finishBulkLoad swaps the complete staging store in
+    public boolean canBulkLoad() {
+        return !readOnly && pageidCounter == 0 && !recordManagerService.isBulkLoading();
+    }
+
+    public void beginBulkLoad() throws IOException {
+        checkWritable();
+        commitCoordinator.getWriteLock().lock();
+        try {
+            commitCoordinator.flush();
+            deleteRetiredSegments();
+            bodySegments.close();
+            titleSegments.close();
+            recordManagerService.beginBulkLoad();
+            initializeTables();
+            System.out.println("Bulk load: writing to a staging store without transactions");
+        } finally {
+            commitCoordinator.getWriteLock().unlock();
+        }
+    }
+
+    // the per-crawl derived files (term dictionary, doc columns, link graph) are built into the
+    // staging store first, so the swap installs a complete index
+    public void finishBulkLoad() throws IOException {
+        commitCoordinator.getWriteLock().lock();
+        try {
+            if (!recordManagerService.isBulkLoading()) return;
+            commitCoordinator.flush();
+            rebuildTermDictionary();
+            rebuildDocColumns();
+            rebuildLinkGraph();
+            deleteRetiredSegments();
+            bodySegments.close();
+            titleSegments.close();
+            recordManagerService.finishBulkLoad();
+            initializeTables();
+            System.out.println("Bulk load: staging store installed");
+        } finally {
+            commitCoordinator.getWriteLock().unlock();
+        }
+    }
+
+    public void abortBulkLoad() throws IOException {
+        commitCoordinator.getWriteLock().lock();
+        try {
+            if (!recordManagerService.isBulkLoading()) return;
+            deleteRetiredSegments();
+            bodySegments.close();
+            titleSegments.close();
+            boolean installed = recordManagerService.abortBulkLoad();
+            initializeTables();
+            System.out.println(installed ? "Bulk load: complete staging store installed" : "Bulk load: staging store dropped");
+        } finally {
+            commitCoordinator.getWriteLock().unlock();
+        }
+    }
+
+    // request a commit at the configured durability (sync, batched or async)
     public void commit() throws IOException {
+        commitCoordinator.commit();
+    }
+
+    public void commit(CommitCoordinator.Durability durability) throws IOException {
+        commitCoordinator.commit(durability);
+    }
+
+    // held by writers for a unit of work (e.g. one page) so commits fall between units
+    public ReentrantLock getWriteLock() {
+        return commitCoordinator.getWriteLock();
+    }
+
+    // flush buffered postings to new segments, then write the metadata record in the same JDBM transaction;
+    // searches see the new pages once the commit is done and the snapshot holding them is published
+    private void commitNow() throws IOException {
+        if (readOnly) return; // nothing is written on a replica
+        bodySegments.flush();
+        titleSegments.flush();
+        boolean changed = dirty;
+        if (changed) {
+            dirty = false;
+            generation++;
+            recordManagerService.putNamedRecord(METADATA_RECORD,
+                new IndexMetadata(pageidCounter, wordidCounter, indexedPageCount, totalTokens, generation), metadataSerializer);
+        }
         recordManagerService.commit();
+        if (changed) publishSnapshot();
+    }
+
+    /****************** Snapshots ***********************/
+    // pin the current snapshot; release it (try-with-resources) when the search is done
+    public IndexSnapshot acquireSnapshot() {
+        while (true) {
+            IndexSnapshot current = snapshot.get();
+            if (current.pin()) return current;
+            // replaced and released between get and pin: read the new one
+        }
+    }
+
+    // the snapshot new searches get (may be newer than a pinned one)
+    public IndexSnapshot getCurrentSnapshot() {
+        return snapshot.get();
+    }
+
+    // swap in a snapshot of the flushed segments and current columns; the previous one
+    // is reclaimed once its last search releases it. Cached results are of the old one
+    private void publishSnapshot() {
+        IndexSnapshot next = new IndexSnapshot(generation, pageidCounter,
+            bodySegments.getSegments(), titleSegments.getSegments(),
+            docStats, docValues, linkGraph, staticScores, this::lookupWordId, pageTables, this::reclaimSnapshot);
+        liveSnapshots.add(next);
+        IndexSnapshot previous;
+        synchronized (cacheLock) {
+            previous = snapshot.getAndSet(next);
+            if (previous != null && !readOnly) clearCacheEntries();
+        }
+        if (previous != null) previous.release();
+    }
+
+    private void reclaimSnapshot(IndexSnapshot released) {
+        liveSnapshots.remove(released);
+        reclaimSegments();
+        closeRetiredStores();
+    }
+
+    private void retireSegments(List<Segment> segments) {
+        synchronized (retiredSegments) {
+            retiredSegments.addAll(segments);
+        }
+        reclaimSegments();
+    }
+
+    // delete the retired segments no live snapshot holds; a failed delete is retried next time
+    private void reclaimSegments() {
+        synchronized (retiredSegments) {
+            retiredSegments.removeIf(segment -> {
+                for (IndexSnapshot live : liveSnapshots) {
+                    if (live.holds(segment)) return false;
+                }
+                try {
+                    SegmentedIndex.delete(List.of(segment));
+                    return true;
+                } catch (IOException e) {
+                    System.err.println("Could not delete retired segment " + segment.getFile() + ": " + e.getMessage());
+                    return false;
+                }
+            });
+        }
+    }
+
+    // before the segment files move or their names are reused (recreate, bulk load switch);
+    // a search still pinning them may fail to read positions
+    private void deleteRetiredSegments() throws IOException {
+        synchronized (retiredSegments) {
+            SegmentedIndex.delete(retiredSegments);
+            retiredSegments.clear();
+        }
+    }
+
+    /****************** Replication ***********************/
+    // the crawl entry points and every table write are refused on a replica
+    private void checkWritable() {
+        if (readOnly) throw new IllegalStateException("Read-only replica: the store is replaced by shipped generations");
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    // primary: copy the committed store into target if its generation differs from `previous`.
+    // Only generations whose doc columns, link graph and static scores are current are exported (not
+    // those committed mid-crawl or before PageRank ran), so a replica never has to rebuild them.
+    // Returns the generation, -1 if skipped
+    public long exportGeneration(long previous, Path target) throws IOException {
+        commitCoordinator.getWriteLock().lock();
+        try {
+            if (readOnly || recordManagerService.isBulkLoading()) return -1;
+            if (generation == previous && !dirty) return -1;
+            commitCoordinator.flush();
+            if (generation == previous || !docColumnsCurrent() || !linkGraphCurrent() || !staticScoresCurrent()) return -1;
+            rebuildTermDictionary(); // words of the last crawl, so the replica's dictionary is complete
+            recordManagerService.exportStore(target);
+            return generation;
+        } finally {
+            commitCoordinator.getWriteLock().unlock();
+        }
+    }
+
+    // a replaced replica store with the snapshots that may still read it
+    private static class RetiredStore {
+        final Set<IndexSnapshot> readers;
+        final ShardedIndex body;
+        final ShardedIndex title;
+        final Closeable store;
+
+        RetiredStore(Set<IndexSnapshot> readers, ShardedIndex body, ShardedIndex title, Closeable store) {
+            this.readers = readers;
+            this.body = body;
+            this.title = title;
+            this.store = store;
+        }
+    }
+
+    // replica: switch to a verified generation directory. Tables and index are reopened on it and
+    // a new snapshot is published; searches still pinning an older one keep reading the previous
+    // store, which is closed and deleted after the last of them is done
+    public void installGeneration(Path generationDirectory) throws IOException {
+        checkReplica();
+        commitCoordinator.getWriteLock().lock();
+        try {
+            Set<IndexSnapshot> readers = new HashSet<>(liveSnapshots);
+            ShardedIndex previousBody = bodySegments;
+            ShardedIndex previousTitle = titleSegments;
+            Closeable previousStore = recordManagerService.switchReplicaStore(generationDirectory);
+            try {
+                initializeTables();
+            } catch (IOException | RuntimeException e) {
+                // not servable as shipped: back to the previous generation, the new one is deleted
+                if (bodySegments != previousBody) bodySegments.close();
+                if (titleSegments != previousTitle) titleSegments.close();
+                recordManagerService.revertReplicaStore();
+                initializeTables();
+                previousStore = () -> { }; // served again; its segments reopened, the old ones retired
+                throw e;
+            } finally {
+                synchronized (retiredStores) {
+                    retiredStores.add(new RetiredStore(readers, previousBody, previousTitle, previousStore));
+                }
+            }
+        } finally {
+            commitCoordinator.getWriteLock().unlock();
+        }
+        closeRetiredStores();
+    }
+
+    // a shipped generation is served as verified against its manifest: derived files it lacks
+    // are not regenerated on the replica, the install fails instead
+    private IOException notShipped(String what) {
+        return new IOException("Generation " + generation + " was shipped without current " + what);
+    }
+
+    private void checkReplica() {
+        if (!readOnly) throw new IllegalStateException("Only a read replica installs shipped generations");
+    }
+
+    private void closeRetiredStores() {
+        synchronized (retiredStores) {
+            retiredStores.removeIf(retired -> {
+                for (IndexSnapshot reader : retired.readers) {
+                    if (liveSnapshots.contains(reader)) return false;
+                }
+                try {
+                    retired.body.close();
+                    retired.title.close();
+                    retired.store.close();
+                } catch (IOException e) {
+                    System.err.println("Could not close a replaced generation: " + e.getMessage());
+                }
+                return true;
+            });
+        }
+    }
+
+    // shutdown: the one final flush of pending commits
+    @Override
+    public void destroy() throws IOException {
+        close();
     }
 
     public void close() throws IOException {
+        commitCoordinator.close();
+        if (!readOnly) rebuildTermDictionary();
+        bodySegments.close();
+        titleSegments.close();
         recordManagerService.close();
     }
 
     /****************** Cache Operation ***********************/
     @SuppressWarnings("unchecked")
     public List<PageResult> getCachedResults(String query) throws IOException {
-        // Check if query is in cache
-        List<PageResult> results = (List<PageResult>) searchCache.get(query);
-        if (results != null) {
+        if (readOnly) return null; // no cache on a replica: it would write the store
+        List<PageResult> results;
+        synchronized (cacheLock) {
+            // Check if query is in cache
+            results = (List<PageResult>) searchCache.get(query);
+            if (results == null) return null;
             // Update metadata - increment frequency and update last accessed time
             CacheMetadata metadata = (CacheMetadata) cacheMetadata.get(query);
             if (metadata == null) {
@@ -131,36 +568,42 @@ public class DbManage {
                 metadata = new CacheMetadata(System.currentTimeMillis(), metadata.frequency + 1);
             }
             cacheMetadata.put(query, metadata);
-            return results;
         }
-        return null;
+        commit(CommitCoordinator.Durability.ASYNC); // the new frequency: lock-free, committed by the flusher
+        return results;
     }
 
-    public void putCachedResults(String query, List<PageResult> results){
+    // results of a search on `searched`; dropped if a newer snapshot was published meanwhile
+    public void putCachedResults(String query, List<PageResult> results, IndexSnapshot searched){
+        if (readOnly) return;
         // First check if we need to evict
         try{
-            System.out.println("Cache Size: " + getTableSize(searchCache));
-            if (getTableSize(searchCache) >= CACHE_SIZE) {
-                evictLeastUsed();
-            }
-            
-            // Store the results
-            searchCache.put(query, results);
-            // Store/update metadata
-            CacheMetadata metadata = (CacheMetadata) cacheMetadata.get(query);
-            if (metadata == null) {
-                metadata = new CacheMetadata(System.currentTimeMillis(), 1);
-            } else {
-                metadata = new CacheMetadata(System.currentTimeMillis(), metadata.frequency + 1);
+            synchronized (cacheLock) {
+                if (snapshot.get() != searched) return;
+                System.out.println("Cache Size: " + getTableSize(searchCache.keys()));
+                if (getTableSize(searchCache.keys()) >= CACHE_SIZE) {
+                    evictLeastUsed();
+                }
+
+                // Store the results
+                searchCache.put(query, results);
+                // Store/update metadata
+                CacheMetadata metadata = (CacheMetadata) cacheMetadata.get(query);
+                if (metadata == null) {
+                    metadata = new CacheMetadata(System.currentTimeMillis(), 1);
+                } else {
+                    metadata = new CacheMetadata(System.currentTimeMillis(), metadata.frequency + 1);
+                }
+                cacheMetadata.put(query, metadata);
             }
-            cacheMetadata.put(query, metadata);
-            commit();
+            commit(CommitCoordinator.Durability.ASYNC); // cache entries can be lost; takes no lock, so searches never wait on a commit
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    // caller holds cacheLock
     private void evictLeastUsed() throws IOException {
         FastIterator iter = cacheMetadata.keys();
         String leastUsedKey = null;
@@ -183,49 +626,61 @@ public class DbManage {
         if (leastUsedKey != null) {
             searchCache.remove(leastUsedKey);
             cacheMetadata.remove(leastUsedKey);
-            commit();
         }
     }
 
     // clear cache table records
     public void clearCache() throws IOException {
-        // First collect all keys
-        List<String> cacheKeys = new ArrayList<>();
-        FastIterator iter = searchCache.keys();
-        String key;
-        while ((key = (String) iter.next()) != null) {
-            cacheKeys.add(key);
-        }
-        
-        // Then remove them
-        for (String cacheKey : cacheKeys) {
-            searchCache.remove(cacheKey);
-        }
-        
-        // Same for metadata
-        List<String> metadataKeys = new ArrayList<>();
-        FastIterator iter2 = cacheMetadata.keys();
-        String key2;
-        while ((key2 = (String) iter2.next()) != null) {
-            metadataKeys.add(key2);
-        }
-        
-        for (String metadataKey : metadataKeys) {
-            cacheMetadata.remove(metadataKey);
+        if (readOnly) return;
+        synchronized (cacheLock) {
+            clearCacheEntries();
         }
-        
         commit();
     }
 
+    // caller holds cacheLock; committed with the next commit
+    private void clearCacheEntries() {
+        try {
+            // First collect all keys
+            List<String> cacheKeys = new ArrayList<>();
+            FastIterator iter = searchCache.keys();
+            String key;
+            while ((key = (String) iter.next()) != null) {
+                cacheKeys.add(key);
+            }
+
+            // Then remove them
+            for (String cacheKey : cacheKeys) {
+                searchCache.remove(cacheKey);
+            }
+
+            // Same for metadata
+            List<String> metadataKeys = new ArrayList<>();
+            FastIterator iter2 = cacheMetadata.keys();
+            String key2;
+            while ((key2 = (String) iter2.next()) != null) {
+                metadataKeys.add(key2);
+            }
+
+            for (String metadataKey : metadataKeys) {
+                cacheMetadata.remove(metadataKey);
+            }
+        } catch (IOException e) {
+            System.err.println("Error clearing the search cache: " + e.getMessage());
+        }
+    }
+
     // For debugging
     public void printCache() throws IOException {
-        System.out.println("Search Cache Contents:");
-        FastIterator iter = searchCache.keys();
-        String key;
-        while ((key = (String) iter.next()) != null) {
-            CacheMetadata metadata = (CacheMetadata) cacheMetadata.get(key);
-            System.out.printf("Query: %s, Last Accessed: %d, Frequency: %d%n",
-                key, metadata.lastAccessed, metadata.frequency);
+        synchronized (cacheLock) {
+            System.out.println("Search Cache Contents:");
+            FastIterator iter = searchCache.keys();
+            String key;
+            while ((key = (String) iter.next()) != null) {
+                CacheMetadata metadata = (CacheMetadata) cacheMetadata.get(key);
+                System.out.printf("Query: %s, Last Accessed: %d, Frequency: %d%n",
+                    key, metadata.lastAccessed, metadata.frequency);
+            }
         }
     }
 
@@ -233,13 +688,17 @@ public class DbManage {
     // Get top N queries from the cache as hot topic
     public List<Map.Entry<String, Integer>> getTopQueries(int limit) throws IOException {
         List<Map.Entry<String, Integer>> topQueries = new ArrayList<>();
-        FastIterator iter = cacheMetadata.keys();
-        String key;
-        
-        while ((key = (String) iter.next()) != null) {
-            CacheMetadata metadata = (CacheMetadata) cacheMetadata.get(key);
-            if (metadata != null) {
-                topQueries.add(new AbstractMap.SimpleEntry<>(key, metadata.frequency));
+        Map<String, Long> lastAccessed = new HashMap<>();
+        synchronized (cacheLock) {
+            FastIterator iter = cacheMetadata.keys();
+            String key;
+
+            while ((key = (String) iter.next()) != null) {
+                CacheMetadata metadata = (CacheMetadata) cacheMetadata.get(key);
+                if (metadata != null) {
+                    topQueries.add(new AbstractMap.SimpleEntry<>(key, metadata.frequency));
+                    lastAccessed.put(key, metadata.lastAccessed);
+                }
             }
         }
         
@@ -250,14 +709,7 @@ public class DbManage {
                 return freqCompare;
             }
             // If frequencies are equal, compare by lastAccessed
-            try {
-                CacheMetadata metadataA = (CacheMetadata) cacheMetadata.get(a.getKey());
-                CacheMetadata metadataB = (CacheMetadata) cacheMetadata.get(b.getKey());
-                return Long.compare(metadataB.lastAccessed, metadataA.lastAccessed);
-            } catch (IOException e) {
-                // If there's an error accessing metadata, fall back to frequency comparison
-                return freqCompare;
-            }
+            return Long.compare(lastAccessed.get(b.getKey()), lastAccessed.get(a.getKey()));
         });
         
         // Return top N results
@@ -266,10 +718,62 @@ public class DbManage {
 
 
     /****************** pageRank Operation ***********************/
-    public HTree getPageRankMap() {
+    public SerializedHTree getPageRankMap() {
         return pageRank;
     }
 
+    public StaticScores getStaticScores() {
+        return staticScores;
+    }
+
+    private Path staticScoresFile() {
+        return recordManagerService.getIndexDirectory().resolve("staticscores.col");
+    }
+
+    // a column out of date (older database, or PageRank interrupted after committing its table)
+    // is built from the pageRank table; the graph that table was computed on is unknown, so the
+    // column stays out of date for exports until the next PageRank run
+    private void loadStaticScores() throws IOException {
+        if (Files.exists(staticScoresFile())) {
+            staticScores = StaticScores.load(staticScoresFile());
+            if (staticScoresCurrent()) return;
+        }
+        if (readOnly) {
+            if (!staticScoresCurrent()) throw notShipped("static scores");
+            return;
+        }
+        List<Integer> pageIds = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        FastIterator iter = pageRank.keys();
+        Integer pageId;
+        while ((pageId = (Integer) iter.next()) != null) {
+            pageIds.add(pageId);
+            scores.add((Double) pageRank.get(pageId));
+        }
+        if (pageIds.isEmpty()) return;
+        updateStaticScores(pageIds.stream().mapToInt(Integer::intValue).toArray(),
+            scores.stream().mapToDouble(Double::doubleValue).toArray(), -1);
+    }
+
+    // PageRank ran on the link graph of the current generation
+    private boolean staticScoresCurrent() {
+        return staticScores.getGeneration() == generation || indexedPageCount == 0;
+    }
+
+    // replace the static score column by the given PageRank scores (after each PageRank run, once
+    // the pageRank table is committed), computed on the link graph of `generation`
+    public void updateStaticScores(int[] pageIds, double[] scores, long generation) throws IOException {
+        commitCoordinator.getWriteLock().lock(); // not replaced halfway through an export
+        try {
+            StaticScores updated = StaticScores.of(pageidCounter, pageIds, scores, generation);
+            updated.write(staticScoresFile());
+            staticScores = updated;
+            publishSnapshot();
+        } finally {
+            commitCoordinator.getWriteLock().unlock();
+        }
+    }
+
     /************* pageMap && pageidMap Operation ****************/
     // Crawler to check if the url is already in the inverted file
     public boolean containsUrl(String url) throws IOException {
@@ -290,17 +794,28 @@ public class DbManage {
     }
 
     public int addPage (String url) throws IOException{ // new URL -> add to pageMap, pageIndex
+        checkWritable();
         if(containsUrl(url)) return getPageId(url);
         pageMap.put(url, pageidCounter);
         pageidMap.put(pageidCounter, url);
         pageidCounter++;
+        dirty = true;
         return (pageidCounter-1);  
     }
 
 
     /************* pageIndex Operation ****************/
     public void addPageIndex(int pageId, PageInfo pageInfo) throws IOException {
+        checkWritable();
+        PageInfo previous = (PageInfo) pageIndex.get(pageId);
+        if (previous == null) {
+            indexedPageCount++;
+        } else {
+            totalTokens -= countTokens(previous); // re-crawled page
+        }
+        totalTokens += countTokens(pageInfo);
         pageIndex.put(pageId, pageInfo);
+        dirty = true;
     }
 
     public Date getLastModified(int pageId) throws IOException {
@@ -308,6 +823,75 @@ public class DbManage {
         return pageInfo.getLastModified();
     }
 
+    public void putKeywordSummary(int pageId, List<KeywordFrequency> keywords) throws IOException {
+        checkWritable();
+        keywordSummary.put(pageId, keywords);
+    }
+
+    // top body keywords of a page, stored at index time; pages indexed before summaries existed
+    // are summarized from their word list on the fly. null if the page has no body word list
+    public List<KeywordFrequency> getKeywordSummary(int pageId) throws IOException {
+        return pageTables.getKeywordSummary(pageId);
+    }
+
+    // the page tables of the store opened by initializeTables, handed to each snapshot published on it:
+    // a replaced replica store keeps answering for the snapshots that still pin it
+    private class StoreTables implements IndexSnapshot.PageTables {
+        private final SerializedHTree pageIndex = DbManage.this.pageIndex;
+        private final SerializedHTree pageidMap = DbManage.this.pageidMap;
+        private final SerializedHTree keywordSummary = DbManage.this.keywordSummary;
+        private final SerializedHTree parentChildMap = DbManage.this.parentChildMap;
+        private final SerializedHTree childParentMap = DbManage.this.childParentMap;
+
+        @Override
+        public PageInfo getPageInfo(int docId) throws IOException {
+            return (PageInfo) pageIndex.get(docId);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<KeywordFrequency> getKeywordSummary(int docId) throws IOException {
+            List<KeywordFrequency> keywords = (List<KeywordFrequency>) keywordSummary.get(docId);
+            if (keywords != null) return keywords;
+
+            PageInfo pageInfo = getPageInfo(docId);
+            if (pageInfo == null || pageInfo.bodyWordList == null) return null;
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (Map.Entry<Integer, Integer> wordEntry : pageInfo.bodyWordList.entrySet()) {
+                String word = getWord(wordEntry.getKey()); // word ids never change, so the current dictionary will do
+                if (word != null) frequencies.put(word, wordEntry.getValue());
+            }
+            return KeywordFrequency.top(frequencies, KEYWORD_SUMMARY_SIZE);
+        }
+
+        @Override
+        public List<String> getUrls(int[] pageIds) throws IOException {
+            List<String> urls = new ArrayList<>(pageIds.length);
+            for (int id : pageIds) {
+                String url = (String) pageidMap.get(id);
+                if (url != null) urls.add(url);
+            }
+            return urls;
+        }
+
+        @Override
+        public List<String> getChildLinks(int pageId) throws IOException {
+            return linkedUrls(parentChildMap, pageId);
+        }
+
+        @Override
+        public List<String> getParentLinks(int pageId) throws IOException {
+            return linkedUrls(childParentMap, pageId);
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<String> linkedUrls(SerializedHTree links, int pageId) throws IOException {
+            List<Integer> pageIds = (List<Integer>) links.get(pageId);
+            if (pageIds == null) return new ArrayList<>();
+            return getUrls(pageIds.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
     public List<PageInfo> getCrawledPages() throws IOException { // for crawler page display
         List<PageInfo> crawledPages = new ArrayList<>();
         FastIterator iter = pageIndex.keys();
@@ -332,11 +916,23 @@ public class DbManage {
         return pageidCounter;
     }
 
+    public int getIndexedPageCount() {
+        return indexedPageCount;
+    }
+
+    public long getTotalTokens() {
+        return totalTokens;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
     public PageInfo getPageInfo(int pageId) throws IOException {
         return (PageInfo) pageIndex.get(pageId);
     }
 
-    public HTree getPageIndex() {
+    public SerializedHTree getPageIndex() {
         return pageIndex;
     }
 
@@ -354,74 +950,242 @@ public class DbManage {
 
     /************* wordMap & wordidMap Operation ****************/
     public boolean containsWord(String word) throws IOException {
-        return wordMap.get(word) != null;
+        return getWordId(word) != -1;
     }
 
-    public HTree getWordidMap() throws IOException {
+    public SerializedHTree getWordidMap() throws IOException {
         return wordidMap;
     }
     
+    // lookups go to the in-heap dictionary first; JDBM is only read for words added since it was built
     public String getWord(int wordId) throws IOException {
-        Object result = wordidMap.get(wordId);
-        return result != null ? result.toString() : null;
+        String word = termDictionary.getWord(wordId);
+        if (word == null) word = newWordIds.get(wordId);
+        if (word == null) {
+            Object result = wordidMap.get(wordId);
+            if (result != null) {
+                word = result.toString();
+                newWordIds.put(wordId, word);
+            }
+        }
+        return word;
     }
 
     public int getWordId(String word) throws IOException {
+        int wordId = termDictionary.getWordId(word);
+        if (wordId != -1) return wordId;
+        Integer newId = newWords.get(word);
+        if (newId != null) return newId;
+
         Object result = wordMap.get(word);
-        return result != null ? (int) result : -1;
+        if (result == null) return -1;
+        newWords.put(word, (int) result);
+        return (int) result;
+    }
+
+    // in-heap only (no JDBM read): the lookup of search snapshots. Every word is in
+    // termDictionary or newWords once loadTermDictionary has run
+    private int lookupWordId(String word) {
+        int wordId = termDictionary.getWordId(word);
+        if (wordId != -1) return wordId;
+        Integer newId = newWords.get(word);
+        return newId == null ? -1 : newId;
     }
 
     public int addWord(String word) throws IOException {
+        checkWritable();
         wordMap.put(word, wordidCounter);
         wordidMap.put(wordidCounter, word);
+        newWords.put(word, wordidCounter);
+        newWordIds.put(wordidCounter, word);
         wordidCounter++;
+        dirty = true;
         return (wordidCounter-1);
     }
 
-    /************* bodyIndex, titleIndex Operation ****************/
-    // Htree - <int, List<posting>>
+    // all words in sorted order
+    public List<String> getAllWords() {
+        List<String> words = new ArrayList<>();
+        TermDictionary dictionary = termDictionary;
+        dictionary.forEach((word, wordId) -> words.add(word));
+        for (String word : newWords.keySet()) {
+            if (dictionary.getWordId(word) == -1) words.add(word);
+        }
+        words.sort(null);
+        return words;
+    }
 
-    @SuppressWarnings("unchecked")
-    public void updateBodyIndex(Map<Integer, Posting> batchIndex) throws IOException {
-        // loop through the batch inverted index table from Indexer
-        for (Map.Entry<Integer, Posting> entry : batchIndex.entrySet()) { 
-            int wordId = entry.getKey();
-            Posting posting = entry.getValue();
+    private Path termDictionaryFile() {
+        return recordManagerService.getIndexDirectory().resolve("terms.dict");
+    }
 
-            List<Posting> postings = (List<Posting>) bodyIndex.get(wordId);
-            if (postings == null) {
-                postings = new ArrayList<>(); 
-            }
-            postings.add(posting);
-            bodyIndex.put(wordId, postings);
+    private void loadTermDictionary() throws IOException {
+        newWords.clear();
+        newWordIds.clear();
+        Path file = termDictionaryFile();
+        if (Files.exists(file)) {
+            termDictionary = TermDictionary.load(file);
+            if (termDictionary.size() >= wordidCounter) return;
+            if (readOnly) throw notShipped("term dictionary");
+            System.out.println("Term dictionary is out of date, rebuilding"); // words added after the last close
+        } else if (readOnly && wordidCounter > 0) {
+            throw notShipped("term dictionary");
+        }
 
+        // first start on this database: build it from wordMap once
+        Map<String, Integer> words = new HashMap<>();
+        FastIterator iter = wordMap.keys();
+        String word;
+        while ((word = (String) iter.next()) != null) {
+            words.put(word, (Integer) wordMap.get(word));
         }
+        termDictionary = TermDictionary.build(words);
+        if (!readOnly) termDictionary.write(file); // the empty store of a replica: kept in memory
     }
 
-    @SuppressWarnings("unchecked")
-    public void updateTitleIndex(Map<Integer, Posting> batchIndex) throws IOException {
-        // loop through the batch inverted index table from Indexer
+    // fold the words added since the last build into a new dictionary file (after a crawl)
+    public void rebuildTermDictionary() throws IOException {
+        if (newWords.isEmpty()) return;
+        Map<String, Integer> words = new HashMap<>(newWords);
+        termDictionary.forEach(words::putIfAbsent);
+        TermDictionary rebuilt = TermDictionary.build(words);
+        rebuilt.write(termDictionaryFile());
+        termDictionary = rebuilt;
+        newWords.keySet().removeIf(word -> rebuilt.getWordId(word) != -1);
+        newWordIds.keySet().removeIf(wordId -> rebuilt.getWord(wordId) != null);
+    }
+
+    /************* bodySegments, titleSegments Operation ****************/
+
+    // postings are appended to the segment buffer and written out as a new segment on commit
+    public void updateBodyIndex(Map<Integer, Posting> batchIndex) throws IOException {
+        checkWritable();
         for (Map.Entry<Integer, Posting> entry : batchIndex.entrySet()) { 
-            int wordId = entry.getKey();
-            Posting posting = entry.getValue();
+            bodySegments.add(entry.getKey(), entry.getValue());
+        }
+    }
 
-            List<Posting> postings = (List<Posting>) titleIndex.get(wordId);
-            if (postings == null) {
-                postings = new ArrayList<>(); 
-            }
-            postings.add(posting);
-            titleIndex.put(wordId, postings);
+    public void updateTitleIndex(Map<Integer, Posting> batchIndex) throws IOException {
+        checkWritable();
+        for (Map.Entry<Integer, Posting> entry : batchIndex.entrySet()) { 
+            titleSegments.add(entry.getKey(), entry.getValue());
         }
     }
 
-    @SuppressWarnings("unchecked")
     public List<Posting> getBodyPosting(int wordId) throws IOException {
-        return (List<Posting>) bodyIndex.get(wordId);
+        return bodySegments.getPostings(wordId);
     }
 
-    @SuppressWarnings("unchecked")
     public List<Posting> getTitlePosting(int wordId) throws IOException {
-        return (List<Posting>) titleIndex.get(wordId);
+        return titleSegments.getPostings(wordId);
+    }
+
+    // decode postings straight from the mapped segments without building Posting objects
+    public PostingCursor getBodyCursor(int wordId) {
+        return bodySegments.cursor(wordId);
+    }
+
+    public PostingCursor getTitleCursor(int wordId) {
+        return titleSegments.cursor(wordId);
+    }
+
+    // number of docs with the word in the title or the body
+    public int getDocFreq(int wordId) {
+        PostingCursor docs = PostingCursor.union(getTitleCursor(wordId), getBodyCursor(wordId));
+        int count = 0;
+        while (docs.nextDoc() != PostingCursor.NO_MORE_DOCS) count++;
+        return count;
+    }
+
+    /************* docStats && docValues Operation ****************/
+    public DocStats getDocStats() {
+        return docStats;
+    }
+
+    public DocValues getDocValues() {
+        return docValues;
+    }
+
+    private Path docStatsFile() {
+        return recordManagerService.getIndexDirectory().resolve("docstats.col");
+    }
+
+    private Path docValuesFile() {
+        return recordManagerService.getIndexDirectory().resolve("docvalues.col");
+    }
+
+    private void loadDocColumns() throws IOException {
+        docStats = Files.exists(docStatsFile()) ? DocStats.load(docStatsFile()) : DocStats.EMPTY;
+        docValues = Files.exists(docValuesFile()) ? DocValues.open(docValuesFile()) : DocValues.EMPTY;
+        if (!docColumnsCurrent() && indexedPageCount > 0) {
+            if (readOnly) throw notShipped("doc columns");
+            System.out.println("Doc columns are out of date, rebuilding");
+            rebuildDocColumns();
+        }
+    }
+
+    private boolean docColumnsCurrent() {
+        return docStats.getGeneration() == generation && docValues.getGeneration() == generation;
+    }
+
+    // rebuild the per-doc columns (doc stats, doc values) in one pass over pageIndex;
+    // idf moves whenever pages are added, so this runs after each crawl (skipped if nothing changed)
+    public void rebuildDocColumns() throws IOException {
+        if (docColumnsCurrent()) return;
+        int totalDocs = getPageCount();
+        double[] idf = new double[wordidCounter];
+        for (int wordId = 0; wordId < wordidCounter; wordId++) {
+            int docFreq = getDocFreq(wordId);
+            idf[wordId] = docFreq == 0 ? 0 : DocStats.idf(totalDocs, docFreq);
+        }
+
+        DocStats.Builder stats = new DocStats.Builder(pageidCounter, wordId -> wordId < idf.length ? idf[wordId] : 0);
+        DocValues.Builder values = new DocValues.Builder(pageidCounter);
+        FastIterator iter = pageIndex.keys();
+        Integer pageId;
+        while ((pageId = (Integer) iter.next()) != null) {
+            PageInfo pageInfo = (PageInfo) pageIndex.get(pageId);
+            values.add(pageId, pageInfo.getUrl(), pageInfo.getTitle(), pageInfo.getSize(), pageInfo.getLastModified());
+            stats.add(pageId, pageInfo.bodyWordList, pageInfo.titleWordList);
+        }
+
+        DocStats rebuilt = stats.build(generation);
+        rebuilt.write(docStatsFile());
+        values.write(docValuesFile(), generation);
+        docStats = rebuilt;
+        docValues = DocValues.open(docValuesFile());
+        publishSnapshot();
+    }
+
+    // a database from before the segment format has its postings in the bodyIndex / titleIndex HTrees
+    // (word ID -> list of posting): they are imported into segments once, then the trees are deleted
+    private void importLegacyIndex() throws IOException {
+        HTree bodyIndex = recordManagerService.getHTree("bodyIndex");
+        HTree titleIndex = recordManagerService.getHTree("titleIndex");
+        if (bodyIndex == null && titleIndex == null) return;
+        boolean legacyPostings = bodySegments.isEmpty() && bodyIndex != null && bodyIndex.keys().next() != null;
+        if (readOnly) {
+            if (legacyPostings) throw notShipped("posting segments");
+            return; // the empty trees of an older primary
+        }
+        if (legacyPostings) {
+            bodySegments.rebuild(loadPostings(bodyIndex));
+            if (titleIndex != null) titleSegments.rebuild(loadPostings(titleIndex));
+        }
+        recordManagerService.deleteHTree("bodyIndex");
+        recordManagerService.deleteHTree("titleIndex");
+        commit(CommitCoordinator.Durability.SYNC);
+    }
+
+    @SuppressWarnings("unchecked")
+    private SortedMap<Integer, List<Posting>> loadPostings(HTree index) throws IOException {
+        SortedMap<Integer, List<Posting>> postings = new TreeMap<>();
+        FastIterator iter = index.keys();
+        Integer wordId;
+        while ((wordId = (Integer) iter.next()) != null) {
+            postings.put(wordId, (List<Posting>) index.get(wordId));
+        }
+        return postings;
     }
 
 
@@ -430,40 +1194,71 @@ public class DbManage {
         //childParentMap: child page id -> parent page id
         
 
-    @SuppressWarnings("unchecked")
-    public List<String> getChildLinks(int pageId) throws IOException {
-        List<String> childUrls = new ArrayList<>();
-        List<Integer> childPageIds = (List<Integer>) parentChildMap.get(pageId);
-        
-        if (childPageIds != null) {
-            for (Integer childId : childPageIds) {
-                String url = (String) pageidMap.get(childId);
-                if (url != null) {
-                    childUrls.add(url);
-                }
-            }
+    public LinkGraph getLinkGraph() {
+        return linkGraph;
+    }
+
+    private Path linkGraphFile() {
+        return recordManagerService.getIndexDirectory().resolve("links.graph");
+    }
+
+    private void loadLinkGraph() throws IOException {
+        linkGraph = Files.exists(linkGraphFile()) ? LinkGraph.open(linkGraphFile()) : LinkGraph.EMPTY;
+        if (!linkGraphCurrent() && pageidCounter > 0) {
+            if (readOnly) throw notShipped("link graph");
+            System.out.println("Link graph is out of date, rebuilding");
+            rebuildLinkGraph();
         }
-        return childUrls;
     }
 
+    // no link added since the graph was built
+    private boolean linkGraphCurrent() {
+        return linkGraph.getGeneration() == generation && !dirty;
+    }
+
+    // rebuild the compressed link graph in one pass over parentChildMap and pageIndex (after a crawl)
     @SuppressWarnings("unchecked")
-    public List<String> getParentLinks(int pageId) throws IOException {
-        List<String> parentUrls = new ArrayList<>();
-        List<Integer> parentPageIds = (List<Integer>) childParentMap.get(pageId);
-        
-        if (parentPageIds != null) {
-            for (Integer parentId : parentPageIds) {
-                String url = (String) pageidMap.get(parentId);
-                if (url != null) {
-                    parentUrls.add(url);
-                }
-            }
+    public void rebuildLinkGraph() throws IOException {
+        if (linkGraphCurrent()) return;
+        LinkGraph.Builder builder = new LinkGraph.Builder(pageidCounter);
+        FastIterator iter = pageIndex.keys();
+        Integer pageId;
+        while ((pageId = (Integer) iter.next()) != null) {
+            if (pageId < pageidCounter) builder.setCrawled(pageId);
+        }
+        iter = parentChildMap.keys();
+        while ((pageId = (Integer) iter.next()) != null) {
+            if (pageId < pageidCounter) builder.setChildren(pageId, (List<Integer>) parentChildMap.get(pageId));
         }
-        return parentUrls;
+        builder.write(linkGraphFile(), generation);
+        linkGraph = LinkGraph.open(linkGraphFile());
+        publishSnapshot();
+    }
+
+    private List<String> toUrls(int[] pageIds) throws IOException {
+        return pageTables.getUrls(pageIds);
+    }
+
+    private static List<Integer> toList(int[] pageIds) {
+        List<Integer> list = new ArrayList<>(pageIds.length);
+        for (int id : pageIds) list.add(id);
+        return list;
+    }
+
+    // the maps are only read while the link graph is stale (mid-crawl)
+    public List<String> getChildLinks(int pageId) throws IOException {
+        if (linkGraphCurrent()) return toUrls(linkGraph.children(pageId));
+        return pageTables.getChildLinks(pageId);
+    }
+
+    public List<String> getParentLinks(int pageId) throws IOException {
+        if (linkGraphCurrent()) return toUrls(linkGraph.parents(pageId));
+        return pageTables.getParentLinks(pageId);
     }
 
     @SuppressWarnings("unchecked")
     public List<Integer> getCrawledParentPageIds(int pageId) throws IOException {
+        if (linkGraphCurrent()) return toList(linkGraph.crawledParents(pageId));
         List<Integer> parentPageIds = (List<Integer>) childParentMap.get(pageId);
         if (parentPageIds == null) return new ArrayList<>();
         
@@ -484,6 +1279,7 @@ public class DbManage {
 
     @SuppressWarnings("unchecked")
     public List<Integer> getCrawledChildPageIds(int pageId) throws IOException {
+        if (linkGraphCurrent()) return toList(linkGraph.crawledChildren(pageId));
         List<Integer> childPageIds = (List<Integer>) parentChildMap.get(pageId);
         if (childPageIds == null) return new ArrayList<>();
         
@@ -504,6 +1300,7 @@ public class DbManage {
 
     @SuppressWarnings("unchecked")
     public void updateParentChildMap(List<String> links, String url) throws IOException {
+        checkWritable();
         Integer parentPageId = this.getPageId(url);
         
         // Initialize the parent's list of child page IDs if it doesn't exist
@@ -538,6 +1335,7 @@ public class DbManage {
 
         // Update the parentChildMap with the modified list of child page IDs
         parentChildMap.put(parentPageId, childPageIds);
+        dirty = true; // link graph is stale
     }
 
 
@@ -571,34 +1369,6 @@ public class DbManage {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public void printBodyIndex() throws IOException { // print for debug
-        System.out.println("BodyIndex:");
-        FastIterator iter = bodyIndex.keys();
-        Integer key;
-        while ((key = (Integer) iter.next()) != null) {
-            System.out.println("WordID: " + key);
-            List<Posting> postings = (List<Posting>) bodyIndex.get(key);
-            for (Posting posting : postings) {
-                System.out.println("  DocID: " + posting.getId() + ", Freq: " + posting.getFreq() + ", Positions: " + posting.getPositions());
-            }
-        }
-    }
-
-    @SuppressWarnings("unchecked")
-    public void printTitleIndex() throws IOException { // print for debug
-        System.out.println("TitleIndex:");
-        FastIterator iter = titleIndex.keys();
-        Integer key;
-        while ((key = (Integer) iter.next()) != null) {
-            System.out.println("WordID: " + key);
-            List<Posting> postings = (List<Posting>) titleIndex.get(key);
-            for (Posting posting : postings) {
-                System.out.println("  DocID: " + posting.getId() + ", Freq: " + posting.getFreq() + ", Positions: " + posting.getPositions());
-            }
-        }
-    }
-
     public void printPageIndex() throws IOException {
         System.out.println("PageIndex:");
         FastIterator iter = pageIndex.keys();
@@ -0,0 +1,148 @@
+package com.example.searchengine.database;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * GenerationManifest.java
+ * File list of one shipped store generation (JDBM files and index directory): relative path,
+ * size and CRC32C of every file. It is written last, so a generation directory with a manifest
+ * is complete; a replica checks each file it installs against it.
+ */
+public class GenerationManifest {
+    public static final String FILE_NAME = "generation.manifest";
+    private static final int VERSION = 1;
+
+    public static class Entry {
+        public final String path; // relative to the generation directory, '/' separated
+        public final long size;
+        public final long checksum; // CRC32C
+
+        public Entry(String path, long size, long checksum) {
+            this.path = path;
+            this.size = size;
+            this.checksum = checksum;
+        }
+    }
+
+    private final long generation;
+    private final List<Entry> entries;
+
+    public GenerationManifest(long generation, List<Entry> entries) {
+        this.generation = generation;
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    // directory a generation is kept in, on the primary and on replicas
+    public static String directoryName(long generation) {
+        return "gen-" + generation;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public long getTotalSize() {
+        long total = 0;
+        for (Entry entry : entries) total += entry.size;
+        return total;
+    }
+
+    // checksum every file under the directory (the manifest itself excluded)
+    public static GenerationManifest build(long generation, Path directory) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        collect(directory, "", entries);
+        return new GenerationManifest(generation, entries);
+    }
+
+    private static void collect(Path directory, String prefix, List<Entry> entries) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = prefix + file.getFileName();
+                if (Files.isDirectory(file)) {
+                    collect(file, name + "/", entries);
+                } else if (!name.equals(FILE_NAME)) {
+                    entries.add(new Entry(name, Files.size(file), checksum(file)));
+                }
+            }
+        }
+    }
+
+    public static long checksum(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) crc.update(buffer, 0, read);
+        }
+        return crc.getValue();
+    }
+
+    // the file has the size and checksum the entry lists
+    public static boolean matches(Path file, Entry entry) throws IOException {
+        return Files.isRegularFile(file) && Files.size(file) == entry.size && checksum(file) == entry.checksum;
+    }
+
+    // where the entry goes under directory; a path leaving it is rejected
+    public static Path resolve(Path directory, String path) throws IOException {
+        Path root = directory.toAbsolutePath().normalize();
+        Path file = root.resolve(path).normalize();
+        if (!file.startsWith(root) || file.equals(root)) throw new IOException("Bad path in generation manifest: " + path);
+        return file;
+    }
+
+    public byte[] toBytes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.path);
+                out.writeLong(entry.size);
+                out.writeLong(entry.checksum);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public static GenerationManifest fromBytes(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported generation manifest version " + version);
+            long generation = in.readLong();
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(new Entry(in.readUTF(), in.readLong(), in.readLong()));
+            }
+            return new GenerationManifest(generation, entries);
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, toBytes());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static GenerationManifest read(Path file) throws IOException {
+        return fromBytes(Files.readAllBytes(file));
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.searchengine.database;
+
+/**
+ * IndexMetadata.java
+ * Counters and corpus statistics of the index, stored as one JDBM record
+ * so startup can read them directly instead of scanning the tables
+ */
+public class IndexMetadata {
+    public int pageidCounter; // next page id
+    public int wordidCounter; // next word id
+    public int indexedPageCount; // pages with an entry in pageIndex
+    public long totalTokens; // body + title tokens over all indexed pages
+    public long generation; // incremented by every commit that changed the index
+
+    public IndexMetadata(int pageidCounter, int wordidCounter, int indexedPageCount, long totalTokens, long generation) {
+        this.pageidCounter = pageidCounter;
+        this.wordidCounter = wordidCounter;
+        this.indexedPageCount = indexedPageCount;
+        this.totalTokens = totalTokens;
+        this.generation = generation;
+    }
+}
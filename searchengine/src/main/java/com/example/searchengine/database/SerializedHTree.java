@@ -0,0 +1,104 @@
+package com.example.searchengine.database;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import jdbm.helper.FastIterator;
+import jdbm.helper.Serializer;
+import jdbm.htree.HTree;
+
+/**
+ * SerializedHTree.java
+ * HTree whose values go through a compact Serializer (stored as byte[])
+ * instead of default java.io serialization. Values written by older
+ * versions are still Java objects and are returned as they are.
+ * get / put / remove / keys are guarded by a read-write lock: JDBM hands out shared
+ * directory and bucket objects, so a search thread must not read a table while
+ * the crawler is changing it. keys() iterates over a copy taken under the lock.
+ */
+public class SerializedHTree {
+    private final HTree tree;
+    private final Serializer serializer;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SerializedHTree(HTree tree, Serializer serializer) {
+        this.tree = tree;
+        this.serializer = serializer;
+    }
+
+    public Object get(Object key) throws IOException {
+        Object raw;
+        lock.readLock().lock();
+        try {
+            raw = tree.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (raw instanceof byte[]) {
+            return serializer.deserialize((byte[]) raw);
+        }
+        return raw; // null, or a legacy java-serialized value
+    }
+
+    public void put(Object key, Object value) throws IOException {
+        byte[] bytes = serializer.serialize(value);
+        lock.writeLock().lock();
+        try {
+            tree.put(key, bytes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Object key) throws IOException {
+        lock.writeLock().lock();
+        try {
+            tree.remove(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public FastIterator keys() throws IOException {
+        List<Object> keys = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            FastIterator iter = tree.keys();
+            Object key;
+            while ((key = iter.next()) != null) keys.add(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+        Iterator<Object> copy = keys.iterator();
+        return new FastIterator() {
+            @Override
+            public Object next() {
+                return copy.hasNext() ? copy.next() : null;
+            }
+        };
+    }
+
+    public long getRecid() {
+        return tree.getRecid();
+    }
+
+    // rewrite every legacy value in the compact format
+    public int migrate() throws IOException {
+        List<Object> legacyKeys = new ArrayList<>();
+        FastIterator iter = tree.keys();
+        Object key;
+        while ((key = iter.next()) != null) {
+            if (!(tree.get(key) instanceof byte[])) {
+                legacyKeys.add(key);
+            }
+        }
+        for (Object legacyKey : legacyKeys) {
+            put(legacyKey, get(legacyKey));
+        }
+        return legacyKeys.size();
+    }
+}
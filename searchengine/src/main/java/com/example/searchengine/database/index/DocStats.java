@@ -0,0 +1,150 @@
+package com.example.searchengine.database.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * DocStats.java
+ * Dense per-doc columns computed at index time, keyed by doc id:
+ * max body term frequency and the norm of the full tf-idf vector.
+ * The norms depend on the idf of every word, so the columns are rebuilt
+ * whenever the corpus changed; `generation` is the index generation they
+ * were built from. maxTf 0 means the doc was not indexed at that point.
+ */
+public class DocStats {
+    private static final int MAGIC = 0x44535441; // "DSTA"
+    private static final int VERSION = 1;
+
+    public static final DocStats EMPTY = new DocStats(new int[0], new double[0], -1);
+
+    private final int[] maxTf;
+    private final double[] norms;
+    private final long generation;
+
+    public DocStats(int[] maxTf, double[] norms, long generation) {
+        this.maxTf = maxTf;
+        this.norms = norms;
+        this.generation = generation;
+    }
+
+    // idf used for scoring and for the norms: +1 for smoothing
+    public static double idf(int totalDocs, int docFreq) {
+        return Math.log(1 + (double) totalDocs / docFreq);
+    }
+
+    // improved term weight (favors terms with small tf); tf is 3 * title freq + body freq
+    public static double termWeight(double tf, double maxTf, double idf) {
+        return (0.5 + 0.5 * tf / maxTf) * idf;
+    }
+
+    // max body term frequency of a doc, at least 1 to avoid div by zero
+    public static int maxTf(Map<Integer, Integer> bodyWordList) {
+        int max = 1;
+        if (bodyWordList != null) {
+            for (int tf : bodyWordList.values()) max = Math.max(max, tf);
+        }
+        return max;
+    }
+
+    // norm of a doc's tf-idf vector, weighted as on the query side (3 * title freq + body freq);
+    // idf by word id, 0 for a word that doesn't count
+    public static double norm(Map<Integer, Integer> bodyWordList, Map<Integer, Integer> titleWordList, int maxTf,
+            IntToDoubleFunction idf) {
+        Map<Integer, Double> termFreq = new HashMap<>();
+        if (bodyWordList != null) {
+            bodyWordList.forEach((wordId, tf) -> termFreq.merge(wordId, (double) tf, Double::sum));
+        }
+        if (titleWordList != null) {
+            titleWordList.forEach((wordId, tf) -> termFreq.merge(wordId, 3.0 * tf, Double::sum));
+        }
+        double normSquare = 0;
+        for (Map.Entry<Integer, Double> entry : termFreq.entrySet()) {
+            double weight = termWeight(entry.getValue(), maxTf, idf.applyAsDouble(entry.getKey()));
+            normSquare += weight * weight;
+        }
+        return Math.sqrt(normSquare);
+    }
+
+    // the columns in one pass over the indexed pages, under the given idf by word id (the local
+    // one for the stored columns, the idf of all nodes on a shard node)
+    public static class Builder {
+        private final int[] maxTf;
+        private final double[] norms;
+        private final IntToDoubleFunction idf;
+
+        public Builder(int docCount, IntToDoubleFunction idf) {
+            this.maxTf = new int[docCount];
+            this.norms = new double[docCount];
+            this.idf = idf;
+        }
+
+        public void add(int docId, Map<Integer, Integer> bodyWordList, Map<Integer, Integer> titleWordList) {
+            if (docId < 0 || docId >= maxTf.length) return;
+            maxTf[docId] = DocStats.maxTf(bodyWordList);
+            norms[docId] = norm(bodyWordList, titleWordList, maxTf[docId], idf);
+        }
+
+        public DocStats build(long generation) {
+            return new DocStats(maxTf, norms, generation);
+        }
+    }
+
+    public boolean contains(int docId) {
+        return docId >= 0 && docId < maxTf.length && maxTf[docId] > 0;
+    }
+
+    // max body term frequency (at least 1), 0 if the doc is not in the columns
+    public int maxTf(int docId) {
+        return docId >= 0 && docId < maxTf.length ? maxTf[docId] : 0;
+    }
+
+    // norm of the doc's full tf-idf vector
+    public double norm(int docId) {
+        return docId >= 0 && docId < norms.length ? norms[docId] : 0;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public void write(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream fileOut = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            out.writeInt(maxTf.length);
+            for (int tf : maxTf) out.writeInt(tf);
+            for (double norm : norms) out.writeDouble(norm);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static DocStats load(Path file) throws IOException {
+        try (InputStream fileIn = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a doc stats file: " + file);
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported doc stats version " + version + ": " + file);
+            long generation = in.readLong();
+            int count = in.readInt();
+            int[] maxTf = new int[count];
+            double[] norms = new double[count];
+            for (int i = 0; i < count; i++) maxTf[i] = in.readInt();
+            for (int i = 0; i < count; i++) norms[i] = in.readDouble();
+            return new DocStats(maxTf, norms, generation);
+        }
+    }
+}
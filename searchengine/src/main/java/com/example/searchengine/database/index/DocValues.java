@@ -0,0 +1,182 @@
+package com.example.searchengine.database.index;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+
+/**
+ * DocValues.java
+ * Memory-mapped column store of the page fields shown in search results, keyed by doc id:
+ *   header         magic, version, index generation, doc count, string bytes length
+ *   flags          one byte per doc: indexed, url present, title present
+ *   lastModified   one long per doc (ms)
+ *   size           one int per doc
+ *   url / title    count + 1 int offsets each into the UTF-8 string bytes
+ *   string bytes
+ * Reading one field of one doc touches only that column, never the page's word lists.
+ */
+public class DocValues {
+    private static final int MAGIC = 0x4456414C; // "DVAL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4;
+
+    private static final byte INDEXED = 1;
+    private static final byte HAS_URL = 2;
+    private static final byte HAS_TITLE = 4;
+
+    public static final DocValues EMPTY = new DocValues(ByteBuffer.allocate(0), 0, -1, 0);
+
+    private final ByteBuffer data;
+    private final int count;
+    private final long generation;
+    private final int flagsStart;
+    private final int lastModifiedStart;
+    private final int sizeStart;
+    private final int urlOffsetsStart;
+    private final int titleOffsetsStart;
+    private final int stringsStart;
+
+    private DocValues(ByteBuffer data, int count, long generation, int headerSize) {
+        this.data = data;
+        this.count = count;
+        this.generation = generation;
+        flagsStart = headerSize;
+        lastModifiedStart = flagsStart + count;
+        sizeStart = lastModifiedStart + 8 * count;
+        urlOffsetsStart = sizeStart + 4 * count;
+        titleOffsetsStart = urlOffsetsStart + 4 * (count + 1);
+        stringsStart = titleOffsetsStart + 4 * (count + 1);
+    }
+
+    public static DocValues open(Path file) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Doc values too large to map: " + file);
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.getInt(0) != MAGIC) throw new IOException("Not a doc values file: " + file);
+        int version = data.getInt(4);
+        if (version != VERSION) throw new IOException("Unsupported doc values version " + version + ": " + file);
+        return new DocValues(data, data.getInt(16), data.getLong(8), HEADER_SIZE);
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public boolean contains(int docId) {
+        return docId >= 0 && docId < count && (flags(docId) & INDEXED) != 0;
+    }
+
+    public String getUrl(int docId) {
+        if (!contains(docId) || (flags(docId) & HAS_URL) == 0) return null;
+        return string(urlOffsetsStart, docId);
+    }
+
+    public String getTitle(int docId) {
+        if (!contains(docId) || (flags(docId) & HAS_TITLE) == 0) return null;
+        return string(titleOffsetsStart, docId);
+    }
+
+    public int getSize(int docId) {
+        return contains(docId) ? data.getInt(sizeStart + 4 * docId) : 0;
+    }
+
+    public Date getLastModified(int docId) {
+        if (!contains(docId)) return null;
+        long time = data.getLong(lastModifiedStart + 8 * docId);
+        return time == Long.MIN_VALUE ? null : new Date(time);
+    }
+
+    private byte flags(int docId) {
+        return data.get(flagsStart + docId);
+    }
+
+    private String string(int offsetsStart, int docId) {
+        int from = data.getInt(offsetsStart + 4 * docId);
+        int to = data.getInt(offsetsStart + 4 * (docId + 1));
+        byte[] bytes = new byte[to - from];
+        data.get(stringsStart + from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Collects the columns in heap arrays (docs in any order), then writes the file.
+     */
+    public static class Builder {
+        private final byte[] flags;
+        private final long[] lastModified;
+        private final int[] sizes;
+        private final byte[][] urls;
+        private final byte[][] titles;
+
+        public Builder(int count) {
+            flags = new byte[count];
+            lastModified = new long[count];
+            sizes = new int[count];
+            urls = new byte[count][];
+            titles = new byte[count][];
+        }
+
+        public void add(int docId, String url, String title, int size, Date modified) {
+            byte flag = INDEXED;
+            if (url != null) {
+                flag |= HAS_URL;
+                urls[docId] = url.getBytes(StandardCharsets.UTF_8);
+            }
+            if (title != null) {
+                flag |= HAS_TITLE;
+                titles[docId] = title.getBytes(StandardCharsets.UTF_8);
+            }
+            flags[docId] = flag;
+            lastModified[docId] = modified == null ? Long.MIN_VALUE : modified.getTime();
+            sizes[docId] = size;
+        }
+
+        public void write(Path file, long generation) throws IOException {
+            ByteArrayOutputStream strings = new ByteArrayOutputStream();
+            int[] urlOffsets = appendAll(strings, urls);
+            int[] titleOffsets = appendAll(strings, titles);
+
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream fileOut = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(generation);
+                out.writeInt(flags.length);
+                out.writeInt(strings.size());
+                out.write(flags);
+                for (long time : lastModified) out.writeLong(time);
+                for (int size : sizes) out.writeInt(size);
+                for (int offset : urlOffsets) out.writeInt(offset);
+                for (int offset : titleOffsets) out.writeInt(offset);
+                strings.writeTo(out);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        // count + 1 offsets; a missing string is empty
+        private static int[] appendAll(ByteArrayOutputStream strings, byte[][] values) {
+            int[] offsets = new int[values.length + 1];
+            for (int i = 0; i < values.length; i++) {
+                offsets[i] = strings.size();
+                if (values[i] != null) strings.write(values[i], 0, values[i].length);
+            }
+            offsets[values.length] = strings.size();
+            return offsets;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.searchengine.database.index;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+import com.example.searchengine.model.KeywordFrequency;
+import com.example.searchengine.model.PageInfo;
+import com.example.searchengine.model.PageResult;
+
+/**
+ * IndexSnapshot.java
+ * Immutable view of one published index generation: the flushed segments of both fields
+ * (per shard) and the per-doc columns as they were when it was published. A search pins
+ * the current snapshot for the whole query, so a concurrent crawl (new segments, merges,
+ * rebuilt columns) never changes what it reads, and pages still in the segment buffer are not seen.
+ * Reference counted: the published snapshot holds one reference until the next one replaces
+ * it, each search holds one while it runs; the last release hands it to the reclaimer,
+ * which deletes the retired segments no remaining snapshot uses.
+ * Results are hydrated from the doc values column and the link graph of the snapshot. Docs the
+ * columns don't cover yet (indexed mid-crawl) and keyword summaries come from the page tables of
+ * the store the snapshot was published from: on a replica those are the snapshot's own generation,
+ * on the primary they are the live tables, so such a page may show a newer re-crawl of it.
+ */
+public final class IndexSnapshot implements AutoCloseable {
+
+    // called once, when the last reference is released
+    public interface Reclaimer {
+        void reclaim(IndexSnapshot snapshot);
+    }
+
+    private final long generation;
+    private final int pageCount;
+    private final List<List<Segment>> bodySegments; // per shard
+    private final List<List<Segment>> titleSegments;
+    private final DocStats docStats;
+    private final DocValues docValues;
+    private final LinkGraph linkGraph;
+    private final StaticScores staticScores;
+    private final ToIntFunction<String> words; // word -> word id (-1 if unknown); ids never change, so any later dictionary will do
+    private final Reclaimer reclaimer;
+    private final PageTables pageTables;
+    private final AtomicInteger references = new AtomicInteger(1); // the publisher's
+
+    // page tables of one store (see the class comment for how current they are)
+    public interface PageTables {
+        PageInfo getPageInfo(int docId) throws IOException; // null if not indexed
+        List<KeywordFrequency> getKeywordSummary(int docId) throws IOException;
+        List<String> getUrls(int[] pageIds) throws IOException; // unknown ids are skipped
+        List<String> getChildLinks(int pageId) throws IOException; // from the link tables
+        List<String> getParentLinks(int pageId) throws IOException;
+    }
+
+    public IndexSnapshot(long generation, int pageCount, List<List<Segment>> bodySegments, List<List<Segment>> titleSegments,
+            DocStats docStats, DocValues docValues, LinkGraph linkGraph, StaticScores staticScores,
+            ToIntFunction<String> words, PageTables pageTables, Reclaimer reclaimer) {
+        this.generation = generation;
+        this.pageCount = pageCount;
+        this.bodySegments = bodySegments;
+        this.titleSegments = titleSegments;
+        this.docStats = docStats;
+        this.docValues = docValues;
+        this.linkGraph = linkGraph;
+        this.staticScores = staticScores;
+        this.words = words;
+        this.pageTables = pageTables;
+        this.reclaimer = reclaimer;
+    }
+
+    // add a reference; false once the snapshot has been released for good
+    public boolean pin() {
+        while (true) {
+            int count = references.get();
+            if (count == 0) return false;
+            if (references.compareAndSet(count, count + 1)) return true;
+        }
+    }
+
+    public void release() {
+        if (references.decrementAndGet() == 0) reclaimer.reclaim(this);
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    // a reader of this snapshot may still decode the segment
+    public boolean holds(Segment segment) {
+        for (List<Segment> shard : bodySegments) {
+            if (shard.contains(segment)) return true;
+        }
+        for (List<Segment> shard : titleSegments) {
+            if (shard.contains(segment)) return true;
+        }
+        return false;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public int getWordId(String word) {
+        return words.applyAsInt(word);
+    }
+
+    public int getShardCount() {
+        return bodySegments.size();
+    }
+
+    // across all shards
+    public PostingCursor getBodyCursor(int wordId) {
+        return ShardedIndex.cursor(bodySegments, wordId);
+    }
+
+    public PostingCursor getTitleCursor(int wordId) {
+        return ShardedIndex.cursor(titleSegments, wordId);
+    }
+
+    // docs of one shard only
+    public PostingCursor getBodyCursor(int shard, int wordId) {
+        return SegmentedIndex.cursor(bodySegments.get(shard), wordId);
+    }
+
+    public PostingCursor getTitleCursor(int shard, int wordId) {
+        return SegmentedIndex.cursor(titleSegments.get(shard), wordId);
+    }
+
+    // number of docs with the word in the title or the body, over all shards (global idf)
+    public int getDocFreq(int wordId) {
+        PostingCursor docs = PostingCursor.union(getTitleCursor(wordId), getBodyCursor(wordId));
+        int count = 0;
+        while (docs.nextDoc() != PostingCursor.NO_MORE_DOCS) count++;
+        return count;
+    }
+
+    public DocStats getDocStats() {
+        return docStats;
+    }
+
+    public DocValues getDocValues() {
+        return docValues;
+    }
+
+    public LinkGraph getLinkGraph() {
+        return linkGraph;
+    }
+
+    public StaticScores getStaticScores() {
+        return staticScores;
+    }
+
+    public PageTables getPageTables() {
+        return pageTables;
+    }
+
+    // the link graph holds every link of this snapshot only if it was built for its generation (not mid-crawl)
+    public List<String> getChildLinks(int docId) throws IOException {
+        if (linkGraph.getGeneration() == generation) return pageTables.getUrls(linkGraph.children(docId));
+        return pageTables.getChildLinks(docId);
+    }
+
+    public List<String> getParentLinks(int docId) throws IOException {
+        if (linkGraph.getGeneration() == generation) return pageTables.getUrls(linkGraph.parents(docId));
+        return pageTables.getParentLinks(docId);
+    }
+
+    // a search result for the doc, null if the snapshot doesn't know the page
+    public PageResult toResult(int docId, double score) throws IOException {
+        PageResult result = new PageResult();
+        if (docValues.contains(docId)) {
+            result.setTitle(docValues.getTitle(docId));
+            result.setUrl(docValues.getUrl(docId));
+            result.setLastModified(docValues.getLastModified(docId));
+            result.setSize(docValues.getSize(docId));
+        } else {
+            PageInfo pageInfo = pageTables.getPageInfo(docId);
+            if (pageInfo == null) return null;
+            result.setTitle(pageInfo.getTitle());
+            result.setUrl(pageInfo.getUrl());
+            result.setLastModified(pageInfo.getLastModified());
+            result.setSize(pageInfo.getSize());
+        }
+        result.setId(docId);
+        result.setScore(score);
+        result.setChildLinks(getChildLinks(docId));
+        result.setParentLinks(getParentLinks(docId));
+        result.setKeywordsWithFrequency(pageTables.getKeywordSummary(docId)); // top body keywords, precomputed at index time
+        return result;
+    }
+}
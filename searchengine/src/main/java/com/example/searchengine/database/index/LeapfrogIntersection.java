@@ -0,0 +1,59 @@
+package com.example.searchengine.database.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * LeapfrogIntersection.java
+ * Docs present in every one of several cursors. The rarest cursor leads and the
+ * others advance() straight to its candidates, so with skip pointers the cost
+ * follows the shortest list rather than the longest. The cursors are left on
+ * the matching doc, so callers can read their freq and positions.
+ */
+public class LeapfrogIntersection {
+    private final PostingCursor[] cursors; // rarest first
+    private int docId = -1;
+
+    public LeapfrogIntersection(List<PostingCursor> cursors) {
+        this.cursors = cursors.toArray(new PostingCursor[0]);
+        Arrays.sort(this.cursors, Comparator.comparingInt(PostingCursor::cost));
+    }
+
+    // next doc held by all cursors, or PostingCursor.NO_MORE_DOCS
+    public int nextDoc() {
+        if (cursors.length == 0 || docId == PostingCursor.NO_MORE_DOCS) {
+            docId = PostingCursor.NO_MORE_DOCS;
+            return docId;
+        }
+        return align(cursors[0].nextDoc());
+    }
+
+    // first doc >= target held by all cursors
+    public int advance(int target) {
+        if (cursors.length == 0) return docId = PostingCursor.NO_MORE_DOCS;
+        return align(cursors[0].advance(target));
+    }
+
+    public int docId() {
+        return docId;
+    }
+
+    private int align(int candidate) {
+        int i = 1;
+        while (candidate != PostingCursor.NO_MORE_DOCS && i < cursors.length) {
+            int doc = cursors[i].docId() < candidate ? cursors[i].advance(candidate) : cursors[i].docId();
+            if (doc == candidate) {
+                i++;
+            } else if (doc == PostingCursor.NO_MORE_DOCS) {
+                candidate = doc;
+            } else {
+                // overshot: the leader jumps to the new candidate and the round starts over
+                candidate = cursors[0].advance(doc);
+                i = 1;
+            }
+        }
+        docId = candidate;
+        return docId;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.searchengine.database.index;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LinkGraph.java
+ * Memory-mapped compressed sparse row copy of the link graph, keyed by page id:
+ *   header          magic, version, index generation, node count, out bytes length, in bytes length
+ *   crawled         bitset, one bit per page (page has a pageIndex entry)
+ *   out / in        count + 1 int offsets each into their neighbour bytes
+ *   out bytes       per page: sorted child ids, varint deltas
+ *   in bytes        per page: sorted parent ids, varint deltas
+ * Built from parentChildMap after a crawl; the in-links are the inverted out-links.
+ */
+public class LinkGraph {
+    private static final int MAGIC = 0x4C475246; // "LGRF"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4;
+
+    public static final LinkGraph EMPTY = new LinkGraph(ByteBuffer.allocate(0), 0, -1, 0, 0);
+    private static final int[] NONE = new int[0];
+
+    private final ByteBuffer data;
+    private final int count;
+    private final long generation;
+    private final int crawledStart;
+    private final int outOffsetsStart;
+    private final int inOffsetsStart;
+    private final int outStart;
+    private final int inStart;
+
+    private LinkGraph(ByteBuffer data, int count, long generation, int headerSize, int outLength) {
+        this.data = data;
+        this.count = count;
+        this.generation = generation;
+        crawledStart = headerSize;
+        outOffsetsStart = crawledStart + 8 * ((count + 63) / 64);
+        inOffsetsStart = outOffsetsStart + 4 * (count + 1);
+        outStart = inOffsetsStart + 4 * (count + 1);
+        inStart = outStart + outLength;
+    }
+
+    public static LinkGraph open(Path file) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Link graph too large to map: " + file);
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.getInt(0) != MAGIC) throw new IOException("Not a link graph file: " + file);
+        int version = data.getInt(4);
+        if (version != VERSION) throw new IOException("Unsupported link graph version " + version + ": " + file);
+        return new LinkGraph(data, data.getInt(16), data.getLong(8), HEADER_SIZE, data.getInt(20));
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    // page ids are below this
+    public int getNodeCount() {
+        return count;
+    }
+
+    public boolean isCrawled(int pageId) {
+        if (pageId < 0 || pageId >= count) return false;
+        return (data.getLong(crawledStart + 8 * (pageId >>> 6)) & (1L << (pageId & 63))) != 0;
+    }
+
+    // child page ids in ascending order (crawled or not)
+    public int[] children(int pageId) {
+        return neighbours(outOffsetsStart, outStart, pageId);
+    }
+
+    // parent page ids in ascending order (parents always are crawled pages)
+    public int[] parents(int pageId) {
+        return neighbours(inOffsetsStart, inStart, pageId);
+    }
+
+    public int[] crawledChildren(int pageId) {
+        return crawledOnly(children(pageId));
+    }
+
+    public int[] crawledParents(int pageId) {
+        return crawledOnly(parents(pageId));
+    }
+
+    private int[] crawledOnly(int[] ids) {
+        int n = 0;
+        for (int id : ids) {
+            if (isCrawled(id)) ids[n++] = id;
+        }
+        return n == ids.length ? ids : Arrays.copyOf(ids, n);
+    }
+
+    private int[] neighbours(int offsetsStart, int bytesStart, int pageId) {
+        if (pageId < 0 || pageId >= count) return NONE;
+        int from = data.getInt(offsetsStart + 4 * pageId);
+        int to = data.getInt(offsetsStart + 4 * (pageId + 1));
+        if (from == to) return NONE;
+
+        // decode into an upper-bound sized array (each id takes at least one byte)
+        int[] ids = new int[to - from];
+        int n = 0;
+        ByteBuffer in = data.duplicate();
+        in.position(bytesStart + from);
+        int id = 0;
+        while (in.position() < bytesStart + to) {
+            id += VarInt.read(in);
+            ids[n++] = id;
+        }
+        return n == ids.length ? ids : Arrays.copyOf(ids, n);
+    }
+
+    /**
+     * Collects the out-links in heap arrays (pages in any order), then writes the file.
+     */
+    public static class Builder {
+        private final long[] crawled;
+        private final int[][] children;
+
+        public Builder(int count) {
+            crawled = new long[(count + 63) / 64];
+            children = new int[count][];
+        }
+
+        public void setCrawled(int pageId) {
+            crawled[pageId >>> 6] |= 1L << (pageId & 63);
+        }
+
+        // ids outside [0, count) are dropped
+        public void setChildren(int pageId, List<Integer> childIds) {
+            int[] ids = childIds.stream().mapToInt(Integer::intValue)
+                .filter(id -> id >= 0 && id < children.length).sorted().distinct().toArray();
+            children[pageId] = ids;
+        }
+
+        public void write(Path file, long generation) throws IOException {
+            int count = children.length;
+            int[][] parents = invert();
+            ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+            ByteArrayOutputStream inBytes = new ByteArrayOutputStream();
+            int[] outOffsets = encodeAll(outBytes, children);
+            int[] inOffsets = encodeAll(inBytes, parents);
+
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream fileOut = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(generation);
+                out.writeInt(count);
+                out.writeInt(outBytes.size());
+                out.writeInt(inBytes.size());
+                for (long word : crawled) out.writeLong(word);
+                for (int offset : outOffsets) out.writeInt(offset);
+                for (int offset : inOffsets) out.writeInt(offset);
+                outBytes.writeTo(out);
+                inBytes.writeTo(out);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        // parent lists come out sorted since parents are visited in id order
+        private int[][] invert() {
+            int[] inDegree = new int[children.length];
+            for (int[] ids : children) {
+                if (ids == null) continue;
+                for (int id : ids) inDegree[id]++;
+            }
+            int[][] parents = new int[children.length][];
+            for (int i = 0; i < parents.length; i++) parents[i] = new int[inDegree[i]];
+            int[] fill = new int[children.length];
+            for (int parent = 0; parent < children.length; parent++) {
+                if (children[parent] == null) continue;
+                for (int child : children[parent]) parents[child][fill[child]++] = parent;
+            }
+            return parents;
+        }
+
+        // count + 1 offsets; a page without links is empty
+        private static int[] encodeAll(ByteArrayOutputStream bytes, int[][] lists) {
+            int[] offsets = new int[lists.length + 1];
+            for (int i = 0; i < lists.length; i++) {
+                offsets[i] = bytes.size();
+                if (lists[i] == null) continue;
+                int previous = 0;
+                for (int id : lists[i]) {
+                    VarInt.write(bytes, id - previous);
+                    previous = id;
+                }
+            }
+            offsets[lists.length] = bytes.size();
+            return offsets;
+        }
+    }
+}
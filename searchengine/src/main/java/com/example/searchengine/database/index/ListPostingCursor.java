@@ -0,0 +1,99 @@
+package com.example.searchengine.database.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.example.searchengine.model.Posting;
+
+/**
+ * ListPostingCursor.java
+ * Cursor over postings still held in memory (the unflushed segment buffer)
+ */
+class ListPostingCursor implements PostingCursor {
+    private final List<Posting> postings;
+    private final int maxFreq;
+    private int index = -1;
+
+    // postings in insertion order; sorted by doc id here, keeping the newest posting of a doc
+    ListPostingCursor(List<Posting> unsorted) {
+        List<Posting> sorted = new ArrayList<>(unsorted);
+        sorted.sort(Comparator.comparingInt(Posting::getId));
+        List<Posting> deduped = new ArrayList<>(sorted.size());
+        for (Posting p : sorted) {
+            if (!deduped.isEmpty() && deduped.get(deduped.size() - 1).getId() == p.getId()) {
+                deduped.set(deduped.size() - 1, p);
+            } else {
+                deduped.add(p);
+            }
+        }
+        this.postings = deduped;
+        int max = 0;
+        for (Posting p : deduped) max = Math.max(max, p.getFreq());
+        this.maxFreq = max;
+    }
+
+    @Override
+    public int nextDoc() {
+        index++;
+        return docId();
+    }
+
+    @Override
+    public int advance(int target) {
+        if (docId() >= target) return docId();
+        // binary search for the first posting >= target after the current one
+        int lo = index + 1;
+        int hi = postings.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (postings.get(mid).getId() < target) lo = mid + 1;
+            else hi = mid;
+        }
+        index = lo;
+        return docId();
+    }
+
+    @Override
+    public int docId() {
+        if (index < 0) return -1;
+        return index < postings.size() ? postings.get(index).getId() : NO_MORE_DOCS;
+    }
+
+    @Override
+    public int freq() {
+        return postings.get(index).getFreq();
+    }
+
+    @Override
+    public int[] positions() {
+        List<Integer> list = postings.get(index).getPositions();
+        if (list == null) return new int[0];
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) result[i] = list.get(i);
+        return result;
+    }
+
+    @Override
+    public int cost() {
+        return postings.size();
+    }
+
+    // the whole buffer is treated as a single block
+    @Override
+    public int advanceShallow(int target) {
+        if (postings.isEmpty()) return NO_MORE_DOCS;
+        int last = postings.get(postings.size() - 1).getId();
+        return last >= target ? last : NO_MORE_DOCS;
+    }
+
+    @Override
+    public int blockMaxFreq() {
+        return maxFreq;
+    }
+
+    @Override
+    public int maxFreq() {
+        return maxFreq;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.searchengine.database.index;
+
+import java.util.List;
+
+/**
+ * MergedPostingCursor.java
+ * Union of the cursors of one word over several segments (oldest first).
+ * When a doc appears in more than one source the newest source wins,
+ * which is how a re-crawled page replaces its old postings.
+ * Block bounds are the narrowest block end and the largest block max of
+ * the sources, so they stay upper bounds whichever source wins a doc.
+ */
+class MergedPostingCursor implements PostingCursor {
+    private final PostingCursor[] sources;
+    private int docId = -1;
+    private PostingCursor current;
+    private int blockMaxFreq = 0;
+
+    MergedPostingCursor(List<PostingCursor> sources) {
+        this.sources = sources.toArray(new PostingCursor[0]);
+        for (PostingCursor source : this.sources) {
+            source.nextDoc();
+        }
+    }
+
+    @Override
+    public int nextDoc() {
+        // advance the sources still positioned on the previous doc
+        if (docId != -1) {
+            for (PostingCursor source : sources) {
+                if (source.docId() == docId) source.nextDoc();
+            }
+        }
+        return selectMin();
+    }
+
+    @Override
+    public int advance(int target) {
+        if (docId >= target) return docId;
+        for (PostingCursor source : sources) {
+            if (source.docId() < target) source.advance(target);
+        }
+        return selectMin();
+    }
+
+    private int selectMin() {
+        int min = NO_MORE_DOCS;
+        current = null;
+        for (PostingCursor source : sources) { // newer sources come later, so ties resolve to the newest
+            if (source.docId() <= min && source.docId() != NO_MORE_DOCS) {
+                min = source.docId();
+                current = source;
+            }
+        }
+        docId = min;
+        return docId;
+    }
+
+    @Override
+    public int docId() {
+        return docId;
+    }
+
+    @Override
+    public int freq() {
+        return current.freq();
+    }
+
+    @Override
+    public int[] positions() {
+        return current.positions();
+    }
+
+    @Override
+    public int cost() {
+        int cost = 0;
+        for (PostingCursor source : sources) cost += source.cost();
+        return cost;
+    }
+
+    @Override
+    public int advanceShallow(int target) {
+        int last = NO_MORE_DOCS;
+        blockMaxFreq = 0;
+        for (PostingCursor source : sources) {
+            int sourceLast = source.advanceShallow(target);
+            if (sourceLast == NO_MORE_DOCS) continue;
+            last = Math.min(last, sourceLast);
+            blockMaxFreq = Math.max(blockMaxFreq, source.blockMaxFreq());
+        }
+        return last;
+    }
+
+    @Override
+    public int blockMaxFreq() {
+        return blockMaxFreq;
+    }
+
+    @Override
+    public int maxFreq() {
+        int max = 0;
+        for (PostingCursor source : sources) max = Math.max(max, source.maxFreq());
+        return max;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.searchengine.database.index;
+
+import java.util.Arrays;
+
+/**
+ * PostingCursor.java
+ * Forward-only iteration over the postings of one word, in increasing doc id order.
+ * Values are decoded on the fly; positions are only decoded when asked for.
+ */
+public interface PostingCursor {
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    // move to the next doc and return its id, or NO_MORE_DOCS when exhausted
+    int nextDoc();
+
+    // current doc id (-1 before the first nextDoc)
+    int docId();
+
+    int freq();
+
+    int[] positions();
+
+    // number of docs in the list (upper bound when several sources are merged)
+    int cost();
+
+    // move to the first doc >= target and return it, or NO_MORE_DOCS when exhausted
+    default int advance(int target) {
+        int doc = docId();
+        while (doc < target) doc = nextDoc();
+        return doc;
+    }
+
+    // move the block pointer (not the current doc) to the block that may hold target
+    // and return the last doc id of that block, or NO_MORE_DOCS when no block is left
+    int advanceShallow(int target);
+
+    // largest freq inside the block chosen by the last advanceShallow
+    int blockMaxFreq();
+
+    // largest freq of the whole list
+    int maxFreq();
+
+    // docs found in any of the cursors; a doc in several takes freq and positions from the last one
+    static PostingCursor union(PostingCursor... cursors) {
+        return new MergedPostingCursor(Arrays.asList(cursors));
+    }
+
+    PostingCursor EMPTY = new PostingCursor() {
+        public int nextDoc() { return NO_MORE_DOCS; }
+        public int docId() { return NO_MORE_DOCS; }
+        public int freq() { return 0; }
+        public int[] positions() { return new int[0]; }
+        public int cost() { return 0; }
+        public int advanceShallow(int target) { return NO_MORE_DOCS; }
+        public int blockMaxFreq() { return 0; }
+        public int maxFreq() { return 0; }
+    };
+}
@@ -0,0 +1,167 @@
+package com.example.searchengine.database.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.example.searchengine.model.Posting;
+
+/**
+ * Segment.java
+ * Read-only view of one posting segment written by SegmentWriter.
+ * The file is memory-mapped; the term dictionary is copied into arrays,
+ * postings are decoded straight from the mapping by PostingCursor.
+ * The position file is only mapped the first time a cursor asks for positions,
+ * so keyword-only queries never page it in.
+ * Only the current format version is read; other versions are rejected.
+ */
+public class Segment implements Closeable {
+    private final Path file;
+    private final MappedByteBuffer mapped;
+    private final Path positionsFile;
+    private volatile ByteBuffer positionsMapped;
+
+    private final int[] wordIds; // sorted
+    private final int[] docFreqs;
+    private final long[] docOffsets;
+    private final long[] freqOffsets;
+    private final long[] positionOffsets;
+    private final long[] blockOffsets;
+    private final long docsStart;
+    private final long freqsStart;
+    private final long positionsEnd;
+    private final long blocksStart;
+    private final long end;
+
+    public Segment(Path file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Segment too large to map: " + file);
+            }
+            this.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // stays valid after close
+        }
+
+        ByteBuffer header = mapped.duplicate();
+        if (header.getInt() != SegmentWriter.MAGIC) {
+            throw new IOException("Not a posting segment: " + file);
+        }
+        int version = header.getInt();
+        if (version != SegmentWriter.VERSION) {
+            throw new IOException("Unsupported segment version " + version + ": " + file);
+        }
+        int termCount = header.getInt();
+        docsStart = header.getLong();
+        freqsStart = header.getLong();
+        blocksStart = header.getLong();
+        end = header.getLong();
+        positionsEnd = header.getLong();
+        positionsFile = SegmentWriter.positionsFile(file);
+
+        wordIds = new int[termCount];
+        docFreqs = new int[termCount];
+        docOffsets = new long[termCount];
+        freqOffsets = new long[termCount];
+        positionOffsets = new long[termCount];
+        blockOffsets = new long[termCount];
+        ByteBuffer dict = mapped.duplicate().position(SegmentWriter.HEADER_SIZE);
+        for (int i = 0; i < termCount; i++) {
+            wordIds[i] = dict.getInt();
+            docFreqs[i] = dict.getInt();
+            docOffsets[i] = dict.getLong();
+            freqOffsets[i] = dict.getLong();
+            positionOffsets[i] = dict.getLong();
+            blockOffsets[i] = dict.getLong();
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public Path getPositionsFile() {
+        return positionsFile;
+    }
+
+    public long getSizeInBytes() {
+        return end + positionsEnd;
+    }
+
+    public int getTermCount() {
+        return wordIds.length;
+    }
+
+    public int getWordId(int ord) {
+        return wordIds[ord];
+    }
+
+    public int docFreq(int wordId) {
+        int ord = Arrays.binarySearch(wordIds, wordId);
+        return ord < 0 ? 0 : docFreqs[ord];
+    }
+
+    // cursor over the postings of a word, null if the word is not in this segment
+    public PostingCursor cursor(int wordId) {
+        int ord = Arrays.binarySearch(wordIds, wordId);
+        if (ord < 0) return null;
+        return new SegmentPostingCursor(
+            stream(mapped, docsStart, docOffsets, ord, freqsStart),
+            stream(mapped, freqsStart, freqOffsets, ord, blocksStart),
+            () -> stream(positions(), 0, positionOffsets, ord, positionsEnd),
+            stream(mapped, blocksStart, blockOffsets, ord, end),
+            docFreqs[ord]);
+    }
+
+    // decode all postings of a word into objects, null if the word is not in this segment
+    public List<Posting> postings(int wordId) {
+        PostingCursor cursor = cursor(wordId);
+        if (cursor == null) return null;
+
+        List<Posting> result = new ArrayList<>(cursor.cost());
+        while (cursor.nextDoc() != PostingCursor.NO_MORE_DOCS) {
+            List<Integer> posList = new ArrayList<>();
+            for (int pos : cursor.positions()) posList.add(pos);
+            result.add(new Posting(cursor.docId(), cursor.freq(), posList));
+        }
+        return result;
+    }
+
+    // view of a stream for term `ord`; it ends where the next term starts
+    private static ByteBuffer stream(ByteBuffer buffer, long streamStart, long[] offsets, int ord, long streamEnd) {
+        int from = (int) (streamStart + offsets[ord]);
+        int to = (int) (ord + 1 < offsets.length ? streamStart + offsets[ord + 1] : streamEnd);
+        return buffer.slice(from, to - from);
+    }
+
+    // map the position file on first use
+    private ByteBuffer positions() {
+        ByteBuffer result = positionsMapped;
+        if (result != null) return result;
+        synchronized (this) {
+            if (positionsMapped == null) {
+                try (FileChannel channel = FileChannel.open(positionsFile, StandardOpenOption.READ)) {
+                    if (channel.size() > Integer.MAX_VALUE) {
+                        throw new IOException("Position file too large to map: " + positionsFile);
+                    }
+                    positionsMapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return positionsMapped;
+        }
+    }
+
+    @Override
+    public void close() {
+        // the mapping is released by the GC once no cursor references it
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.searchengine.database.index;
+
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+
+/**
+ * SegmentPostingCursor.java
+ * Cursor decoding one term of a mapped segment. Each stream is a private
+ * view of the mapped file, so cursors never share buffer positions.
+ * Block bounds are decoded on first use only; advance() uses their skip
+ * lengths to jump whole blocks without decoding them. The position stream is
+ * only fetched (and its file mapped) when positions() is first called.
+ */
+class SegmentPostingCursor implements PostingCursor {
+    private final ByteBuffer docs;
+    private final ByteBuffer freqs;
+    private final Supplier<ByteBuffer> positionsSource;
+    private ByteBuffer positions;
+    private int positionsStart = 0; // where decoding starts once the position stream is fetched
+    private final ByteBuffer blocks;
+    private final int docFreq;
+
+    private int index = -1;
+    private int docId = -1;
+    private int freq = 0;
+    private int positionsDecodedFor = -1; // docs up to this index have been consumed from the position stream
+    private int[] currentPositions;
+
+    private int[] blockLastDocs;
+    private int[] blockMaxFreqs;
+    private int[] blockDocStarts;      // byte offset of each block in the doc stream
+    private int[] blockFreqStarts;
+    private int[] blockPositionStarts;
+    private int maxFreq;
+    private int block = 0;
+
+    SegmentPostingCursor(ByteBuffer docs, ByteBuffer freqs, Supplier<ByteBuffer> positions, ByteBuffer blocks, int docFreq) {
+        this.docs = docs;
+        this.freqs = freqs;
+        this.positionsSource = positions;
+        this.blocks = blocks;
+        this.docFreq = docFreq;
+    }
+
+    @Override
+    public int nextDoc() {
+        if (++index >= docFreq) {
+            docId = NO_MORE_DOCS;
+            return docId;
+        }
+        docId = (index == 0 ? 0 : docId) + VarInt.read(docs);
+        freq = VarInt.read(freqs);
+        return docId;
+    }
+
+    @Override
+    public int advance(int target) {
+        if (docId >= target) return docId;
+        loadBlocks();
+        int current = Math.max(index, 0) / SegmentWriter.BLOCK_SIZE;
+        int b = current;
+        while (b < blockLastDocs.length && blockLastDocs[b] < target) b++;
+        if (b == blockLastDocs.length) {
+            index = docFreq;
+            docId = NO_MORE_DOCS;
+            return docId;
+        }
+        if (b > current) {
+            // jump to the start of block b; positions of the skipped docs are never read
+            index = b * SegmentWriter.BLOCK_SIZE - 1;
+            docId = blockLastDocs[b - 1];
+            docs.position(blockDocStarts[b]);
+            freqs.position(blockFreqStarts[b]);
+            positionsStart = blockPositionStarts[b];
+            if (positions != null) positions.position(positionsStart);
+            positionsDecodedFor = index;
+        }
+        int doc = docId;
+        while (doc < target) doc = nextDoc();
+        return doc;
+    }
+
+    @Override
+    public int docId() {
+        return docId;
+    }
+
+    @Override
+    public int freq() {
+        return freq;
+    }
+
+    @Override
+    public int[] positions() {
+        if (positionsDecodedFor == index) return currentPositions;
+        if (positions == null) {
+            positions = positionsSource.get();
+            positions.position(positionsStart);
+        }
+        // skip the position blocks of docs that were passed over without reading positions
+        while (positionsDecodedFor < index - 1) {
+            int count = VarInt.read(positions);
+            for (int i = 0; i < count; i++) VarInt.read(positions);
+            positionsDecodedFor++;
+        }
+        int count = VarInt.read(positions);
+        int[] result = new int[count];
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            pos += VarInt.read(positions);
+            result[i] = pos;
+        }
+        positionsDecodedFor = index;
+        currentPositions = result;
+        return result;
+    }
+
+    @Override
+    public int cost() {
+        return docFreq;
+    }
+
+    @Override
+    public int advanceShallow(int target) {
+        loadBlocks();
+        while (block < blockLastDocs.length && blockLastDocs[block] < target) block++;
+        return block < blockLastDocs.length ? blockLastDocs[block] : NO_MORE_DOCS;
+    }
+
+    @Override
+    public int blockMaxFreq() {
+        loadBlocks();
+        return block < blockMaxFreqs.length ? blockMaxFreqs[block] : 0;
+    }
+
+    @Override
+    public int maxFreq() {
+        loadBlocks();
+        return maxFreq;
+    }
+
+    private void loadBlocks() {
+        if (blockLastDocs != null) return;
+        int count = (docFreq + SegmentWriter.BLOCK_SIZE - 1) / SegmentWriter.BLOCK_SIZE;
+        blockLastDocs = new int[count];
+        blockMaxFreqs = new int[count];
+        blockDocStarts = new int[count];
+        blockFreqStarts = new int[count];
+        blockPositionStarts = new int[count];
+        ByteBuffer in = blocks.duplicate().rewind();
+        int lastDoc = 0;
+        for (int i = 0; i < count; i++) {
+            lastDoc += VarInt.read(in);
+            blockLastDocs[i] = lastDoc;
+            blockMaxFreqs[i] = VarInt.read(in);
+            maxFreq = Math.max(maxFreq, blockMaxFreqs[i]);
+            if (i + 1 < count) {
+                blockDocStarts[i + 1] = blockDocStarts[i] + VarInt.read(in);
+                blockFreqStarts[i + 1] = blockFreqStarts[i] + VarInt.read(in);
+                blockPositionStarts[i + 1] = blockPositionStarts[i] + VarInt.read(in);
+            }
+        }
+    }
+}
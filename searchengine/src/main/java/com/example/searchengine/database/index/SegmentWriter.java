@@ -0,0 +1,233 @@
+package com.example.searchengine.database.index;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import com.example.searchengine.model.Posting;
+
+/**
+ * SegmentWriter.java
+ * Write an immutable posting segment file:
+ *   header     magic, version, term count, stream start offsets, position file length
+ *   dictionary one fixed-width entry per word id (sorted) pointing into the streams
+ *   doc stream      doc ids, delta + varint encoded
+ *   freq stream     term frequency per doc, varint
+ *   block stream    per block of BLOCK_SIZE docs: last doc id (delta), max freq and
+ *                   the byte length of the block in the doc, freq and position streams;
+ *                   bounds for block-max top-k evaluation and skip pointers for advance()
+ * and next to it "<segment>.pos" with the position stream (per doc: count, then
+ * positions delta + varint encoded), which only phrase matching ever reads.
+ * Terms must be added in increasing word id order. Each stream is spooled to a
+ * temp file as terms arrive, so writing a segment never holds it in memory.
+ */
+public class SegmentWriter implements Closeable {
+    static final int MAGIC = 0x50534547; // "PSEG"
+    static final int VERSION = 4;
+    static final int HEADER_SIZE = 4 + 4 + 4 + 8 * 5;
+    static final int DICT_ENTRY_SIZE = 4 + 4 + 8 * 4;
+    public static final int BLOCK_SIZE = 128;
+
+    // one stream on its way to disk, with the number of bytes written so far
+    private static class Spool implements Closeable {
+        final Path file;
+        private final OutputStream out;
+        long size = 0;
+
+        Spool(Path file) throws IOException {
+            this.file = file;
+            this.out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+        }
+
+        void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+                size++;
+            }
+            out.write(value);
+            size++;
+        }
+
+        void writeInt(int value) throws IOException {
+            for (int shift = 24; shift >= 0; shift -= 8) out.write(value >>> shift);
+            size += 4;
+        }
+
+        void writeLong(long value) throws IOException {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private final Path file;
+    private int termCount = 0;
+    private int lastWordId = -1;
+    private final Spool dictionary;
+    private final Spool docs;
+    private final Spool freqs;
+    private final Spool positions;
+    private final Spool blocks;
+    private boolean finished = false;
+
+    public SegmentWriter(Path file) throws IOException {
+        this.file = file;
+        this.dictionary = new Spool(tempFile(file, ".dict"));
+        this.docs = new Spool(tempFile(file, ".docs"));
+        this.freqs = new Spool(tempFile(file, ".freqs"));
+        this.positions = new Spool(tempFile(positionsFile(file), ""));
+        this.blocks = new Spool(tempFile(file, ".blocks"));
+    }
+
+    // the position stream of a segment lives next to it
+    public static Path positionsFile(Path segmentFile) {
+        String name = segmentFile.getFileName().toString();
+        if (name.endsWith(".seg")) name = name.substring(0, name.length() - 4);
+        return segmentFile.resolveSibling(name + ".pos");
+    }
+
+    private static Path tempFile(Path file, String stream) {
+        return file.resolveSibling(file.getFileName() + stream + ".tmp");
+    }
+
+    // postings: word id -> postings of that word (any doc order)
+    public static void write(Path file, SortedMap<Integer, List<Posting>> postings) throws IOException {
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            for (Map.Entry<Integer, List<Posting>> entry : postings.entrySet()) {
+                writer.addTerm(entry.getKey(), entry.getValue());
+            }
+            writer.finish();
+        }
+    }
+
+    // postings in any doc order; if a doc appears more than once (re-crawled page) the newest posting is kept
+    public void addTerm(int wordId, List<Posting> postings) throws IOException {
+        addTerm(wordId, new ListPostingCursor(postings));
+    }
+
+    // all postings of the cursor, decoded one doc at a time
+    public void addTerm(int wordId, PostingCursor cursor) throws IOException {
+        if (wordId <= lastWordId) {
+            throw new IllegalArgumentException("Word ids must be added in increasing order: " + wordId);
+        }
+        long docsOffset = docs.size;
+        long freqsOffset = freqs.size;
+        long positionsOffset = positions.size;
+        long blocksOffset = blocks.size;
+
+        int count = 0;
+        int lastDoc = 0;
+        int lastBlockDoc = 0;
+        int blockMaxFreq = 0;
+        long blockDocsStart = docs.size;
+        long blockFreqsStart = freqs.size;
+        long blockPositionsStart = positions.size;
+        int doc = cursor.nextDoc();
+        while (doc != PostingCursor.NO_MORE_DOCS) {
+            docs.writeVarInt(doc - lastDoc);
+            lastDoc = doc;
+            freqs.writeVarInt(cursor.freq());
+            writePositions(positions, cursor.positions());
+            blockMaxFreq = Math.max(blockMaxFreq, cursor.freq());
+            count++;
+
+            doc = cursor.nextDoc();
+            if (count % BLOCK_SIZE == 0 || doc == PostingCursor.NO_MORE_DOCS) {
+                blocks.writeVarInt(lastDoc - lastBlockDoc);
+                blocks.writeVarInt(blockMaxFreq);
+                blocks.writeVarInt((int) (docs.size - blockDocsStart));
+                blocks.writeVarInt((int) (freqs.size - blockFreqsStart));
+                blocks.writeVarInt((int) (positions.size - blockPositionsStart));
+                lastBlockDoc = lastDoc;
+                blockMaxFreq = 0;
+                blockDocsStart = docs.size;
+                blockFreqsStart = freqs.size;
+                blockPositionsStart = positions.size;
+            }
+        }
+        if (count == 0) return;
+        lastWordId = wordId;
+
+        dictionary.writeInt(wordId);
+        dictionary.writeInt(count);
+        dictionary.writeLong(docsOffset);
+        dictionary.writeLong(freqsOffset);
+        dictionary.writeLong(positionsOffset);
+        dictionary.writeLong(blocksOffset);
+        termCount++;
+    }
+
+    // bytes written so far (segment and position file together, header excluded)
+    public long size() {
+        return dictionary.size + docs.size + freqs.size + positions.size + blocks.size;
+    }
+
+    public void finish() throws IOException {
+        dictionary.close();
+        docs.close();
+        freqs.close();
+        positions.close();
+        blocks.close();
+        long docsStart = HEADER_SIZE + (long) termCount * DICT_ENTRY_SIZE;
+        long freqsStart = docsStart + docs.size;
+        long blocksStart = freqsStart + freqs.size;
+        long end = blocksStart + blocks.size;
+
+        // write to temp files first so a crash never leaves a half-written segment;
+        // the segment file goes last, a position file without it is never read
+        Files.move(positions.file, positionsFile(file), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream fileOut = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(termCount);
+            out.writeLong(docsStart);
+            out.writeLong(freqsStart);
+            out.writeLong(blocksStart);
+            out.writeLong(end);
+            out.writeLong(positions.size);
+            Files.copy(dictionary.file, out);
+            Files.copy(docs.file, out);
+            Files.copy(freqs.file, out);
+            Files.copy(blocks.file, out);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        finished = true;
+        close();
+    }
+
+    // drop the spooled streams; before finish() this abandons the segment
+    @Override
+    public void close() throws IOException {
+        for (Spool spool : new Spool[] {dictionary, docs, freqs, positions, blocks}) {
+            spool.close();
+            Files.deleteIfExists(spool.file);
+        }
+        if (!finished) Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".tmp"));
+    }
+
+    private static void writePositions(Spool out, int[] list) throws IOException {
+        // freq and position count normally match, but store the count so decoding never relies on it
+        out.writeVarInt(list.length);
+        int last = 0;
+        for (int pos : list) {
+            out.writeVarInt(pos - last);
+            last = pos;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.searchengine.database.index;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.example.searchengine.model.Posting;
+
+/**
+ * SegmentedIndex.java
+ * One inverted index field (body / title) stored as a list of immutable segments.
+ * New postings are appended to an in-memory buffer and written out as a new
+ * segment on flush, so indexing a page never rewrites existing postings.
+ * After a flush, runs of segments in the same size tier are merged into one
+ * (log-structured merge), which keeps the segment count logarithmic.
+ * Merges stream postings from the source cursors into the new segment, and no
+ * segment grows past MAX_SEGMENT_BYTES, so every file stays mappable and a
+ * merge never needs the postings in memory.
+ * The manifest "<field>.manifest" lists the live segment files, oldest first;
+ * each segment's positions sit beside it in "<segment>.pos".
+ * Segments replaced by a merge go to the retirer, which may hold their files
+ * back while readers of an older snapshot still use them.
+ */
+public class SegmentedIndex implements Closeable {
+    private static final int MANIFEST_VERSION = 1;
+    private static final int MERGE_FACTOR = 10; // merge once this many segments share a size tier
+    private static final long TIER_BASE_BYTES = 64 * 1024;
+    static final long MAX_SEGMENT_BYTES = 1L << 30; // well below the 2GB a single mapping can hold
+
+    private final Path directory;
+    private final String field;
+    private volatile List<Segment> segments = Collections.emptyList(); // replaced as a whole, never modified
+    private int nextSegmentId = 0;
+    private Retirer retirer = SegmentedIndex::delete;
+
+    // buffer / flushing / segments are read together under bufferLock so a reader never misses postings mid-flush
+    private final Object bufferLock = new Object();
+    private TreeMap<Integer, List<Posting>> buffer = new TreeMap<>(); // word id -> postings not yet flushed
+    private TreeMap<Integer, List<Posting>> flushing = null; // buffer being written out as a segment
+
+    // takes over segments that are no longer live
+    public interface Retirer {
+        void retire(List<Segment> segments) throws IOException;
+    }
+
+    public SegmentedIndex(Path directory, String field) throws IOException {
+        this.directory = directory;
+        this.field = field;
+        Files.createDirectories(directory);
+        loadManifest();
+    }
+
+    private Path manifestFile() {
+        return directory.resolve(field + ".manifest");
+    }
+
+    private void loadManifest() throws IOException {
+        Path manifest = manifestFile();
+        if (!Files.exists(manifest)) return;
+
+        List<Segment> loaded = new ArrayList<>();
+        try (InputStream fileIn = Files.newInputStream(manifest);
+             DataInputStream in = new DataInputStream(fileIn)) {
+            int version = in.readInt();
+            if (version != MANIFEST_VERSION) {
+                throw new IOException("Unsupported manifest version " + version + ": " + manifest);
+            }
+            nextSegmentId = in.readInt();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                loaded.add(new Segment(directory.resolve(in.readUTF())));
+            }
+        }
+        segments = Collections.unmodifiableList(loaded);
+    }
+
+    private void writeManifest(List<Segment> live) throws IOException {
+        Path tmp = directory.resolve(field + ".manifest.tmp");
+        try (OutputStream fileOut = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(fileOut)) {
+            out.writeInt(MANIFEST_VERSION);
+            out.writeInt(nextSegmentId);
+            out.writeInt(live.size());
+            for (Segment segment : live) {
+                out.writeUTF(segment.getFile().getFileName().toString());
+            }
+        }
+        Files.move(tmp, manifestFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path newSegmentFile() {
+        return directory.resolve(field + "_" + (nextSegmentId++) + ".seg");
+    }
+
+    public boolean isEmpty() {
+        synchronized (bufferLock) {
+            return segments.isEmpty() && buffer.isEmpty() && flushing == null;
+        }
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    // flushed segments, oldest first; the list never changes, so it can be read without locking
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    public void setRetirer(Retirer retirer) {
+        this.retirer = retirer;
+    }
+
+    // append one posting; constant cost regardless of how many docs already contain the word
+    public void add(int wordId, Posting posting) {
+        synchronized (bufferLock) {
+            buffer.computeIfAbsent(wordId, k -> new ArrayList<>()).add(posting);
+        }
+    }
+
+    // postings of a word across all segments and the buffer, ordered by doc id (newer wins for the same doc)
+    public List<Posting> getPostings(int wordId) {
+        List<Segment> current;
+        List<Posting> buffered;
+        synchronized (bufferLock) {
+            current = segments;
+            buffered = bufferedPostings(wordId);
+        }
+        if (current.size() == 1 && buffered == null) {
+            return current.get(0).postings(wordId);
+        }
+        return mergePostings(current, wordId, buffered);
+    }
+
+    // cursor over a word across all segments and the buffer; never null
+    public PostingCursor cursor(int wordId) {
+        List<Segment> current;
+        List<Posting> buffered;
+        synchronized (bufferLock) {
+            current = segments;
+            buffered = bufferedPostings(wordId);
+        }
+        return cursor(current, wordId, buffered);
+    }
+
+    // cursor over a word in the given segments only (a snapshot); never null
+    public static PostingCursor cursor(List<Segment> segments, int wordId) {
+        return cursor(segments, wordId, null);
+    }
+
+    private static PostingCursor cursor(List<Segment> segments, int wordId, List<Posting> buffered) {
+        List<PostingCursor> sources = new ArrayList<>();
+        for (Segment segment : segments) {
+            PostingCursor cursor = segment.cursor(wordId);
+            if (cursor != null) sources.add(cursor);
+        }
+        if (buffered != null) sources.add(new ListPostingCursor(buffered));
+
+        if (sources.isEmpty()) return PostingCursor.EMPTY;
+        if (sources.size() == 1 && buffered == null) return sources.get(0);
+        return new MergedPostingCursor(sources);
+    }
+
+    // caller holds bufferLock
+    private List<Posting> bufferedPostings(int wordId) {
+        List<Posting> inFlush = flushing == null ? null : flushing.get(wordId);
+        List<Posting> pending = buffer.get(wordId);
+        if (inFlush == null && pending == null) return null;
+        List<Posting> buffered = new ArrayList<>();
+        if (inFlush != null) buffered.addAll(inFlush);
+        if (pending != null) buffered.addAll(pending);
+        return buffered;
+    }
+
+    private static List<Posting> mergePostings(List<Segment> sources, int wordId, List<Posting> buffered) {
+        TreeMap<Integer, Posting> merged = null;
+        for (Segment segment : sources) {
+            List<Posting> postings = segment.postings(wordId);
+            if (postings == null) continue;
+            if (merged == null) merged = new TreeMap<>();
+            for (Posting p : postings) {
+                merged.put(p.getId(), p);
+            }
+        }
+        if (buffered != null) {
+            if (merged == null) merged = new TreeMap<>();
+            for (Posting p : buffered) {
+                merged.put(p.getId(), p);
+            }
+        }
+        return merged == null ? null : new ArrayList<>(merged.values());
+    }
+
+    // write the buffer out as a new segment, then merge segments that share a size tier
+    public synchronized void flush() throws IOException {
+        TreeMap<Integer, List<Posting>> toFlush;
+        synchronized (bufferLock) {
+            if (buffer.isEmpty()) return;
+            toFlush = buffer;
+            flushing = toFlush;
+            buffer = new TreeMap<>();
+        }
+
+        try {
+            List<Segment> live = new ArrayList<>(segments);
+            live.addAll(writeSegments(toFlush));
+            writeManifest(live);
+            synchronized (bufferLock) {
+                segments = Collections.unmodifiableList(live);
+                flushing = null;
+            }
+        } catch (IOException e) {
+            // put the postings back so the next flush retries them
+            synchronized (bufferLock) {
+                toFlush.forEach((wordId, postings) -> buffer.merge(wordId, postings, (older, newer) -> {
+                    List<Posting> all = new ArrayList<>(older);
+                    all.addAll(newer);
+                    return all;
+                }));
+                flushing = null;
+            }
+            throw e;
+        }
+
+        mergeTiers();
+    }
+
+    private void mergeTiers() throws IOException {
+        while (true) {
+            List<Segment> live = segments;
+            int n = live.size();
+            if (n < MERGE_FACTOR) return;
+            int tier = tierOf(live.get(n - 1));
+            long size = 0;
+            for (int i = n - MERGE_FACTOR; i < n; i++) {
+                if (tierOf(live.get(i)) != tier) return;
+                size += live.get(i).getSizeInBytes();
+            }
+            if (size > MAX_SEGMENT_BYTES) return; // segments this large are final
+            merge(n - MERGE_FACTOR, n);
+        }
+    }
+
+    private static int tierOf(Segment segment) {
+        long units = Math.max(1, segment.getSizeInBytes() / TIER_BASE_BYTES);
+        return (int) (Math.log(units) / Math.log(MERGE_FACTOR));
+    }
+
+    // replace segments [from, to) (consecutive, oldest first) by one merged segment
+    private void merge(int from, int to) throws IOException {
+        List<Segment> live = segments;
+        List<Segment> sources = live.subList(from, to);
+
+        Path file = newSegmentFile();
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            for (int wordId : wordIds(sources)) {
+                writer.addTerm(wordId, cursor(sources, wordId));
+            }
+            writer.finish();
+        }
+
+        List<Segment> merged = new ArrayList<>(live.subList(0, from));
+        merged.add(new Segment(file));
+        merged.addAll(live.subList(to, live.size()));
+        writeManifest(merged);
+        synchronized (bufferLock) {
+            segments = Collections.unmodifiableList(merged);
+        }
+        retirer.retire(new ArrayList<>(sources));
+    }
+
+    // sorted, distinct word ids of the given segments
+    private static int[] wordIds(List<Segment> sources) {
+        int total = 0;
+        for (Segment segment : sources) total += segment.getTermCount();
+        int[] ids = new int[total];
+        int n = 0;
+        for (Segment segment : sources) {
+            for (int ord = 0; ord < segment.getTermCount(); ord++) ids[n++] = segment.getWordId(ord);
+        }
+        Arrays.sort(ids);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || ids[distinct - 1] != ids[i]) ids[distinct++] = ids[i];
+        }
+        return Arrays.copyOf(ids, distinct);
+    }
+
+    // write postings as new segments, starting another one whenever the current reaches MAX_SEGMENT_BYTES
+    private List<Segment> writeSegments(SortedMap<Integer, List<Posting>> postings) throws IOException {
+        List<Segment> written = new ArrayList<>();
+        SegmentWriter writer = null;
+        Path file = null;
+        try {
+            for (Map.Entry<Integer, List<Posting>> entry : postings.entrySet()) {
+                if (writer == null) {
+                    file = newSegmentFile();
+                    writer = new SegmentWriter(file);
+                }
+                writer.addTerm(entry.getKey(), entry.getValue());
+                if (writer.size() >= MAX_SEGMENT_BYTES) {
+                    writer.finish();
+                    written.add(new Segment(file));
+                    writer = null;
+                }
+            }
+            if (writer != null) {
+                writer.finish();
+                written.add(new Segment(file));
+                writer = null;
+            }
+        } finally {
+            if (writer != null) writer.close();
+        }
+        return written;
+    }
+
+    // replace every segment by the ones built from the given postings (legacy import)
+    public synchronized void rebuild(SortedMap<Integer, List<Posting>> postings) throws IOException {
+        List<Segment> rebuilt = Collections.unmodifiableList(writeSegments(postings));
+
+        List<Segment> retired = segments;
+        writeManifest(rebuilt);
+        synchronized (bufferLock) {
+            segments = rebuilt;
+            buffer = new TreeMap<>();
+        }
+        retirer.retire(retired);
+    }
+
+    // drop every segment and the manifest (used when the database is cleaned)
+    public synchronized void clear() throws IOException {
+        List<Segment> retired = segments;
+        synchronized (bufferLock) {
+            segments = Collections.emptyList();
+            buffer = new TreeMap<>();
+        }
+        Files.deleteIfExists(manifestFile());
+        delete(retired); // segment ids restart at 0, so the files cannot wait
+        nextSegmentId = 0;
+    }
+
+    public static void delete(List<Segment> retired) throws IOException {
+        for (Segment segment : retired) {
+            segment.close();
+            Files.deleteIfExists(segment.getFile());
+            Files.deleteIfExists(segment.getPositionsFile());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        for (Segment segment : segments) {
+            segment.close();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.searchengine.database.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import com.example.searchengine.model.Posting;
+
+/**
+ * ShardedIndex.java
+ * One inverted index field partitioned by document: all postings of a doc go to shard
+ * shardOf(docId), and each shard is a SegmentedIndex with its own directory, segments
+ * and merges, so a query can score the shards in parallel and merge their top k.
+ * A single shard lives in the index directory itself (the layout from before sharding);
+ * more live in "shard-<k>" subdirectories, shared by the fields.
+ * The shard count is fixed when the index is created; see shardCount().
+ * Only the postings are sharded: the page tables, dictionaries and doc columns stay in
+ * the one record manager store.
+ */
+public class ShardedIndex implements Closeable {
+    private static final String SHARD_PREFIX = "shard-";
+
+    private final Path directory;
+    private final SegmentedIndex[] shards;
+
+    public ShardedIndex(Path directory, String field, int shardCount) throws IOException {
+        this.directory = directory;
+        shards = new SegmentedIndex[Math.max(1, shardCount)];
+        for (int shard = 0; shard < shards.length; shard++) {
+            shards[shard] = new SegmentedIndex(shardDirectory(shard), field);
+        }
+    }
+
+    private Path shardDirectory(int shard) {
+        return shards.length == 1 ? directory : directory.resolve(SHARD_PREFIX + shard);
+    }
+
+    // shard count of the index in the directory, `configured` if there is none yet
+    public static int shardCount(Path directory, int configured) throws IOException {
+        if (!Files.isDirectory(directory)) return configured;
+        try (Stream<Path> files = Files.list(directory)) {
+            if (files.anyMatch(file -> file.getFileName().toString().endsWith(".manifest"))) return 1;
+        }
+        int count = 0;
+        while (Files.isDirectory(directory.resolve(SHARD_PREFIX + count))) count++;
+        return count > 0 ? count : configured;
+    }
+
+    // doc id hash; ids are dense, so this deals them out round robin
+    public static int shardOf(int docId, int shardCount) {
+        return Math.floorMod(Integer.hashCode(docId), shardCount);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public boolean isEmpty() {
+        for (SegmentedIndex shard : shards) {
+            if (!shard.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    public void add(int wordId, Posting posting) {
+        shards[shardOf(posting.getId(), shards.length)].add(wordId, posting);
+    }
+
+    // postings of a word in every shard, ordered by doc id; null if none
+    public List<Posting> getPostings(int wordId) {
+        if (shards.length == 1) return shards[0].getPostings(wordId);
+        List<Posting> all = null;
+        for (SegmentedIndex shard : shards) {
+            List<Posting> postings = shard.getPostings(wordId);
+            if (postings == null) continue;
+            if (all == null) all = new ArrayList<>();
+            all.addAll(postings);
+        }
+        if (all != null) all.sort(Comparator.comparingInt(Posting::getId)); // shards hold disjoint docs
+        return all;
+    }
+
+    // cursor over a word in every shard (flushed and buffered); never null
+    public PostingCursor cursor(int wordId) {
+        if (shards.length == 1) return shards[0].cursor(wordId);
+        List<PostingCursor> sources = new ArrayList<>();
+        for (SegmentedIndex shard : shards) sources.add(shard.cursor(wordId));
+        return union(sources);
+    }
+
+    // cursor over a word in the given segments of every shard (a snapshot); never null
+    public static PostingCursor cursor(List<List<Segment>> shardSegments, int wordId) {
+        if (shardSegments.size() == 1) return SegmentedIndex.cursor(shardSegments.get(0), wordId);
+        List<PostingCursor> sources = new ArrayList<>();
+        for (List<Segment> segments : shardSegments) sources.add(SegmentedIndex.cursor(segments, wordId));
+        return union(sources);
+    }
+
+    private static PostingCursor union(List<PostingCursor> sources) {
+        sources.removeIf(source -> source == PostingCursor.EMPTY);
+        if (sources.isEmpty()) return PostingCursor.EMPTY;
+        if (sources.size() == 1) return sources.get(0);
+        return new MergedPostingCursor(sources);
+    }
+
+    // flushed segments of each shard
+    public List<List<Segment>> getSegments() {
+        List<List<Segment>> segments = new ArrayList<>(shards.length);
+        for (SegmentedIndex shard : shards) segments.add(shard.getSegments());
+        return segments;
+    }
+
+    public void setRetirer(SegmentedIndex.Retirer retirer) {
+        for (SegmentedIndex shard : shards) shard.setRetirer(retirer);
+    }
+
+    public void flush() throws IOException {
+        for (SegmentedIndex shard : shards) shard.flush();
+    }
+
+    // replace every segment by the given postings, split by shard (legacy import)
+    public void rebuild(SortedMap<Integer, List<Posting>> postings) throws IOException {
+        List<SortedMap<Integer, List<Posting>>> split = new ArrayList<>(shards.length);
+        for (int shard = 0; shard < shards.length; shard++) split.add(new TreeMap<>());
+        postings.forEach((wordId, list) -> {
+            for (Posting posting : list) {
+                split.get(shardOf(posting.getId(), shards.length))
+                    .computeIfAbsent(wordId, k -> new ArrayList<>()).add(posting);
+            }
+        });
+        for (int shard = 0; shard < shards.length; shard++) shards[shard].rebuild(split.get(shard));
+    }
+
+    // drop every shard; the shard directories go with the last field cleared,
+    // so a recreated index takes the configured shard count again
+    public void clear() throws IOException {
+        for (int shard = 0; shard < shards.length; shard++) {
+            shards[shard].clear();
+            if (shards.length == 1) continue;
+            try {
+                Files.deleteIfExists(shardDirectory(shard));
+            } catch (DirectoryNotEmptyException e) {
+                // the other field's segments are still there
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (SegmentedIndex shard : shards) shard.close();
+    }
+}
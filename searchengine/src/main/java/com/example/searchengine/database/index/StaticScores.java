@@ -0,0 +1,91 @@
+package com.example.searchengine.database.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * StaticScores.java
+ * Dense per-doc column of query-independent scores, keyed by doc id: the PageRank
+ * of each crawled page divided by the highest one, so blending needs neither a scan
+ * for the max nor a table lookup per doc. NaN means the doc has no score.
+ * Replaced as a whole whenever PageRank finishes; `generation` is the index generation
+ * whose link graph the scores were computed on.
+ */
+public class StaticScores {
+    private static final int MAGIC = 0x5353434F; // "SSCO"
+    private static final int VERSION = 2; // 1 had no generation
+
+    public static final StaticScores EMPTY = new StaticScores(new double[0], -1);
+
+    private final double[] scores;
+    private final long generation;
+
+    private StaticScores(double[] scores, long generation) {
+        this.scores = scores;
+        this.generation = generation;
+    }
+
+    // normalized column of `count` docs from raw scores of the given docs; ids outside the
+    // column are skipped, also when taking the max
+    public static StaticScores of(int count, int[] docIds, double[] rawScores, long generation) {
+        double max = 0;
+        for (int i = 0; i < docIds.length; i++) {
+            if (docIds[i] >= 0 && docIds[i] < count) max = Math.max(max, rawScores[i]);
+        }
+        double[] scores = new double[count];
+        Arrays.fill(scores, Double.NaN);
+        for (int i = 0; i < docIds.length; i++) {
+            if (docIds[i] < 0 || docIds[i] >= count) continue;
+            scores[docIds[i]] = max > 0 ? rawScores[i] / max : 0;
+        }
+        return new StaticScores(scores, generation);
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public boolean contains(int docId) {
+        return docId >= 0 && docId < scores.length && !Double.isNaN(scores[docId]);
+    }
+
+    // normalized score in [0, 1], 0 if the doc has none
+    public double score(int docId) {
+        return contains(docId) ? scores[docId] : 0;
+    }
+
+    public void write(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream fileOut = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            out.writeInt(scores.length);
+            for (double score : scores) out.writeDouble(score);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static StaticScores load(Path file) throws IOException {
+        try (InputStream fileIn = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a static scores file: " + file);
+            int version = in.readInt();
+            if (version != 1 && version != VERSION) throw new IOException("Unsupported static scores version " + version + ": " + file);
+            long generation = version == 1 ? -1 : in.readLong(); // of an unknown generation: out of date
+            double[] scores = new double[in.readInt()];
+            for (int i = 0; i < scores.length; i++) scores[i] = in.readDouble();
+            return new StaticScores(scores, generation);
+        }
+    }
+}
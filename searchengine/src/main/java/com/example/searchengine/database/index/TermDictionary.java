@@ -0,0 +1,199 @@
+package com.example.searchengine.database.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * TermDictionary.java
+ * Immutable in-heap word <-> word id dictionary, stored as one file.
+ * Words are sorted (UTF-8 byte order) and front-coded in blocks of BLOCK_SIZE:
+ * the first word of a block is stored in full, the others as
+ * (shared prefix length, suffix). word -> id is a binary search over the block
+ * heads plus a short scan; id -> word goes through a dense id -> ordinal array.
+ */
+public class TermDictionary {
+    private static final int MAGIC = 0x54444943; // "TDIC"
+    private static final int VERSION = 1;
+    private static final int BLOCK_SIZE = 16;
+
+    public static final TermDictionary EMPTY = new TermDictionary(new byte[0], new int[0], new int[0], new int[0]);
+
+    private final byte[] data; // front-coded words
+    private final int[] blockOffsets; // start of each block in data
+    private final int[] ordinalToId; // sorted position -> word id
+    private final int[] idToOrdinal; // word id -> sorted position, -1 if unused
+
+    private TermDictionary(byte[] data, int[] blockOffsets, int[] ordinalToId, int[] idToOrdinal) {
+        this.data = data;
+        this.blockOffsets = blockOffsets;
+        this.ordinalToId = ordinalToId;
+        this.idToOrdinal = idToOrdinal;
+    }
+
+    public int size() {
+        return ordinalToId.length;
+    }
+
+    // word id, or -1 if the word is not in the dictionary
+    public int getWordId(String word) {
+        if (ordinalToId.length == 0) return -1;
+        byte[] key = word.getBytes(StandardCharsets.UTF_8);
+
+        // last block whose first word <= key
+        int lo = 0;
+        int hi = blockOffsets.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (compare(blockHead(mid), key) <= 0) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(data).position(blockOffsets[lo]);
+        byte[] current = new byte[0];
+        int count = Math.min(BLOCK_SIZE, ordinalToId.length - lo * BLOCK_SIZE);
+        for (int i = 0; i < count; i++) {
+            current = next(in, current, i == 0);
+            int cmp = compare(current, key);
+            if (cmp == 0) return ordinalToId[lo * BLOCK_SIZE + i];
+            if (cmp > 0) break;
+        }
+        return -1;
+    }
+
+    // word of an id, or null if the id is not in the dictionary
+    public String getWord(int wordId) {
+        if (wordId < 0 || wordId >= idToOrdinal.length || idToOrdinal[wordId] < 0) return null;
+        int ordinal = idToOrdinal[wordId];
+        int block = ordinal / BLOCK_SIZE;
+        ByteBuffer in = ByteBuffer.wrap(data).position(blockOffsets[block]);
+        byte[] current = new byte[0];
+        for (int i = block * BLOCK_SIZE; i <= ordinal; i++) {
+            current = next(in, current, i == block * BLOCK_SIZE);
+        }
+        return new String(current, StandardCharsets.UTF_8);
+    }
+
+    // visit every (word, id) pair in sorted order
+    public void forEach(ObjIntConsumer<String> visitor) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        byte[] current = new byte[0];
+        for (int i = 0; i < ordinalToId.length; i++) {
+            current = next(in, current, i % BLOCK_SIZE == 0);
+            visitor.accept(new String(current, StandardCharsets.UTF_8), ordinalToId[i]);
+        }
+    }
+
+    private byte[] blockHead(int block) {
+        return next(ByteBuffer.wrap(data).position(blockOffsets[block]), new byte[0], true);
+    }
+
+    private static byte[] next(ByteBuffer in, byte[] previous, boolean blockStart) {
+        int shared = blockStart ? 0 : VarInt.read(in);
+        int suffix = VarInt.read(in);
+        byte[] word = Arrays.copyOf(previous, shared + suffix);
+        in.get(word, shared, suffix);
+        return word;
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, b);
+    }
+
+    /************* build / load ****************/
+
+    public static TermDictionary build(Map<String, Integer> words) {
+        List<byte[]> sorted = new ArrayList<>(words.size());
+        for (String word : words.keySet()) {
+            sorted.add(word.getBytes(StandardCharsets.UTF_8));
+        }
+        sorted.sort(TermDictionary::compare);
+
+        int maxId = -1;
+        for (int id : words.values()) maxId = Math.max(maxId, id);
+        int[] ordinalToId = new int[sorted.size()];
+        int[] idToOrdinal = new int[maxId + 1];
+        Arrays.fill(idToOrdinal, -1);
+        int[] blockOffsets = new int[(sorted.size() + BLOCK_SIZE - 1) / BLOCK_SIZE];
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] previous = new byte[0];
+        for (int i = 0; i < sorted.size(); i++) {
+            byte[] word = sorted.get(i);
+            int id = words.get(new String(word, StandardCharsets.UTF_8));
+            ordinalToId[i] = id;
+            idToOrdinal[id] = i;
+
+            if (i % BLOCK_SIZE == 0) {
+                blockOffsets[i / BLOCK_SIZE] = data.size();
+                VarInt.write(data, word.length);
+                data.write(word, 0, word.length);
+            } else {
+                int shared = Arrays.mismatch(previous, word);
+                if (shared < 0) shared = word.length; // cannot happen for distinct words
+                VarInt.write(data, shared);
+                VarInt.write(data, word.length - shared);
+                data.write(word, shared, word.length - shared);
+            }
+            previous = word;
+        }
+        return new TermDictionary(data.toByteArray(), blockOffsets, ordinalToId, idToOrdinal);
+    }
+
+    public void write(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream fileOut = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ordinalToId.length);
+            out.writeInt(idToOrdinal.length);
+            out.writeInt(data.length);
+            out.write(data);
+            for (int offset : blockOffsets) out.writeInt(offset);
+            for (int id : ordinalToId) out.writeInt(id);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static TermDictionary load(Path file) throws IOException {
+        try (InputStream fileIn = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a term dictionary: " + file);
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported term dictionary version " + version + ": " + file);
+            int termCount = in.readInt();
+            int idSpace = in.readInt();
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            int[] blockOffsets = new int[(termCount + BLOCK_SIZE - 1) / BLOCK_SIZE];
+            for (int i = 0; i < blockOffsets.length; i++) blockOffsets[i] = in.readInt();
+            int[] ordinalToId = new int[termCount];
+            int[] idToOrdinal = new int[idSpace];
+            Arrays.fill(idToOrdinal, -1);
+            for (int i = 0; i < termCount; i++) {
+                ordinalToId[i] = in.readInt();
+                idToOrdinal[ordinalToId[i]] = i;
+            }
+            return new TermDictionary(data, blockOffsets, ordinalToId, idToOrdinal);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.searchengine.database.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * VarInt.java
+ * Variable-length encoding for non-negative ints (7 bits per byte, high bit = continue)
+ * used by the posting segment streams and the JDBM record serializers
+ */
+public final class VarInt {
+
+    private VarInt() {}
+
+    public static void write(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    // read one value at the buffer's current position
+    public static int read(ByteBuffer buffer) {
+        int b = buffer.get();
+        int value = b & 0x7F;
+        int shift = 7;
+        while ((b & 0x80) != 0) {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    public static void write(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int read(DataInput in) throws IOException {
+        int b = in.readByte();
+        int value = b & 0x7F;
+        int shift = 7;
+        while ((b & 0x80) != 0) {
+            b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.searchengine.database.serializer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// page rank scores
+public class DoubleSerializer extends RecordSerializer<Double> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void write(DataOutputStream out, Double value) throws IOException {
+        out.writeDouble(value);
+    }
+
+    @Override
+    protected Double read(DataInputStream in) throws IOException {
+        return in.readDouble();
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.searchengine.database.serializer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.example.searchengine.database.IndexMetadata;
+
+public class IndexMetadataSerializer extends RecordSerializer<IndexMetadata> {
+    private static final long serialVersionUID = 1L;
+    private static final int VERSION = 1;
+
+    @Override
+    protected void write(DataOutputStream out, IndexMetadata metadata) throws IOException {
+        out.writeInt(VERSION);
+        out.writeInt(metadata.pageidCounter);
+        out.writeInt(metadata.wordidCounter);
+        out.writeInt(metadata.indexedPageCount);
+        out.writeLong(metadata.totalTokens);
+        out.writeLong(metadata.generation);
+    }
+
+    @Override
+    protected IndexMetadata read(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported index metadata version " + version);
+        }
+        return new IndexMetadata(in.readInt(), in.readInt(), in.readInt(), in.readLong(), in.readLong());
+    }
+}
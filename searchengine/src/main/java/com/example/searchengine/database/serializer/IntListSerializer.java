@@ -0,0 +1,32 @@
+package com.example.searchengine.database.serializer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.searchengine.database.index.VarInt;
+
+// List<Integer> of parentChildMap / childParentMap, order kept
+public class IntListSerializer extends RecordSerializer<List<Integer>> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void write(DataOutputStream out, List<Integer> value) throws IOException {
+        VarInt.write(out, value.size());
+        for (int id : value) {
+            VarInt.write(out, id);
+        }
+    }
+
+    @Override
+    protected List<Integer> read(DataInputStream in) throws IOException {
+        int size = VarInt.read(in);
+        List<Integer> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(VarInt.read(in));
+        }
+        return list;
+    }
+}
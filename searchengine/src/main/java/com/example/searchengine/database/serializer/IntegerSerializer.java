@@ -0,0 +1,22 @@
+package com.example.searchengine.database.serializer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.example.searchengine.database.index.VarInt;
+
+// page id / word id values of pageMap and wordMap
+public class IntegerSerializer extends RecordSerializer<Integer> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void write(DataOutputStream out, Integer value) throws IOException {
+        VarInt.write(out, value);
+    }
+
+    @Override
+    protected Integer read(DataInputStream in) throws IOException {
+        return VarInt.read(in);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.searchengine.database.serializer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.searchengine.database.index.VarInt;
+import com.example.searchengine.model.KeywordFrequency;
+
+// List<KeywordFrequency> of keywordSummary: (word, freq) pairs, order kept
+public class KeywordListSerializer extends RecordSerializer<List<KeywordFrequency>> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void write(DataOutputStream out, List<KeywordFrequency> value) throws IOException {
+        VarInt.write(out, value.size());
+        for (KeywordFrequency keyword : value) {
+            writeString(out, keyword.getKeyword());
+            VarInt.write(out, keyword.getFrequency());
+        }
+    }
+
+    @Override
+    protected List<KeywordFrequency> read(DataInputStream in) throws IOException {
+        int size = VarInt.read(in);
+        List<KeywordFrequency> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(new KeywordFrequency(readString(in), VarInt.read(in)));
+        }
+        return list;
+    }
+}
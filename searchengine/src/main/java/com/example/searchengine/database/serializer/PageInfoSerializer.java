@@ -0,0 +1,60 @@
+package com.example.searchengine.database.serializer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.example.searchengine.database.index.VarInt;
+import com.example.searchengine.model.PageInfo;
+
+// pageIndex values: page fields followed by the body / title word lists as (word id, freq) pairs
+public class PageInfoSerializer extends RecordSerializer<PageInfo> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void write(DataOutputStream out, PageInfo page) throws IOException {
+        writeString(out, page.url);
+        writeString(out, page.title);
+        VarInt.write(out, page.size);
+        out.writeLong(page.lastModified == null ? Long.MIN_VALUE : page.lastModified.getTime());
+        writeWordList(out, page.bodyWordList);
+        writeWordList(out, page.titleWordList);
+    }
+
+    @Override
+    protected PageInfo read(DataInputStream in) throws IOException {
+        PageInfo page = new PageInfo(readString(in));
+        page.title = readString(in);
+        page.size = VarInt.read(in);
+        long lastModified = in.readLong();
+        page.lastModified = lastModified == Long.MIN_VALUE ? null : new Date(lastModified);
+        page.bodyWordList = readWordList(in);
+        page.titleWordList = readWordList(in);
+        return page;
+    }
+
+    private static void writeWordList(DataOutputStream out, Map<Integer, Integer> words) throws IOException {
+        if (words == null) {
+            VarInt.write(out, 0);
+            return;
+        }
+        VarInt.write(out, words.size() + 1);
+        for (Map.Entry<Integer, Integer> entry : words.entrySet()) {
+            VarInt.write(out, entry.getKey());
+            VarInt.write(out, entry.getValue());
+        }
+    }
+
+    private static Map<Integer, Integer> readWordList(DataInputStream in) throws IOException {
+        int size = VarInt.read(in) - 1;
+        if (size < 0) return null;
+        Map<Integer, Integer> words = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            words.put(VarInt.read(in), VarInt.read(in));
+        }
+        return words;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.searchengine.database.serializer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.example.searchengine.database.index.VarInt;
+import com.example.searchengine.model.KeywordFrequency;
+import com.example.searchengine.model.PageResult;
+
+// PageResult as sent between search nodes; null lists and dates are kept
+public class PageResultSerializer extends RecordSerializer<PageResult> {
+    private static final long serialVersionUID = 1L;
+
+    private final KeywordListSerializer keywordSerializer = new KeywordListSerializer();
+
+    @Override
+    protected void write(DataOutputStream out, PageResult value) throws IOException {
+        out.writeInt(value.getId() == null ? -1 : value.getId());
+        out.writeDouble(value.getScore() == null ? 0 : value.getScore());
+        writeString(out, value.getTitle());
+        writeString(out, value.getUrl());
+        out.writeLong(value.getLastModified() == null ? Long.MIN_VALUE : value.getLastModified().getTime());
+        out.writeInt(value.getSize());
+        out.writeBoolean(value.getKeywordsWithFrequency() != null);
+        if (value.getKeywordsWithFrequency() != null) keywordSerializer.write(out, value.getKeywordsWithFrequency());
+        writeStrings(out, value.getChildLinks());
+        writeStrings(out, value.getParentLinks());
+    }
+
+    @Override
+    protected PageResult read(DataInputStream in) throws IOException {
+        PageResult result = new PageResult();
+        int id = in.readInt();
+        result.setId(id == -1 ? null : id);
+        result.setScore(in.readDouble());
+        result.setTitle(readString(in));
+        result.setUrl(readString(in));
+        long lastModified = in.readLong();
+        result.setLastModified(lastModified == Long.MIN_VALUE ? null : new Date(lastModified));
+        result.setSize(in.readInt());
+        List<KeywordFrequency> keywords = in.readBoolean() ? keywordSerializer.read(in) : null;
+        result.setKeywordsWithFrequency(keywords);
+        result.setChildLinks(readStrings(in));
+        result.setParentLinks(readStrings(in));
+        return result;
+    }
+
+    // size + 1 (0 = null), then the strings
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        if (values == null) {
+            VarInt.write(out, 0);
+            return;
+        }
+        VarInt.write(out, values.size() + 1);
+        for (String value : values) writeString(out, value);
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = VarInt.read(in) - 1;
+        if (size < 0) return null;
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) values.add(readString(in));
+        return values;
+    }
+
+    // a whole result list, for the shard search endpoint
+    public void writeList(DataOutputStream out, List<PageResult> results) throws IOException {
+        VarInt.write(out, results.size());
+        for (PageResult result : results) write(out, result);
+    }
+
+    public List<PageResult> readList(DataInputStream in) throws IOException {
+        int size = VarInt.read(in);
+        List<PageResult> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) results.add(read(in));
+        return results;
+    }
+}
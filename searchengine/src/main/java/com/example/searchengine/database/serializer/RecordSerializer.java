@@ -0,0 +1,61 @@
+package com.example.searchengine.database.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.example.searchengine.database.index.VarInt;
+
+import jdbm.helper.Serializer;
+
+/**
+ * RecordSerializer.java
+ * Base class for the hand-written JDBM value serializers: subclasses only
+ * write / read the fields, no class descriptors or boxed values are stored.
+ */
+public abstract class RecordSerializer<T> implements Serializer {
+    private static final long serialVersionUID = 1L;
+
+    protected abstract void write(DataOutputStream out, T value) throws IOException;
+
+    protected abstract T read(DataInputStream in) throws IOException;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public byte[] serialize(Object obj) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out, (T) obj);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] serialized) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(serialized))) {
+            return read(in);
+        }
+    }
+
+    // null-safe string without the 64KB limit of writeUTF
+    protected static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            VarInt.write(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        VarInt.write(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    protected static String readString(DataInputStream in) throws IOException {
+        int length = VarInt.read(in);
+        if (length == 0) return null;
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.searchengine.database.serializer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// URL / word values of pageidMap and wordidMap
+public class StringSerializer extends RecordSerializer<String> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void write(DataOutputStream out, String value) throws IOException {
+        writeString(out, value);
+    }
+
+    @Override
+    protected String read(DataInputStream in) throws IOException {
+        return readString(in);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.searchengine.model;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+/**
+ * FetchedPage.java
+ * Everything the crawler needs from one download of a page: title, body text, outgoing links
+ * and the header fields. Extracted once from the parsed document, which can then be dropped;
+ * page info, indexing and link extraction all read from here instead of fetching again.
+ */
+public class FetchedPage {
+    private final String url;
+    private final String title;
+    private final String bodyText;
+    private final List<String> links; // absolute http(s) links, in page order
+    private final Date lastModified; // null if the page has none
+    private final int size;
+
+    public FetchedPage(String url, String title, String bodyText, List<String> links, Date lastModified, int size) {
+        this.url = url;
+        this.title = title;
+        this.bodyText = bodyText;
+        this.links = Collections.unmodifiableList(links);
+        this.lastModified = lastModified;
+        this.size = size;
+    }
+
+    public static FetchedPage of(String url, Document doc) {
+        Element body = doc.body();
+        return new FetchedPage(url, doc.title(), body == null ? "" : body.text(), extractLinks(doc),
+            extractLastModified(doc), extractSize(doc));
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getBodyText() {
+        return bodyText;
+    }
+
+    public List<String> getLinks() {
+        return links;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    private static List<String> extractLinks(Document doc) {
+        List<String> links = new ArrayList<>();
+        Elements linkElements = doc.select("a[href]");
+        for (Element linkElement : linkElements) {
+            String link = linkElement.attr("abs:href");
+            // Check if the link starts with "http" or "https"
+            if (link.startsWith("http://") || link.startsWith("https://")) {
+                links.add(link);
+            }
+        }
+        return links;
+    }
+
+    private static int extractSize(Document doc) {
+        String contentLengthHeader = doc.connection().response().header("Content-Length");
+        if (contentLengthHeader != null) {
+            return Integer.parseInt(contentLengthHeader);
+        } else {
+            // Fallback to calculating the size if Content-Length is not available
+            return doc.html().length();
+        }
+    }
+
+    // Method to get the last modified date as a Date object
+    private static Date extractLastModified(Document doc) {
+        // Check the HTTP headers first
+        String lastModifiedHeader = doc.connection().response().header("Last-Modified");
+        if (lastModifiedHeader != null) {
+            return parseHttpDate(lastModifiedHeader);
+        }
+
+        // If the header is not available, check for a <meta> tag
+        Elements metaTags = doc.select("meta[name=last-modified]");
+        if (!metaTags.isEmpty()) {
+            String metaDate = metaTags.first().attr("content");
+            return parseHttpDate(metaDate);
+        }
+
+        // If no last modified date is found, return null
+        return null;
+    }
+
+    // Helper method to parse HTTP date strings
+    private static Date parseHttpDate(String dateString) {
+        try {
+            // First try with the standard format
+            return new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US).parse(dateString);
+        } catch (ParseException e) {
+            try {
+                // If that fails, try replacing GMT with UTC
+                String modifiedDate = dateString.replace("GMT", "UTC");
+                return new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US).parse(modifiedDate);
+            } catch (ParseException e2) {
+                System.err.println("Error parsing date: " + dateString);
+                return null;
+            }
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.searchengine.model;
 
 import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public class KeywordFrequency implements Serializable{
     private static final long serialVersionUID = 100L; // Add a unique ID for serialization
@@ -16,4 +19,13 @@ public class KeywordFrequency implements Serializable{
     // Getters
     public String getKeyword() { return keyword; }
     public Integer getFrequency() { return frequency; }
+
+    // the `limit` most frequent words, by frequency descending then word
+    public static List<KeywordFrequency> top(Map<String, Integer> frequencies, int limit) {
+        return frequencies.entrySet().stream()
+            .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+            .limit(limit)
+            .map(entry -> new KeywordFrequency(entry.getKey(), entry.getValue()))
+            .collect(Collectors.toList());
+    }
 }
\ No newline at end of file
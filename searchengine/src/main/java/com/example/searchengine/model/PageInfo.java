@@ -1,16 +1,8 @@
 package com.example.searchengine.model;
 
-import java.io.IOException;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.Map;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Locale;
-
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
 
 public class PageInfo implements Serializable{
     private static final long serialVersionUID = 166343184618498918L;
@@ -53,62 +45,16 @@ public class PageInfo implements Serializable{
         this.titleWordList = titleWordList;
     }
 
-    public void extractInfo() throws IOException {
-        Document doc = Jsoup.connect(url).get();
-        this.title = doc.title();
-        this.lastModified = extractLastModified(doc);
-        this.size = extractSize(doc);
+    // title, size and last modified of the downloaded page (now if it has no date)
+    public void extractInfo(FetchedPage page) {
+        this.title = page.getTitle();
+        this.lastModified = page.getLastModified();
+        this.size = page.getSize();
         if(this.lastModified == null) {
             this.lastModified = new Date();
         }
     }
 
-    private int extractSize(Document doc) {
-        String contentLengthHeader = doc.connection().response().header("Content-Length");
-        if (contentLengthHeader != null) {
-            return Integer.parseInt(contentLengthHeader);
-        } else {
-            // Fallback to calculating the size if Content-Length is not available
-            return doc.html().length();
-        }
-    }
-
-    // Method to get the last modified date as a Date object
-    private static Date extractLastModified(Document doc) {
-        // Check the HTTP headers first
-        String lastModifiedHeader = doc.connection().response().header("Last-Modified");
-        if (lastModifiedHeader != null) {
-            return parseHttpDate(lastModifiedHeader);
-        }
-
-        // If the header is not available, check for a <meta> tag
-        Elements metaTags = doc.select("meta[name=last-modified]");
-        if (!metaTags.isEmpty()) {
-            String metaDate = metaTags.first().attr("content");
-            return parseHttpDate(metaDate);
-        }
-
-        // If no last modified date is found, return null
-        return null;
-    }
-
-    // Helper method to parse HTTP date strings 
-    private static Date parseHttpDate(String dateString) {
-        try {
-            // First try with the standard format
-            return new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US).parse(dateString);
-        } catch (ParseException e) {
-            try {
-                // If that fails, try replacing GMT with UTC
-                String modifiedDate = dateString.replace("GMT", "UTC");
-                return new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US).parse(modifiedDate);
-            } catch (ParseException e2) {
-                System.err.println("Error parsing date: " + dateString);
-                return null;
-            }
-        }
-    }
-
     // for debug
     public void printPageInfo() {
         System.out.println("URL: " + url);
@@ -8,152 +8,136 @@ import java.util.Date;
 //import java.util.HashSet;
 import java.util.List;
 //import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Map;
 //import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.ReentrantLock;
 import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
+import com.example.searchengine.database.CommitCoordinator;
 import com.example.searchengine.database.DbManage;
+import com.example.searchengine.model.FetchedPage;
 import com.example.searchengine.model.PageInfo;
 
 @Service
 public class CrawlerService implements DisposableBean {
-    private final BlockingQueue<String> urlQueue = new LinkedBlockingQueue<>(); // thread-safe queue
     private final Set<String> visitedUrl = ConcurrentHashMap.newKeySet(); // thread-safe set
     private final IndexerService indexer;
     private final DbManage dbManage;
     private final PageRankService pageRankService;
-    private final ExecutorService executorService;
     private final AtomicInteger pagesCrawled = new AtomicInteger(0);
-    private final ReentrantLock dbLock = new ReentrantLock();
     private volatile boolean isCrawling = false;
-
-    public CrawlerService(DbManage dbManage, IndexerService indexer, PageRankService pageRankService) {
+    private volatile HostScheduler scheduler; // frontier of the running crawl
+    private final boolean bulkLoadEnabled; // crawls into an empty database go to a staging store
+    private final int maxConnections; // fetches in flight, over all hosts
+    private final int maxConnectionsPerHost;
+    private final long hostDelayMillis; // between two fetches of one host
+
+    public CrawlerService(DbManage dbManage, IndexerService indexer, PageRankService pageRankService,
+            @Value("${db.bulk-load:true}") boolean bulkLoadEnabled,
+            @Value("${crawler.max-connections:1000}") int maxConnections,
+            @Value("${crawler.max-connections-per-host:2}") int maxConnectionsPerHost,
+            @Value("${crawler.host-delay-ms:500}") long hostDelayMillis) {
         this.dbManage = dbManage;
         this.indexer = indexer;
         this.pageRankService = pageRankService;
-        // Create a thread pool with number of threads equal to available processors
-        this.executorService = Executors.newFixedThreadPool(20);
+        this.bulkLoadEnabled = bulkLoadEnabled;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.hostDelayMillis = hostDelayMillis;
     }
 
     public void crawl(String startingUrl, int maxPages) throws IOException {
+        if (dbManage.isReadOnly()) {
+            throw new IllegalStateException("Read replica: crawl on the primary");
+        }
         if (isCrawling) {
             throw new IllegalStateException("Crawling is already in progress");
         }
 
         // Clear previous crawl results
         visitedUrl.clear();
-        urlQueue.clear();
         pagesCrawled.set(0);
         isCrawling = true;
+        try {
+            boolean bulkLoad = bulkLoadEnabled && dbManage.canBulkLoad();
+            if (bulkLoad) {
+                dbManage.beginBulkLoad();
+            }
 
-        // Add starting URL to queue
-        urlQueue.add(startingUrl);
-        List<Future<?>> futures = new ArrayList<>();
-        CountDownLatch latch = new CountDownLatch(1);
-        AtomicBoolean isProcessing = new AtomicBoolean(true);
-        AtomicInteger activeThreads = new AtomicInteger(0);
-
-        // Start a thread to monitor the crawling progress
-        executorService.submit(() -> {
-            try {
-                while (isProcessing.get() && pagesCrawled.get() < maxPages) {
-                    String currentUrl = urlQueue.poll(1, TimeUnit.SECONDS);
-                    if (currentUrl == null) {
-                        // Only break if we have no active threads and no URLs in queue
-                        if (activeThreads.get() == 0 && urlQueue.isEmpty()) {
-                            break;
+            // one virtual thread per fetch, handed URLs by the per-host scheduler; closing the
+            // executor waits for the fetches still in flight
+            HostScheduler scheduler = new HostScheduler(maxConnections, maxConnectionsPerHost, hostDelayMillis,
+                () -> maxPages - pagesCrawled.get());
+            this.scheduler = scheduler;
+            scheduler.offer(startingUrl);
+            long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(3);
+            try (ExecutorService fetchers = Executors.newVirtualThreadPerTaskExecutor()) {
+                String url;
+                while ((url = scheduler.take(deadline)) != null) {
+                    String currentUrl = url;
+                    fetchers.submit(() -> {
+                        try {
+                            processUrl(currentUrl, maxPages, scheduler);
+                        } catch (Exception e) {
+                            System.err.println("Error processing URL " + currentUrl + ": " + e.getMessage());
+                        } finally {
+                            scheduler.done(currentUrl);
                         }
-                        continue;
-                    }
-
-                    if (!visitedUrl.contains(currentUrl)) {
-                        activeThreads.incrementAndGet();
-                        Future<?> future = executorService.submit(() -> {
-                            try {
-                                processUrl(currentUrl, maxPages);
-                            } catch (Exception e) {
-                                System.err.println("Error processing URL " + currentUrl + ": " + e.getMessage());
-                            } finally {
-                                activeThreads.decrementAndGet();
-                            }
-                        });
-                        futures.add(future);
-                    }
+                    });
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    System.out.println("Crawling timed out after 3 minutes");
                 }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             } finally {
-                isProcessing.set(false);
-                latch.countDown();
+                scheduler.close();
+                this.scheduler = null;
             }
-        });
+            System.out.println("Hosts crawled: " + scheduler.getHostCount());
 
-        try {
-            // Wait for the crawling to complete or timeout after 1 minute
-            if (!latch.await(3, TimeUnit.MINUTES)) {
-                System.out.println("Crawling timed out after 3 minute");
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+            System.out.println("Final pages crawled: " + pagesCrawled.get());
 
-        // Wait for all submitted tasks to complete
-        for (Future<?> future : futures) {
+            // Final database commit and verification
             try {
-                future.get(30, TimeUnit.SECONDS);
-            } catch (Exception e) {
-                System.err.println("Error waiting for crawl task: " + e.getMessage());
-            }
-        }
+                dbManage.commit(CommitCoordinator.Durability.SYNC);
+                System.out.println("Final database commit completed");
+                dbManage.rebuildTermDictionary();
+                dbManage.rebuildDocColumns(); // idf changed: refresh the doc stats / doc values columns
+                dbManage.rebuildLinkGraph(); // compressed link graph for PageRank and the result links
+                if (bulkLoad) {
+                    dbManage.finishBulkLoad(); // swap the staging store in
+                }
+
+                // Verify the number of pages in the database
+                int pagesInDb = dbManage.getPageCount();
+                System.out.println("Pages in database: " + pagesInDb);
 
-        // Final check to ensure we've processed all URLs
-        while (!urlQueue.isEmpty() && pagesCrawled.get() < maxPages) {
-            String currentUrl = urlQueue.poll();
-            if (currentUrl != null && !visitedUrl.contains(currentUrl)) {
-                try {
-                    processUrl(currentUrl, maxPages);
-                } catch (Exception e) {
-                    System.err.println("Error in final URL processing: " + e.getMessage());
+                /*if (pagesInDb != pagesCrawled.get()) {
+                    System.err.println("Warning: Discrepancy between crawled pages (" + pagesCrawled.get() + 
+                                     ") and pages in database (" + pagesInDb + ")");
+                }*/
+            } catch (Exception e) {
+                System.err.println("Error during final database commit: " + e.getMessage());
+                if (bulkLoad) {
+                    dbManage.abortBulkLoad(); // the live store is left as it was, unless the staging store was already complete
                 }
             }
-        }
 
-        System.out.println("Final pages crawled: " + pagesCrawled.get());
-        
-        // Final database commit and verification
-        try {
-            dbManage.commit();
-            System.out.println("Final database commit completed");
-            
-            // Verify the number of pages in the database
-            int pagesInDb = dbManage.getPageCount();
-            System.out.println("Pages in database: " + pagesInDb);
-            
-            /*if (pagesInDb != pagesCrawled.get()) {
-                System.err.println("Warning: Discrepancy between crawled pages (" + pagesCrawled.get() + 
-                                 ") and pages in database (" + pagesInDb + ")");
-            }*/
-        } catch (Exception e) {
-            System.err.println("Error during final database commit: " + e.getMessage());
+            pageRankService.computePageRank();
+        } finally {
+            isCrawling = false; // also after a failed bulk load or PageRank run
         }
-        
-        pageRankService.computePageRank();
-        isCrawling = false;
     }
 
-    private void processUrl(String currentUrl, int maxPages) throws IOException {
+    private void processUrl(String currentUrl, int maxPages, HostScheduler scheduler) throws IOException {
         // First check if URL is already visited or max pages reached
         if (visitedUrl.contains(currentUrl)) {
             return;
@@ -165,17 +149,20 @@ public class CrawlerService implements DisposableBean {
         }
 
         System.out.println("Visiting: " + currentUrl + " (Pages crawled: " + pagesCrawled.get() + ")");
-        PageInfo pageInfo = new PageInfo(currentUrl);
+        // the one download of the page, outside the lock; indexing and links read from it
+        FetchedPage page;
         try {
-            pageInfo.extractInfo();
+            page = fetchPage(currentUrl);
         } catch (IOException e) {
-            System.err.println("Failed to extract page info from " + currentUrl + ": " + e.getMessage());
+            System.err.println("Failed to fetch " + currentUrl + ": " + e.getMessage());
             visitedUrl.add(currentUrl);
             return;
         }
+        PageInfo pageInfo = new PageInfo(currentUrl);
+        pageInfo.extractInfo(page);
 
-        // Use a single lock for all database operations to ensure atomicity
-        dbLock.lock();
+        // Use a single lock for all database operations to ensure atomicity (commits wait for it too)
+        dbManage.getWriteLock().lock();
         try {
             // Check again if URL is visited (in case another thread processed it)
             if (visitedUrl.contains(currentUrl)) {
@@ -208,7 +195,7 @@ public class CrawlerService implements DisposableBean {
 
             // Index the page and update database
             try {
-                indexer.indexPage(currentUrl, pageInfo.getTitle(), docId, pageInfo);
+                indexer.indexPage(page, docId, pageInfo);
                 dbManage.addPageIndex(docId, pageInfo);
                 
                 // Verify the page was added to the database
@@ -217,11 +204,11 @@ public class CrawlerService implements DisposableBean {
                     return;
                 }
 
-                // Extract and process links
-                List<String> links = extractLinks(currentUrl);
+                // Process the links of the fetched page
+                List<String> links = page.getLinks();
                 for (String link : links) {
                     if (!visitedUrl.contains(link) && pagesCrawled.get() < maxPages) {
-                        urlQueue.offer(link);
+                        scheduler.offer(link);
                     }
                 }
                 dbManage.updateParentChildMap(links, currentUrl);
@@ -230,47 +217,33 @@ public class CrawlerService implements DisposableBean {
                 visitedUrl.add(currentUrl);
                 pagesCrawled.incrementAndGet();
 
-                // Periodically commit changes
-                if (pagesCrawled.get() % 10 == 0) {
-                    dbManage.commit();
-                }
+                // group commit: batched by the commit coordinator (every db.commit.max-batch pages by default)
+                dbManage.commit();
             } catch (Exception e) {
                 System.err.println("Error during page processing for " + currentUrl + ": " + e.getMessage());
                 return;
             }
         } finally {
-            dbLock.unlock();
+            dbManage.getWriteLock().unlock();
         }
     }
 
-    // extract links in url and return them (for BFS)
-    public List<String> extractLinks(String url) throws IOException {
-        List<String> links = new ArrayList<>();
+    // download and parse the page, retried on failure; the parsed document is dropped once extracted
+    FetchedPage fetchPage(String url) throws IOException {
         int maxRetries = 3; // Maximum number of retries
         int retryCount = 0;
-        boolean success = false;
-
-        while (retryCount < maxRetries && !success) {
+        while (true) {
             try {
                 Document doc = Jsoup.connect(url).get();
-                Elements linkElements = doc.select("a[href]");
-                for (Element linkElement : linkElements) {
-                    String link = linkElement.attr("abs:href");
-                    // Check if the link starts with "http" or "https"
-                    if (link.startsWith("http://") || link.startsWith("https://")) {
-                        links.add(link);
-                    }
-                }
-                success = true; // Mark as successful if no exception occurs
+                return FetchedPage.of(url, doc);
             } catch (IOException e) {
                 retryCount++;
-                System.err.println("Failed to extract links from " + url + " (Attempt " + retryCount + " of " + maxRetries + "): " + e.getMessage());
+                System.err.println("Failed to fetch " + url + " (Attempt " + retryCount + " of " + maxRetries + "): " + e.getMessage());
                 if (retryCount >= maxRetries) {
                     throw e; // Rethrow the exception after max retries
                 }
             }
         }
-        return links;
     }
 
     // get crawled page
@@ -281,6 +254,9 @@ public class CrawlerService implements DisposableBean {
 
     // delete the .db file
     public void cleanDatabase() throws IOException {
+        if (dbManage.isReadOnly()) {
+            throw new IllegalStateException("Read replica: clean the database on the primary");
+        }
         Path dbPath = Paths.get("crawlerDb.db");
         if (Files.exists(dbPath)) {
             Files.delete(dbPath);
@@ -298,16 +274,11 @@ public class CrawlerService implements DisposableBean {
         }
     }
 
+    // shutdown: stop handing out URLs; the running crawl lets its fetches finish
     @Override
     public void destroy() {
-        executorService.shutdown();
-        try {
-            if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
-                executorService.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            executorService.shutdownNow();
-        }
+        HostScheduler running = scheduler;
+        if (running != null) running.close();
     }
 }
 
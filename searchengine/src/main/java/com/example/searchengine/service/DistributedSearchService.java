@@ -0,0 +1,236 @@
+package com.example.searchengine.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.searchengine.model.PageResult;
+
+/**
+ * DistributedSearchService.java
+ * Coordinator side of a search over shard nodes (separate processes, see ShardProtocol):
+ *   1. DFS: every node returns its page count and the doc freqs of the query terms, summed into global stats,
+ *      and its vocabulary if it changed since the last search; the vocabularies sum to the global one
+ *   2. query: the nodes that answered score the query with the global idf and the doc norms of the
+ *      global vocabulary (sent along to the nodes that don't hold it yet) and return their top results
+ * then the results are merged by score (a URL crawled by two nodes is kept once), so they rank as one
+ * index over all the nodes would. PageRank is left out: each node's is normalized by its own max.
+ * Every request has its own timeout; a node that fails or is late is left out and the
+ * result is flagged partial rather than failing the search.
+ */
+@Service
+public class DistributedSearchService {
+    public static final String ROLE_COORDINATOR = "coordinator";
+    private static final int RESULT_LIMIT = 50;
+
+    private final boolean coordinator;
+    private final List<String> shardNodes; // base URLs, e.g. http://localhost:8081
+    private final long timeoutMillis;
+    private final HttpClient client;
+    private final Transport transport;
+    private final Map<String, NodeVocabulary> vocabularies = new ConcurrentHashMap<>(); // as last sent by each node
+    private volatile GlobalVocabulary globalVocabulary; // summed over the nodes of the last search
+
+    // how a message reaches a node: HTTP, or a direct call in tests
+    interface Transport {
+        CompletableFuture<byte[]> post(String node, String path, byte[] body);
+    }
+
+    @Autowired
+    public DistributedSearchService(@Value("${search.role:standalone}") String role,
+            @Value("${search.shard-nodes:}") String shardNodes,
+            @Value("${search.shard-timeout-ms:2000}") long timeoutMillis) {
+        this(role, shardNodes, timeoutMillis, null);
+    }
+
+    DistributedSearchService(String role, String shardNodes, long timeoutMillis, Transport transport) {
+        this.shardNodes = Arrays.stream(shardNodes.split(","))
+            .map(String::trim)
+            .filter(node -> !node.isEmpty())
+            .map(node -> node.endsWith("/") ? node.substring(0, node.length() - 1) : node)
+            .collect(Collectors.toList());
+        this.coordinator = ROLE_COORDINATOR.equalsIgnoreCase(role.trim()) && !this.shardNodes.isEmpty();
+        this.timeoutMillis = timeoutMillis;
+        this.client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(timeoutMillis)).build();
+        this.transport = transport != null ? transport : this::post;
+        if (coordinator) System.out.println("Search coordinator over shard nodes " + this.shardNodes);
+    }
+
+    // searches go to the shard nodes instead of the local index
+    public boolean isCoordinator() {
+        return coordinator;
+    }
+
+    public static class Result {
+        public final List<PageResult> results;
+        public final List<String> failedNodes; // left out: error or timeout
+
+        Result(List<PageResult> results, List<String> failedNodes) {
+            this.results = results;
+            this.failedNodes = failedNodes;
+        }
+
+        public boolean isPartial() {
+            return !failedNodes.isEmpty();
+        }
+    }
+
+    // a node's vocabulary (doc freq of every word) with its fingerprint
+    private static class NodeVocabulary {
+        final long fingerprint;
+        final ShardProtocol.TermStats stats;
+
+        NodeVocabulary(long fingerprint, ShardProtocol.TermStats stats) {
+            this.fingerprint = fingerprint;
+            this.stats = stats;
+        }
+    }
+
+    // the sum of the vocabularies of some nodes, keyed by their fingerprints
+    private static class GlobalVocabulary {
+        final Map<String, Long> sources;
+        final ShardProtocol.TermStats stats;
+        final long fingerprint;
+
+        GlobalVocabulary(Map<String, Long> sources, ShardProtocol.TermStats stats) {
+            this.sources = sources;
+            this.stats = stats;
+            this.fingerprint = stats.fingerprint();
+        }
+    }
+
+    public Result search(String query) throws IOException {
+        List<String> failed = new ArrayList<>();
+
+        // 1. DFS: global page count and doc freqs; a node whose vocabulary changed sends it along
+        Map<String, byte[]> statsRequests = new LinkedHashMap<>();
+        for (String node : shardNodes) {
+            NodeVocabulary held = vocabularies.get(node);
+            statsRequests.put(node, ShardProtocol.encodeStatsRequest(
+                new ShardProtocol.StatsRequest(query, held == null ? ShardProtocol.NONE : held.fingerprint)));
+        }
+        Map<String, byte[]> statsReplies = gather(statsRequests, ShardProtocol.STATS_PATH, failed);
+        ShardProtocol.TermStats global = ShardProtocol.TermStats.EMPTY;
+        Map<String, NodeVocabulary> answered = new LinkedHashMap<>();
+        Map<String, Long> heldGlobal = new HashMap<>(); // node -> fingerprint of the global vocabulary it holds
+        for (Map.Entry<String, byte[]> reply : statsReplies.entrySet()) {
+            try {
+                ShardProtocol.StatsReply stats = ShardProtocol.decodeStats(reply.getValue());
+                NodeVocabulary vocabulary = stats.vocabulary == null ? vocabularies.get(reply.getKey())
+                    : new NodeVocabulary(stats.vocabularyFingerprint, stats.vocabulary);
+                if (vocabulary == null || vocabulary.fingerprint != stats.vocabularyFingerprint) {
+                    throw new IOException("vocabulary " + stats.vocabularyFingerprint + " was not sent");
+                }
+                vocabularies.put(reply.getKey(), vocabulary);
+                global = global.plus(stats.stats);
+                answered.put(reply.getKey(), vocabulary);
+                heldGlobal.put(reply.getKey(), stats.globalFingerprint);
+            } catch (IOException e) {
+                failed(reply.getKey(), e, failed);
+            }
+        }
+        if (answered.isEmpty()) throw new IOException("No shard node answered: " + failed);
+
+        // 2. query, on the nodes the stats came from; a node holding another global vocabulary gets this one
+        GlobalVocabulary vocabulary = globalVocabulary(answered);
+        Map<String, byte[]> searchRequests = new LinkedHashMap<>();
+        for (String node : answered.keySet()) {
+            boolean held = heldGlobal.get(node) == vocabulary.fingerprint;
+            searchRequests.put(node, ShardProtocol.encodeSearchRequest(new ShardProtocol.SearchRequest(
+                query, global, vocabulary.fingerprint, held ? null : vocabulary.stats)));
+        }
+        Map<String, byte[]> searchReplies = gather(searchRequests, ShardProtocol.SEARCH_PATH, failed);
+        List<PageResult> merged = new ArrayList<>();
+        for (Map.Entry<String, byte[]> reply : searchReplies.entrySet()) {
+            try {
+                merged.addAll(ShardProtocol.decodeResults(reply.getValue()));
+            } catch (IOException e) {
+                failed(reply.getKey(), e, failed);
+            }
+        }
+
+        merged.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+        Set<String> seen = new HashSet<>();
+        List<PageResult> results = new ArrayList<>();
+        for (PageResult result : merged) {
+            if (results.size() == RESULT_LIMIT) break;
+            if (result.getUrl() == null || seen.add(result.getUrl())) results.add(result);
+        }
+        return new Result(results, failed);
+    }
+
+    // summed again only when the answering nodes or one of their vocabularies changed
+    private GlobalVocabulary globalVocabulary(Map<String, NodeVocabulary> nodes) {
+        Map<String, Long> sources = new HashMap<>();
+        nodes.forEach((node, vocabulary) -> sources.put(node, vocabulary.fingerprint));
+        GlobalVocabulary current = globalVocabulary;
+        if (current != null && current.sources.equals(sources)) return current;
+        ShardProtocol.TermStats sum = ShardProtocol.TermStats.EMPTY;
+        for (NodeVocabulary vocabulary : nodes.values()) sum = sum.plus(vocabulary.stats);
+        current = new GlobalVocabulary(sources, sum);
+        globalVocabulary = current;
+        return current;
+    }
+
+    // post each node its body, all at once; replies of the nodes that answered in time, by node
+    private Map<String, byte[]> gather(Map<String, byte[]> bodies, String path, List<String> failed) {
+        Map<String, CompletableFuture<byte[]>> pending = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> body : bodies.entrySet()) {
+            pending.put(body.getKey(), transport.post(body.getKey(), path, body.getValue()));
+        }
+        Map<String, byte[]> replies = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<byte[]>> entry : pending.entrySet()) {
+            try {
+                replies.put(entry.getKey(), entry.getValue().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed(entry.getKey(), e, failed);
+            } catch (ExecutionException e) {
+                failed(entry.getKey(), e.getCause(), failed);
+            }
+        }
+        return replies;
+    }
+
+    private CompletableFuture<byte[]> post(String node, String path, byte[] body) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(node + path))
+            .timeout(Duration.ofMillis(timeoutMillis))
+            .header("Content-Type", "application/octet-stream")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+            .thenApply(response -> {
+                if (response.statusCode() != 200) {
+                    throw new CompletionException(new IOException("HTTP " + response.statusCode()));
+                }
+                return response.body();
+            })
+            .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS); // covers reading the body too
+    }
+
+    private static void failed(String node, Throwable cause, List<String> failed) {
+        System.err.println("Shard node " + node + " left out: " + cause);
+        if (!failed.contains(node)) failed.add(node);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.searchengine.service;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * HostScheduler.java
+ * Frontier of one crawl, kept as a FIFO queue per host. take() hands out the next URL whose host
+ * may be fetched now:
+ *   - at most maxConnections fetches in flight overall, and maxPerHost per host
+ *   - fetches of one host start at least hostDelay apart
+ *   - no more fetches in flight than the page budget still allows
+ * Ready hosts sit in a heap by the time they may be fetched next, so a take is O(log hosts).
+ * Every URL is queued once per crawl.
+ */
+class HostScheduler {
+
+    private static class Host {
+        final ArrayDeque<String> urls = new ArrayDeque<>();
+        long nextFetchAt = 0; // nanoTime
+        int active = 0;
+        boolean ready = false; // in the ready heap: has URLs and a free connection
+    }
+
+    private final int maxConnections;
+    private final int maxPerHost;
+    private final long hostDelayNanos;
+    private final IntSupplier budget; // pages still to crawl
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<String, Host> hosts = new HashMap<>();
+    private final PriorityQueue<Host> ready = new PriorityQueue<>(Comparator.comparingLong((Host host) -> host.nextFetchAt));
+    private final Set<String> seen = new HashSet<>();
+    private int queued = 0;
+    private int active = 0;
+    private boolean closed = false;
+
+    HostScheduler(int maxConnections, int maxPerHost, long hostDelayMillis, IntSupplier budget) {
+        this.maxConnections = Math.max(1, maxConnections);
+        this.maxPerHost = Math.max(1, maxPerHost);
+        this.hostDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, hostDelayMillis));
+        this.budget = budget;
+    }
+
+    static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return ""; // unparsable URLs share one queue; the fetch reports them
+        }
+    }
+
+    // queue a URL unless it was queued before in this crawl
+    void offer(String url) {
+        lock.lock();
+        try {
+            if (closed || !seen.add(url)) return;
+            Host host = hosts.computeIfAbsent(hostOf(url), name -> new Host());
+            host.urls.add(url);
+            queued++;
+            markReady(host);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // next URL to fetch, waiting for a host to become ready; null once the crawl is over
+    // (nothing queued or in flight, budget used up, deadline passed or closed). Pair with done()
+    String take(long deadlineNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                int limit = Math.min(maxConnections, budget.getAsInt());
+                if (closed || (active == 0 && (queued == 0 || limit <= 0))) return null;
+                long now = System.nanoTime();
+                long wait = deadlineNanos - now;
+                if (wait <= 0) return null;
+
+                Host host = active < limit ? ready.peek() : null;
+                if (host != null) {
+                    long until = host.nextFetchAt - now;
+                    if (until <= 0) {
+                        ready.poll();
+                        host.ready = false;
+                        String url = host.urls.poll();
+                        queued--;
+                        host.active++;
+                        active++;
+                        host.nextFetchAt = now + hostDelayNanos;
+                        markReady(host);
+                        return url;
+                    }
+                    wait = Math.min(wait, until);
+                }
+                changed.awaitNanos(wait); // woken early by offer / done
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the fetch of a taken URL is over (processed or failed)
+    void done(String url) {
+        lock.lock();
+        try {
+            Host host = hosts.get(hostOf(url));
+            host.active--;
+            active--;
+            markReady(host);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // stop handing out URLs (shutdown); fetches in flight still call done
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getActiveCount() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getHostCount() {
+        lock.lock();
+        try {
+            return hosts.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // caller holds lock; a host is not re-keyed while it sits in the heap
+    private void markReady(Host host) {
+        if (!host.ready && !host.urls.isEmpty() && host.active < maxPerHost) {
+            host.ready = true;
+            ready.add(host);
+        }
+    }
+}
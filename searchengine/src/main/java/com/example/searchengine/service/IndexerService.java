@@ -7,12 +7,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
 import org.springframework.stereotype.Service;
 
 import com.example.searchengine.database.DbManage;
+import com.example.searchengine.model.FetchedPage;
+import com.example.searchengine.model.KeywordFrequency;
 import com.example.searchengine.model.PageInfo;
 import com.example.searchengine.model.Posting;
 import com.example.searchengine.service.utils.StopStem;
@@ -31,10 +30,10 @@ public class IndexerService {
         this.dbManage = dbManage;
     }
 
-    public void indexPage(String url, String title, int docId, PageInfo pageInfo) throws IOException {
-        // extract the page content
-        List<String> bodyWords = extractBodyWords(url);
-        List<String> titleWords = tokenizeTitle(title);
+    // index a downloaded page; the words come from the fetched page, nothing is downloaded here
+    public void indexPage(FetchedPage page, int docId, PageInfo pageInfo) throws IOException {
+        List<String> bodyWords = tokenizeBody(page.getBodyText());
+        List<String> titleWords = tokenizeTitle(page.getTitle());
 
         // stop word removal & stemming (body & title)
         StopStem stopStem = new StopStem("stopwords.txt"); // stop word removal and stemming
@@ -55,6 +54,13 @@ public class IndexerService {
         // add bodyPageIndex, titlePageIndex as the instance var of pageInfo to store in pageIndex table
         pageInfo.setBodyWordList(bodyPageIndex); 
         pageInfo.setTitleWordList(titlePageIndex);
+
+        // top keywords for the result page, resolved here where the words are at hand
+        Map<String, Integer> keywordFreq = new HashMap<>();
+        for (String stem : bodyStem) {
+            keywordFreq.merge(stem, 1, Integer::sum);
+        }
+        dbManage.putKeywordSummary(docId, KeywordFrequency.top(keywordFreq, DbManage.KEYWORD_SUMMARY_SIZE));
     }
 
 
@@ -65,12 +71,8 @@ public class IndexerService {
 
         for (int i = 0; i < stemList.size(); i++) {
             String stem = stemList.get(i);
-            int wordId; 
-
-            if(dbManage.containsWord(stem)){
-                wordId = dbManage.getWordId(stem);
-
-            } else {
+            int wordId = dbManage.getWordId(stem); // one dictionary lookup per token
+            if (wordId == -1) {
                 wordId = dbManage.addWord(stem); // add to wordMap && wordidMap
             }
 
@@ -94,25 +96,16 @@ public class IndexerService {
 
     }
 
-    // extract the word for page body from url
-    public List<String> extractBodyWords(String url) throws IOException{
-        // Fetch the HTML from a URL
+    // tokenize the body text into words
+    public List<String> tokenizeBody(String bodyText){
         List<String> bodyWords = new ArrayList<>();
-        Document doc = Jsoup.connect(url).get();
-        Element body = doc.body();
-
-        if (body != null) {
-            String bodyText = body.text();
-
-            // Tokenize the body text into words
-            String[] words = bodyText.split("\\W+"); // Split by any non-letter characters
-            for (String word : words) {
-                if (!word.isEmpty()) {
-                    bodyWords.add(word.toLowerCase());
-                }
+        String[] words = bodyText.split("\\W+"); // Split by any non-letter characters
+        for (String word : words) {
+            if (!word.isEmpty()) {
+                bodyWords.add(word.toLowerCase());
             }
         }
-        return bodyWords;  
+        return bodyWords;
     }
 
     // tokenize the title into words
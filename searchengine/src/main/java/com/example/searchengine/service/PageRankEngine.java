@@ -0,0 +1,313 @@
+package com.example.searchengine.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import com.example.searchengine.database.index.LinkGraph;
+
+/**
+ * PageRankEngine.java
+ * Power iteration over the crawled part of the link graph held in primitive arrays.
+ * Pages are renumbered 0..n-1; in-links are kept as CSR (inOffsets / inLinks) so each
+ * page pulls its new score from its parents and the pages of an iteration can be
+ * computed in parallel without locking. The rank of pages without crawled out-links
+ * (dangling) is spread evenly over all pages, so the scores keep summing to 1.
+ * compute() runs Jacobi, Gauss-Seidel or extrapolated Jacobi (see Strategy) from a
+ * uniform start and records the residual of every iteration.
+ * update() warm-starts from earlier scores and only pushes the residual of pages
+ * whose inputs changed (out-links, CSR outOffsets / outLinks), so a small recrawl
+ * touches a small part of the graph.
+ */
+class PageRankEngine {
+    private final int[] pageIds;   // dense index -> page id
+    private final int[] inOffsets; // n + 1 offsets into inLinks
+    private final int[] inLinks;   // dense index of each parent
+    private final int[] outOffsets; // n + 1 offsets into outLinks
+    private final int[] outLinks;   // dense index of each crawled child
+    private final int[] outDegree;  // crawled out-links per page
+
+    enum Strategy {
+        JACOBI,       // all pages from the previous iterate, in parallel
+        GAUSS_SEIDEL, // in place, sequential; fewer passes than Jacobi on web-like graphs
+        AITKEN        // Jacobi with Aitken extrapolation every AITKEN_PERIOD iterations
+    }
+
+    private static final int AITKEN_PERIOD = 10;
+
+    private int iterations;  // of the last run; for update() full passes worth of work
+    private double residual; // L1 residual left by the last run
+    private List<Double> history = new ArrayList<>(); // residual after each iteration of the last run
+
+    PageRankEngine(LinkGraph graph) {
+        int[] denseIndex = new int[graph.getNodeCount()];
+        int n = 0;
+        for (int id = 0; id < denseIndex.length; id++) {
+            denseIndex[id] = graph.isCrawled(id) ? n++ : -1;
+        }
+        pageIds = new int[n];
+        outDegree = new int[n];
+        int[][] parents = new int[n][];
+        int edges = 0;
+        for (int id = 0; id < denseIndex.length; id++) {
+            int i = denseIndex[id];
+            if (i < 0) continue;
+            pageIds[i] = id;
+            parents[i] = graph.crawledParents(id);
+            edges += parents[i].length;
+        }
+
+        inOffsets = new int[n + 1];
+        inLinks = new int[edges];
+        for (int i = 0; i < n; i++) {
+            inOffsets[i + 1] = inOffsets[i] + parents[i].length;
+            for (int k = 0; k < parents[i].length; k++) {
+                inLinks[inOffsets[i] + k] = denseIndex[parents[i][k]];
+            }
+        }
+
+        // out-links are the inverted in-links
+        for (int parent : inLinks) outDegree[parent]++;
+        outOffsets = new int[n + 1];
+        for (int i = 0; i < n; i++) outOffsets[i + 1] = outOffsets[i] + outDegree[i];
+        outLinks = new int[edges];
+        int[] fill = Arrays.copyOf(outOffsets, n);
+        for (int i = 0; i < n; i++) {
+            for (int k = inOffsets[i]; k < inOffsets[i + 1]; k++) {
+                outLinks[fill[inLinks[k]]++] = i;
+            }
+        }
+    }
+
+    int[] getPageIds() {
+        return pageIds;
+    }
+
+    int getIterations() {
+        return iterations;
+    }
+
+    double getResidual() {
+        return residual;
+    }
+
+    List<Double> getResidualHistory() {
+        return history;
+    }
+
+    // scores by dense index; stops when the L1 change of an iteration drops below tolerance
+    double[] compute(Strategy strategy, double damping, int maxIterations, double tolerance) {
+        int n = pageIds.length;
+        history = new ArrayList<>();
+        iterations = 0;
+        residual = Double.NaN;
+        if (n == 0) return new double[0];
+        double[] rank = new double[n];
+        Arrays.fill(rank, 1.0 / n);
+
+        if (strategy == Strategy.GAUSS_SEIDEL) {
+            for (int iteration = 0; iteration < maxIterations; iteration++) {
+                if (record(gaussSeidelSweep(rank, damping)) < tolerance) break;
+            }
+            double total = Arrays.stream(rank).sum();
+            for (int i = 0; i < n; i++) rank[i] /= total;
+            return rank;
+        }
+
+        double[] next = new double[n];
+        if (strategy == Strategy.AITKEN) return aitkenIterate(rank, next, damping, maxIterations, tolerance);
+        while (iterations < maxIterations) {
+            double change = jacobiStep(rank, next, damping);
+            double[] previous = rank;
+            rank = next;
+            next = previous;
+            if (record(change) < tolerance) break;
+        }
+        return rank;
+    }
+
+    // Jacobi steps, extrapolated every AITKEN_PERIOD steps; an extrapolation is undone
+    // when the step after it changes the scores more than the step before it did
+    private double[] aitkenIterate(double[] rank, double[] next, double damping, int maxIterations, double tolerance) {
+        int n = rank.length;
+        double[] older = new double[n]; // iterate before the previous one
+        double[] saved = new double[n]; // iterate as it was before the last extrapolation
+        double accepted = -1;           // change the step after an extrapolation has to beat
+        int steps = 0;
+        while (iterations < maxIterations) {
+            double change = jacobiStep(rank, next, damping);
+            if (accepted >= 0 && change > accepted) {
+                record(change); // wasted pass
+                System.arraycopy(saved, 0, rank, 0, n);
+                if (iterations >= maxIterations) break;
+                change = jacobiStep(rank, next, damping);
+            }
+            accepted = -1;
+            double[] previous = rank;
+            rank = next;
+            next = older;
+            older = previous;
+            steps++;
+            if (record(change) < tolerance) break;
+            if (steps % AITKEN_PERIOD == 0) {
+                System.arraycopy(rank, 0, saved, 0, n);
+                if (aitken(next, older, rank, damping)) accepted = change;
+            }
+        }
+        return rank;
+    }
+
+    private double record(double change) {
+        iterations++;
+        residual = change;
+        history.add(change);
+        return change;
+    }
+
+    // next = (1-d)/n + d * (P rank + dangling / n), in parallel; returns the L1 change
+    private double jacobiStep(double[] rank, double[] next, double damping) {
+        int n = rank.length;
+        double dangling = IntStream.range(0, n).parallel().filter(i -> outDegree[i] == 0).mapToDouble(i -> rank[i]).sum();
+        double base = (1 - damping) / n + damping * dangling / n;
+        return IntStream.range(0, n).parallel().mapToDouble(i -> {
+            double sum = 0;
+            for (int k = inOffsets[i]; k < inOffsets[i + 1]; k++) {
+                sum += rank[inLinks[k]] / outDegree[inLinks[k]];
+            }
+            next[i] = base + damping * sum;
+            return Math.abs(next[i] - rank[i]);
+        }).sum();
+    }
+
+    // in place, pages in order, each using the scores already updated in this sweep.
+    // Solves x = (1-d)/n + d * P x without the dangling term: PageRank is that x scaled
+    // to sum to 1, and the system stays sparse. Returns the L1 change relative to sum(x)
+    private double gaussSeidelSweep(double[] rank, double damping) {
+        int n = rank.length;
+        double change = 0;
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            double sum = 0;
+            for (int k = inOffsets[i]; k < inOffsets[i + 1]; k++) {
+                sum += rank[inLinks[k]] / outDegree[inLinks[k]];
+            }
+            double updated = (1 - damping) / n + damping * sum;
+            change += Math.abs(updated - rank[i]);
+            total += updated;
+            rank[i] = updated;
+        }
+        return change / total;
+    }
+
+    // Aitken delta-squared on the whole vector: if the errors of three successive iterates
+    // shrink by a steady ratio g (the dominant mode), the limit is x2 + g / (1 - g) * (x2 - x1).
+    // g is capped at the damping factor, which bounds the second eigenvalue of the Google matrix.
+    // Writes the result into x2, scaled back to sum to 1; skipped when the errors did not shrink
+    private static boolean aitken(double[] x0, double[] x1, double[] x2, double damping) {
+        double d1 = IntStream.range(0, x2.length).parallel().mapToDouble(i -> Math.abs(x1[i] - x0[i])).sum();
+        double d2 = IntStream.range(0, x2.length).parallel().mapToDouble(i -> Math.abs(x2[i] - x1[i])).sum();
+        if (d1 == 0 || d2 >= d1) return false;
+        double ratio = Math.min(d2 / d1, damping);
+        double step = ratio / (1 - ratio);
+        IntStream.range(0, x2.length).parallel().forEach(i -> x2[i] = Math.max(0, x2[i] + step * (x2[i] - x1[i])));
+        double total = Arrays.stream(x2).parallel().sum();
+        IntStream.range(0, x2.length).parallel().forEach(i -> x2[i] /= total);
+        return true;
+    }
+
+    /**
+     * Scores by dense index, starting from earlier ones (NaN = page had no score).
+     * The residual r = (1-d)/n + d * (P x + dangling / n) - x is computed once, then
+     * pages with a residual above tolerance / 2n absorb it and push d * r / outDegree
+     * to their children until none is left; dangling pages add to one uniform residual
+     * that is spread over all pages in a full pass when it becomes significant.
+     * Stops once the total residual is below tolerance or after maxIterations passes worth of work.
+     */
+    double[] update(double[] previous, double damping, int maxIterations, double tolerance) {
+        int n = pageIds.length;
+        history = new ArrayList<>();
+        if (n == 0) return new double[0];
+
+        // seed: earlier scores, new pages at 1/n, scaled to sum to 1
+        double[] rank = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            rank[i] = Double.isNaN(previous[i]) ? 1.0 / n : previous[i];
+            total += rank[i];
+        }
+        final double scale = total > 0 ? 1 / total : 1;
+        Arrays.setAll(rank, i -> rank[i] * scale);
+
+        double dangling = IntStream.range(0, n).parallel().filter(i -> outDegree[i] == 0).mapToDouble(i -> rank[i]).sum();
+        double base = (1 - damping) / n + damping * dangling / n;
+        double[] pending = new double[n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            double sum = 0;
+            for (int k = inOffsets[i]; k < inOffsets[i + 1]; k++) {
+                sum += rank[inLinks[k]] / outDegree[inLinks[k]];
+            }
+            pending[i] = base + damping * sum - rank[i];
+        });
+
+        double threshold = tolerance / (2.0 * n);
+        int[] queue = new int[n]; // ring buffer, each page at most once
+        boolean[] queued = new boolean[n];
+        int head = 0;
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            if (Math.abs(pending[i]) > threshold) {
+                queue[size++] = i;
+                queued[i] = true;
+            }
+        }
+
+        long passCost = (long) outLinks.length + n;
+        long budget = maxIterations * passCost;
+        long work = passCost; // the residual pass
+        double uniform = 0;   // residual owed to every page by dangling pages
+        while (true) {
+            while (size > 0 && work < budget) {
+                int j = queue[head];
+                head = (head + 1) % n;
+                size--;
+                queued[j] = false;
+                double r = pending[j];
+                pending[j] = 0;
+                rank[j] += r;
+                work++;
+                if (outDegree[j] == 0) {
+                    uniform += damping * r / n;
+                    continue;
+                }
+                double push = damping * r / outDegree[j];
+                for (int k = outOffsets[j]; k < outOffsets[j + 1]; k++) {
+                    int c = outLinks[k];
+                    pending[c] += push;
+                    if (!queued[c] && Math.abs(pending[c]) > threshold) {
+                        queue[(head + size++) % n] = c;
+                        queued[c] = true;
+                    }
+                }
+                work += outDegree[j];
+            }
+            history.add(Arrays.stream(pending).map(Math::abs).sum() + Math.abs(uniform) * n);
+            if (work >= budget || Math.abs(uniform) * n <= tolerance / 2) break;
+
+            // spread the dangling residual
+            for (int i = 0; i < n; i++) {
+                pending[i] += uniform;
+                if (!queued[i] && Math.abs(pending[i]) > threshold) {
+                    queue[(head + size++) % n] = i;
+                    queued[i] = true;
+                }
+            }
+            uniform = 0;
+            work += n;
+        }
+
+        iterations = (int) ((work + passCost - 1) / passCost);
+        residual = Arrays.stream(pending).map(Math::abs).sum() + Math.abs(uniform) * n;
+        return rank;
+    }
+}
@@ -2,16 +2,18 @@ package com.example.searchengine.service;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.example.searchengine.database.CommitCoordinator;
 import com.example.searchengine.database.DbManage;
+import com.example.searchengine.database.SerializedHTree;
+import com.example.searchengine.database.index.LinkGraph;
 
 import jdbm.helper.FastIterator;
-import jdbm.htree.HTree;
 
 //page rank from quality and authority
 //location information and visual presentation?
@@ -42,110 +44,98 @@ import jdbm.htree.HTree;
 @Service
 public class PageRankService {
     private DbManage dbManage; // for access the jdbm tables
-    private static final double DAMPING_FACTOR = 0.85; // default value in the pagerank paper
-    private static final int MAX_ITERATIONS = 20;
-    private static final double CONVERGENCE_THRESHOLD = 0.0001;
-
-    public PageRankService(DbManage dbManage) {
+    private final double dampingFactor; // 0.85 is the default value in the pagerank paper
+    private final int maxIterations;
+    private final double convergenceThreshold; // L1 residual
+    private final PageRankEngine.Strategy strategy; // for full runs
+
+    public PageRankService(DbManage dbManage,
+            @Value("${pagerank.damping:0.85}") double dampingFactor,
+            @Value("${pagerank.max-iterations:100}") int maxIterations,
+            @Value("${pagerank.tolerance:0.0001}") double convergenceThreshold,
+            @Value("${pagerank.strategy:gauss_seidel}") String strategy) {
         this.dbManage = dbManage;
+        this.dampingFactor = dampingFactor;
+        this.maxIterations = maxIterations;
+        this.convergenceThreshold = convergenceThreshold;
+        this.strategy = PageRankEngine.Strategy.valueOf(strategy.trim().toUpperCase());
     }
 
-    // modify the pagerank table
+    // modify the pagerank table, warm-started from the scores already in it
     public void computePageRank() throws IOException {
-        HTree pageRankTable = dbManage.getPageRankMap();
-        HTree pageIndex = dbManage.getPageIndex();
-
-        // Clear and initialize only with crawled pages
-        initializePageRank(pageRankTable, pageIndex);
-
-        int totalCrawledPages = dbManage.getPageCount();
-        if (totalCrawledPages == 0) return;
-
-        //asynchronous
-        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
-            Map<Integer, Double> newScores = new HashMap<>();
-            double totalChange = 0.0;
-            FastIterator iter = pageIndex.keys();
-            Integer pageId;
-
-            while ((pageId = (Integer) iter.next()) != null) {
-                double sum = 0.0;
-
-                // Get all parent pages that link to this page (using new helper method)
-                List<Integer> parentPageIds = dbManage.getCrawledParentPageIds(pageId);
-                
-                for (Integer parentId : parentPageIds) {
-                    // Get child links count for the parent (using new helper method)
-                    List<Integer> childPageIds = dbManage.getCrawledChildPageIds(parentId);
-                    int outboundLinks = childPageIds.size();
-                    
-                    if (outboundLinks > 0) {
-                        Double parentScore = (Double) pageRankTable.get(parentId);
-                        if (parentScore != null) {
-                            sum += parentScore / outboundLinks;
-                        }
-                    }
-                }
-
-                // Calculate new score with damping factor
-                double newScore = (1 - DAMPING_FACTOR) / totalCrawledPages + DAMPING_FACTOR * sum;
-                Double currentScore = (Double) pageRankTable.get(pageId);
-                
-                if (currentScore != null) { totalChange += Math.abs(newScore - currentScore);}
-                newScores.put(pageId, newScore);
-            }
-
-            // Update all scores
-            newScores.forEach((id, score) -> {
-                try {
-                    pageRankTable.put(id, score);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
-            dbManage.commit();
-
-            //System.out.printf("Iteration %d: Total change=%.6f%n", iteration + 1, totalChange);
-
-            // Check for convergence
-            if (totalChange < CONVERGENCE_THRESHOLD) {
-                //System.out.println("PageRank converged after " + (iteration + 1) + " iterations");
-                break;
-            }
+        computePageRank(true);
+    }
 
+    // incremental: start from the stored scores and only push what changed;
+    // otherwise iterate from scratch. Scores are written back in one commit
+    public void computePageRank(boolean incremental) throws IOException {
+        if (dbManage.getPageCount() == 0) return;
+
+        dbManage.rebuildLinkGraph();
+        LinkGraph linkGraph = dbManage.getLinkGraph();
+        PageRankEngine engine = new PageRankEngine(linkGraph);
+        int[] pageIds = engine.getPageIds();
+        double[] previous = readScores(pageIds);
+        boolean warm = incremental && Arrays.stream(previous).anyMatch(score -> !Double.isNaN(score));
+
+        double[] scores = warm
+            ? engine.update(previous, dampingFactor, maxIterations, convergenceThreshold)
+            : engine.compute(strategy, dampingFactor, maxIterations, convergenceThreshold);
+        List<Double> residuals = engine.getResidualHistory();
+        for (int i = 0; i < residuals.size(); i++) {
+            System.out.printf("PageRank %s %d: residual %.3e%n", warm ? "round" : "iteration", i + 1, residuals.get(i));
         }
+        System.out.printf("PageRank (%s) for %d crawled pages: %d iterations, residual %.3e%n",
+            warm ? "incremental" : strategy.name().toLowerCase(), pageIds.length, engine.getIterations(), engine.getResidual());
+        writeScores(linkGraph, pageIds, previous, scores);
+        dbManage.updateStaticScores(pageIds, scores, linkGraph.getGeneration());
 
         // print out the final pagerank table
         //dbManage.printPageRank();
     }
 
-
-    private void initializePageRank(HTree pageRankTable, HTree pageIndex) throws IOException {
-        // Clear existing data
-        List<Integer> pageRankKeys = new ArrayList<>();
-        FastIterator iter = pageRankTable.keys();
-        Integer key;
-        while ((key = (Integer) iter.next()) != null) {
-            pageRankKeys.add(key);
+    // stored score of each page, NaN if it has none
+    private double[] readScores(int[] pageIds) throws IOException {
+        SerializedHTree pageRankTable = dbManage.getPageRankMap();
+        double[] scores = new double[pageIds.length];
+        for (int i = 0; i < pageIds.length; i++) {
+            Double score = (Double) pageRankTable.get(pageIds[i]);
+            scores[i] = score == null ? Double.NaN : score;
         }
-        for (Integer pageRankKey : pageRankKeys) {
-            pageRankTable.remove(pageRankKey);
-        }
-
-        // Initialize only crawled pages
-        iter = pageIndex.keys();
-        Integer pageId;
-        int totalPages = 0;
-        double initialScore = 1.0; // Or 1.0/pageIndex.size() for normalized
-        
-        while ((pageId = (Integer) iter.next()) != null) {
-            pageRankTable.put(pageId, initialScore);
-            totalPages++;
-        }
-        
-        System.out.println("Initialized PageRank for " + totalPages + " crawled pages");
+        return scores;
     }
 
+    // only the scores that moved are written; committed durably before the static score column,
+    // which is derived from the table, is replaced
+    private void writeScores(LinkGraph linkGraph, int[] pageIds, double[] previous, double[] scores) throws IOException {
+        SerializedHTree pageRankTable = dbManage.getPageRankMap();
+        int written = 0;
+        int removed = 0;
+
+        dbManage.getWriteLock().lock(); // one unit: no background commit halfway through the table
+        try {
+            // pages no longer crawled must not keep a score
+            List<Integer> staleKeys = new ArrayList<>();
+            FastIterator iter = pageRankTable.keys();
+            Integer key;
+            while ((key = (Integer) iter.next()) != null) {
+                if (!linkGraph.isCrawled(key)) staleKeys.add(key);
+            }
+            for (Integer staleKey : staleKeys) {
+                pageRankTable.remove(staleKey);
+                removed++;
+            }
 
-
+            for (int i = 0; i < pageIds.length; i++) {
+                if (Double.isNaN(previous[i]) || Math.abs(scores[i] - previous[i]) > convergenceThreshold / pageIds.length) {
+                    pageRankTable.put(pageIds[i], scores[i]);
+                    written++;
+                }
+            }
+            dbManage.commit(CommitCoordinator.Durability.SYNC);
+        } finally {
+            dbManage.getWriteLock().unlock();
+        }
+        System.out.println("PageRank scores written: " + written + ", removed: " + removed);
+    }
 }
@@ -2,21 +2,296 @@ package com.example.searchengine.service;
 
 import jdbm.RecordManager;
 import jdbm.RecordManagerFactory;
+import jdbm.RecordManagerOptions;
+import jdbm.helper.FastIterator;
+import jdbm.helper.Serializer;
 import jdbm.htree.HTree;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.example.searchengine.database.GenerationManifest;
+import com.example.searchengine.database.SerializedHTree;
+
 @Service
 public class RecordManagerService {
+    private static final String DB_NAME = "crawlerDb";
+    private static final String BULK_COMPLETE = "COMPLETE"; // marker: the staged store is whole, install it
+    private static final String DOWNLOAD_SUFFIX = ".part"; // generation still being downloaded
+    private final Path baseDirectory; // where the live store lives (the working directory)
+    // bulk load: a store without transaction log built in its own directory, swapped in when complete
+    private final Path bulkDirectory;
+    // primary: generations exported for read replicas; replica: the shipped generations, one store each
+    private final Path publishDirectory;
+    private final Path replicaDirectory;
     private RecordManager recordManager;
+    private Path directory; // where the current store lives
+    private boolean bulkLoading = false;
+    private final boolean replica; // the store is a shipped generation, replaced as a whole
+    // replica: the store replaced by the last switch, for revertReplicaStore
+    private RecordManager replacedRecordManager;
+    private Path replacedDirectory;
+
+    @Autowired
+    public RecordManagerService(@Value("${replication.role:none}") String replicationRole) throws IOException {
+        this(Paths.get(""), replicationRole);
+    }
 
-    public RecordManagerService() throws IOException {
+    // all store files under baseDirectory
+    RecordManagerService(Path baseDirectory, String replicationRole) throws IOException {
+        this.baseDirectory = baseDirectory;
+        this.bulkDirectory = baseDirectory.resolve(DB_NAME + ".bulk");
+        this.publishDirectory = baseDirectory.resolve(DB_NAME + ".published");
+        this.replicaDirectory = baseDirectory.resolve(DB_NAME + ".replica");
+        this.directory = baseDirectory;
+        this.replica = ReplicationService.ROLE_REPLICA.equalsIgnoreCase(replicationRole.trim());
+        if (replica) {
+            openReplicaStore(latestReplicaGeneration());
+            return;
+        }
+        recoverBulkLoad();
         initializeRecordManager();
     }
 
     private void initializeRecordManager() throws IOException {
-        this.recordManager = RecordManagerFactory.createRecordManager("crawlerDb");
+        this.recordManager = RecordManagerFactory.createRecordManager(baseDirectory.resolve(DB_NAME).toString());
+    }
+
+    // directory for the file-based index structures (posting segments) next to the .db file
+    public Path getIndexDirectory() {
+        return directory.resolve(DB_NAME + ".index");
+    }
+
+    public boolean isBulkLoading() {
+        return bulkLoading;
+    }
+
+    public boolean isReplica() {
+        return replica;
+    }
+
+    /****************** Replication ***********************/
+    public Path getPublishDirectory() {
+        return publishDirectory;
+    }
+
+    // copy the store as of the last commit into target. The JDBM files change in place and are copied;
+    // the index files are written once or replaced by rename, never changed, so they are hard-linked.
+    // The caller holds the write lock and has committed
+    public void exportStore(Path target) throws IOException {
+        Files.createDirectories(target);
+        for (String file : List.of(DB_NAME + ".db", DB_NAME + ".lg")) {
+            Path source = directory.resolve(file);
+            if (Files.exists(source)) Files.copy(source, target.resolve(file), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Path index = getIndexDirectory();
+        if (Files.exists(index)) linkFiles(index, target.resolve(DB_NAME + ".index"));
+    }
+
+    private static void linkFiles(Path source, Path target) throws IOException {
+        Files.createDirectories(target);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(source)) {
+            for (Path file : files) {
+                Path copy = target.resolve(file.getFileName().toString());
+                if (Files.isDirectory(file)) {
+                    linkFiles(file, copy);
+                } else if (!file.getFileName().toString().endsWith(".tmp")) {
+                    try {
+                        link(file, copy);
+                    } catch (NoSuchFileException e) {
+                        // a retired segment deleted since the listing
+                    }
+                }
+            }
+        }
+    }
+
+    // hard link, or a copy where the file system has none
+    static void link(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (NoSuchFileException e) {
+            throw e;
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // where a verified generation is installed, and where it is downloaded to before that
+    public Path getReplicaDirectory(long generation) {
+        return replicaDirectory.resolve(GenerationManifest.directoryName(generation));
+    }
+
+    public Path getReplicaDownloadDirectory(long generation) {
+        return replicaDirectory.resolve(GenerationManifest.directoryName(generation) + DOWNLOAD_SUFFIX);
+    }
+
+    // directory of the current store (a replica's installed generation)
+    public Path getStoreDirectory() {
+        return directory;
+    }
+
+    // at replica startup: the newest complete generation; older ones and unfinished downloads are dropped.
+    // Before the first generation arrives an empty store is served
+    private Path latestReplicaGeneration() throws IOException {
+        Files.createDirectories(replicaDirectory);
+        TreeMap<Long, Path> complete = new TreeMap<>();
+        try (DirectoryStream<Path> generations = Files.newDirectoryStream(replicaDirectory)) {
+            for (Path generation : generations) {
+                String name = generation.getFileName().toString();
+                if (!name.endsWith(DOWNLOAD_SUFFIX) && Files.exists(generation.resolve(GenerationManifest.FILE_NAME))) {
+                    complete.put(GenerationManifest.read(generation.resolve(GenerationManifest.FILE_NAME)).getGeneration(), generation);
+                } else {
+                    deleteRecursively(generation);
+                }
+            }
+        }
+        if (complete.isEmpty()) return replicaDirectory.resolve("empty");
+        Path latest = complete.pollLastEntry().getValue();
+        for (Path older : complete.values()) deleteRecursively(older);
+        return latest;
+    }
+
+    private void openReplicaStore(Path generationDirectory) throws IOException {
+        Files.createDirectories(generationDirectory);
+        recordManager = RecordManagerFactory.createRecordManager(generationDirectory.resolve(DB_NAME).toString());
+        directory = generationDirectory;
+    }
+
+    // replica: open the store of another generation. The returned handle closes the previous store
+    // and deletes its directory; the caller keeps it until no search reads that store any more
+    public Closeable switchReplicaStore(Path generationDirectory) throws IOException {
+        if (!replica) throw new IllegalStateException("Not a replica");
+        RecordManager previous = recordManager;
+        Path previousDirectory = directory;
+        openReplicaStore(generationDirectory);
+        replacedRecordManager = previous;
+        replacedDirectory = previousDirectory;
+        return () -> {
+            previous.close();
+            deleteRecursively(previousDirectory);
+        };
+    }
+
+    // replica: back to the store replaced by the last switch, whose handle is dropped unused;
+    // the store switched to is closed and its directory deleted
+    public void revertReplicaStore() throws IOException {
+        if (replacedRecordManager == null) throw new IllegalStateException("No switch to revert");
+        RecordManager failed = recordManager;
+        Path failedDirectory = directory;
+        recordManager = replacedRecordManager;
+        directory = replacedDirectory;
+        replacedRecordManager = null;
+        replacedDirectory = null;
+        failed.close();
+        deleteRecursively(failedDirectory);
+    }
+
+    // a replica's store as shipped and verified (not the empty one served before the first generation):
+    // nothing may be written into it
+    private boolean isShippedStore() {
+        return replica && Files.exists(directory.resolve(GenerationManifest.FILE_NAME));
+    }
+
+    // switch to an empty staging store opened without transactions (the live store is closed, not touched)
+    public void beginBulkLoad() throws IOException {
+        if (bulkLoading) throw new IllegalStateException("Bulk load already in progress");
+        recordManager.close();
+        deleteRecursively(bulkDirectory);
+        Files.createDirectories(bulkDirectory);
+        Properties options = new Properties();
+        options.setProperty(RecordManagerOptions.DISABLE_TRANSACTIONS, "true");
+        recordManager = RecordManagerFactory.createRecordManager(bulkDirectory.resolve(DB_NAME).toString(), options);
+        directory = bulkDirectory;
+        bulkLoading = true;
+    }
+
+    // write the staged store out, mark it complete, then move it over the live store and reopen that
+    public void finishBulkLoad() throws IOException {
+        if (!bulkLoading) return;
+        recordManager.commit();
+        recordManager.close();
+        recordManager = null;
+        Files.createFile(bulkDirectory.resolve(BULK_COMPLETE));
+        installBulkStore();
+        directory = baseDirectory;
+        bulkLoading = false;
+        initializeRecordManager();
+    }
+
+    // drop the staged store and reopen the live one; a staged store already marked complete (finishBulkLoad
+    // failed while installing it) is installed instead, since the live files may be partly replaced.
+    // If that fails again the marker stays and recoverBulkLoad finishes it at the next start.
+    // Returns true if the staged store was installed.
+    public boolean abortBulkLoad() throws IOException {
+        if (!bulkLoading) return false;
+        if (recordManager != null) {
+            recordManager.close();
+            recordManager = null;
+        }
+        boolean installed = recoverBulkLoad();
+        directory = baseDirectory;
+        bulkLoading = false;
+        initializeRecordManager();
+        return installed;
+    }
+
+    // a complete staged store that was not fully installed -> finish it; an incomplete one -> drop it.
+    // Returns true if a staged store was installed.
+    private boolean recoverBulkLoad() throws IOException {
+        if (!Files.exists(bulkDirectory)) return false;
+        if (Files.exists(bulkDirectory.resolve(BULK_COMPLETE))) {
+            System.out.println("Installing a complete bulk-loaded store");
+            installBulkStore();
+            return true;
+        }
+        System.out.println("Dropping an unfinished bulk load");
+        deleteRecursively(bulkDirectory);
+        return false;
+    }
+
+    // idempotent: files already moved are skipped, so a crash here is finished by recoverBulkLoad
+    private void installBulkStore() throws IOException {
+        for (String file : List.of(DB_NAME + ".db", DB_NAME + ".lg")) {
+            Path staged = bulkDirectory.resolve(file);
+            if (Files.exists(staged)) {
+                Files.move(staged, baseDirectory.resolve(file), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else if (file.endsWith(".lg")) {
+                Files.deleteIfExists(baseDirectory.resolve(file)); // a log of the old store must not be replayed on the new one
+            }
+        }
+        Path stagedIndex = bulkDirectory.resolve(DB_NAME + ".index");
+        if (Files.exists(stagedIndex)) {
+            Path liveIndex = baseDirectory.resolve(DB_NAME + ".index");
+            deleteRecursively(liveIndex);
+            Files.move(stagedIndex, liveIndex, StandardCopyOption.ATOMIC_MOVE);
+        }
+        deleteRecursively(bulkDirectory);
+    }
+
+    static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) return;
+        try (Stream<Path> walk = Files.walk(path)) {
+            for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
     }
 
     public RecordManager getRecordManager() {
@@ -26,6 +301,7 @@ public class RecordManagerService {
     public HTree getOrCreateHTree(String tableName) throws IOException {
         long recId = recordManager.getNamedObject(tableName);
         if (recId == 0) {
+            if (isShippedStore()) throw new IOException("Table " + tableName + " is missing from the shipped generation in " + directory);
             HTree hTree = HTree.createInstance(recordManager);
             recordManager.setNamedObject(tableName, hTree.getRecid());
             return hTree;
@@ -34,7 +310,62 @@ public class RecordManagerService {
         }
     }
 
+    // null if the table was never created
+    public HTree getHTree(String tableName) throws IOException {
+        long recId = recordManager.getNamedObject(tableName);
+        return recId == 0 ? null : HTree.load(recordManager, recId);
+    }
+
+    // drop a table no longer used, with its records
+    public void deleteHTree(String tableName) throws IOException {
+        long recId = recordManager.getNamedObject(tableName);
+        if (recId == 0) return;
+        HTree hTree = HTree.load(recordManager, recId);
+        List<Object> keys = new ArrayList<>();
+        FastIterator iter = hTree.keys();
+        Object key;
+        while ((key = iter.next()) != null) keys.add(key);
+        for (Object k : keys) hTree.remove(k); // frees the buckets
+        recordManager.delete(recId);
+        recordManager.setNamedObject(tableName, 0);
+    }
+
+    // table whose values are written with a compact serializer; tables from older databases are migrated once
+    public SerializedHTree getOrCreateHTree(String tableName, Serializer valueSerializer) throws IOException {
+        SerializedHTree table = new SerializedHTree(getOrCreateHTree(tableName), valueSerializer);
+        String marker = tableName + ".compact";
+        if (recordManager.getNamedObject(marker) == 0) {
+            if (isShippedStore()) throw new IOException("Table " + tableName + " of the shipped generation in " + directory + " is not migrated");
+            int migrated = table.migrate();
+            if (migrated > 0) {
+                System.out.println("Migrated " + migrated + " records of " + tableName + " to the compact format");
+            }
+            recordManager.setNamedObject(marker, recordManager.insert(Boolean.TRUE));
+            recordManager.commit();
+        }
+        return table;
+    }
+
+    // single record addressed by name (e.g. index metadata), null if it was never written
+    public Object getNamedRecord(String name, Serializer serializer) throws IOException {
+        long recId = recordManager.getNamedObject(name);
+        return recId == 0 ? null : recordManager.fetch(recId, serializer);
+    }
+
+    public void putNamedRecord(String name, Object value, Serializer serializer) throws IOException {
+        long recId = recordManager.getNamedObject(name);
+        if (recId == 0) {
+            recordManager.setNamedObject(name, recordManager.insert(value, serializer));
+        } else {
+            recordManager.update(recId, value, serializer);
+        }
+    }
+
     public void reinitializeRecordManager() throws IOException {
+        if (bulkLoading) {
+            abortBulkLoad();
+            return;
+        }
         if (recordManager != null) {
             recordManager.close();
         }
@@ -46,6 +377,8 @@ public class RecordManagerService {
     }
 
     public void close() throws IOException {
-        recordManager.close();
+        if (recordManager != null) { // null while a failed bulk install waits for recoverBulkLoad
+            recordManager.close();
+        }
     }
 }
\ No newline at end of file
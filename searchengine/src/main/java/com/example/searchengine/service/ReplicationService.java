@@ -0,0 +1,309 @@
+package com.example.searchengine.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.searchengine.database.DbManage;
+import com.example.searchengine.database.GenerationManifest;
+
+/**
+ * ReplicationService.java
+ * Read replicas fed by shipping whole index generations (replication.role):
+ *   primary  after a crawl, exports the committed store (JDBM files and index directory) as a
+ *            generation directory with a manifest of file sizes and checksums; the newest ones
+ *            are kept in crawlerDb.published, also served on /internal/replication/*
+ *   replica  polls replication.source (the primary's publish directory or its base URL) for a
+ *            new generation, downloads it (index files it already has are linked instead),
+ *            verifies every checksum and hot-swaps the store in. A replica never crawls
+ * Generations are numbered by the primary's index generation.
+ */
+@Service
+public class ReplicationService implements DisposableBean {
+    public static final String ROLE_PRIMARY = "primary";
+    public static final String ROLE_REPLICA = "replica";
+    public static final String LATEST_PATH = "/internal/replication/latest";
+    public static final String FILE_PATH = "/internal/replication/file";
+    private static final String LATEST = "latest.manifest"; // copy of the newest generation's manifest
+    private static final String STAGING = "staging"; // generation being exported
+
+    private final DbManage dbManage;
+    private final RecordManagerService recordManagerService;
+    private final boolean primary;
+    private final boolean replica;
+    private final int keepGenerations;
+    private final Source source; // replica only
+    private final ScheduledExecutorService scheduler;
+
+    // scheduler thread only
+    private long lastExported = -1;
+    private final Deque<Path> published = new ArrayDeque<>(); // oldest first
+
+    public ReplicationService(DbManage dbManage, RecordManagerService recordManagerService,
+            @Value("${replication.role:none}") String role,
+            @Value("${replication.source:}") String source,
+            @Value("${replication.interval-ms:5000}") long intervalMillis,
+            @Value("${replication.keep-generations:2}") int keepGenerations) throws IOException {
+        this.dbManage = dbManage;
+        this.recordManagerService = recordManagerService;
+        this.primary = ROLE_PRIMARY.equalsIgnoreCase(role.trim());
+        this.replica = ROLE_REPLICA.equalsIgnoreCase(role.trim());
+        this.keepGenerations = Math.max(1, keepGenerations);
+        if (replica && source.isBlank()) throw new IllegalArgumentException("replication.source is required on a replica");
+        this.source = !replica ? null
+            : source.startsWith("http://") || source.startsWith("https://") ? new HttpSource(source.trim(), intervalMillis)
+            : new DirectorySource(Paths.get(source.trim()));
+        if (primary) loadPublished();
+
+        if (!primary && !replica) {
+            this.scheduler = null;
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replication");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(100, intervalMillis);
+        scheduler.scheduleWithFixedDelay(primary ? this::publishQuietly : this::pullQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        System.out.println(primary ? "Replication: publishing generations to " + recordManagerService.getPublishDirectory()
+            : "Replication: read replica of " + source.trim());
+    }
+
+    public boolean isPrimary() {
+        return primary;
+    }
+
+    /****************** Primary ***********************/
+    // after a restart: the published generation in latest.manifest is kept, anything else dropped
+    private void loadPublished() throws IOException {
+        Path directory = recordManagerService.getPublishDirectory();
+        Files.createDirectories(directory);
+        Path latest = directory.resolve(LATEST);
+        String keep = null;
+        if (Files.exists(latest)) {
+            lastExported = GenerationManifest.read(latest).getGeneration();
+            keep = GenerationManifest.directoryName(lastExported);
+            published.add(directory.resolve(keep));
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (!name.equals(LATEST) && !name.equals(keep)) RecordManagerService.deleteRecursively(entry);
+            }
+        }
+    }
+
+    private void publishQuietly() {
+        try {
+            publish();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Replication: publishing failed: " + e.getMessage());
+        }
+    }
+
+    // export the current generation if it changed; the checksums are computed outside the write lock
+    void publish() throws IOException {
+        Path directory = recordManagerService.getPublishDirectory();
+        Path staging = directory.resolve(STAGING);
+        RecordManagerService.deleteRecursively(staging);
+        long generation = dbManage.exportGeneration(lastExported, staging);
+        if (generation < 0) return;
+
+        GenerationManifest manifest = GenerationManifest.build(generation, staging);
+        manifest.write(staging.resolve(GenerationManifest.FILE_NAME));
+        Path target = directory.resolve(GenerationManifest.directoryName(generation));
+        published.remove(target);
+        RecordManagerService.deleteRecursively(target); // same number again after the database was cleaned
+        Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+        manifest.write(directory.resolve(LATEST));
+        lastExported = generation;
+        published.addLast(target);
+        while (published.size() > keepGenerations) {
+            RecordManagerService.deleteRecursively(published.removeFirst());
+        }
+        System.out.println("Replication: published generation " + generation + " ("
+            + manifest.getEntries().size() + " files, " + manifest.getTotalSize() + " bytes)");
+    }
+
+    // for ReplicationController: null if nothing is published (or not a primary)
+    public byte[] getLatestManifest() throws IOException {
+        if (!primary) return null;
+        Path latest = recordManagerService.getPublishDirectory().resolve(LATEST);
+        return Files.exists(latest) ? Files.readAllBytes(latest) : null;
+    }
+
+    // a file of a published generation; null if there is no such file
+    public Path getPublishedFile(long generation, String path) throws IOException {
+        if (!primary) return null;
+        Path directory = recordManagerService.getPublishDirectory().resolve(GenerationManifest.directoryName(generation));
+        Path file = GenerationManifest.resolve(directory, path);
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    /****************** Replica ***********************/
+    // where a replica gets generations from
+    private interface Source {
+        GenerationManifest latest() throws IOException; // null if nothing is published yet
+        void fetch(long generation, String path, Path target) throws IOException;
+    }
+
+    // the primary's publish directory (same machine or a shared file system)
+    private static class DirectorySource implements Source {
+        private final Path directory;
+
+        DirectorySource(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public GenerationManifest latest() throws IOException {
+            Path latest = directory.resolve(LATEST);
+            return Files.exists(latest) ? GenerationManifest.read(latest) : null;
+        }
+
+        @Override
+        public void fetch(long generation, String path, Path target) throws IOException {
+            Path file = GenerationManifest.resolve(directory.resolve(GenerationManifest.directoryName(generation)), path);
+            Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // the primary's ReplicationController
+    private static class HttpSource implements Source {
+        private final String baseUrl;
+        private final Duration timeout;
+        private final HttpClient client;
+
+        HttpSource(String baseUrl, long timeoutMillis) {
+            this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+            this.timeout = Duration.ofMillis(Math.max(1000, timeoutMillis));
+            this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+        }
+
+        @Override
+        public GenerationManifest latest() throws IOException {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + LATEST_PATH)).timeout(timeout).GET().build();
+            HttpResponse<byte[]> response = send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() == 404) return null;
+            if (response.statusCode() != 200) throw new IOException("HTTP " + response.statusCode() + " from " + request.uri());
+            return GenerationManifest.fromBytes(response.body());
+        }
+
+        @Override
+        public void fetch(long generation, String path, Path target) throws IOException {
+            URI uri = URI.create(baseUrl + FILE_PATH + "?generation=" + generation
+                + "&path=" + URLEncoder.encode(path, StandardCharsets.UTF_8));
+            HttpResponse<Path> response = send(HttpRequest.newBuilder(uri).timeout(timeout).GET().build(),
+                HttpResponse.BodyHandlers.ofFile(target));
+            if (response.statusCode() != 200) {
+                Files.deleteIfExists(target);
+                throw new IOException("HTTP " + response.statusCode() + " from " + uri);
+            }
+        }
+
+        private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+            try {
+                return client.send(request, handler);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+        }
+    }
+
+    private void pullQuietly() {
+        try {
+            pull();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Replication: pulling failed, retrying later: " + e.getMessage());
+        }
+    }
+
+    // install the source's newest generation if it is not the one served
+    void pull() throws IOException {
+        GenerationManifest latest = source.latest();
+        if (latest == null || latest.getGeneration() == dbManage.getGeneration()) return;
+        long generation = latest.getGeneration();
+
+        Path installed = recordManagerService.getStoreDirectory();
+        String indexPrefix = installed.relativize(recordManagerService.getIndexDirectory()) + "/";
+        Map<String, GenerationManifest.Entry> installedFiles = new HashMap<>();
+        Path installedManifest = installed.resolve(GenerationManifest.FILE_NAME);
+        if (Files.exists(installedManifest)) {
+            for (GenerationManifest.Entry entry : GenerationManifest.read(installedManifest).getEntries()) {
+                installedFiles.put(entry.path, entry);
+            }
+        }
+
+        Path download = recordManagerService.getReplicaDownloadDirectory(generation);
+        RecordManagerService.deleteRecursively(download);
+        try {
+            int linked = 0;
+            long fetched = 0;
+            for (GenerationManifest.Entry entry : latest.getEntries()) {
+                Path target = GenerationManifest.resolve(download, entry.path);
+                Files.createDirectories(target.getParent());
+                // index files are never changed in place, so one listed the same is the same file
+                // (the JDBM files are: they are always fetched)
+                GenerationManifest.Entry local = installedFiles.get(entry.path);
+                if (entry.path.startsWith(indexPrefix) && local != null
+                        && local.size == entry.size && local.checksum == entry.checksum) {
+                    RecordManagerService.link(GenerationManifest.resolve(installed, entry.path), target);
+                    if (GenerationManifest.matches(target, entry)) {
+                        linked++;
+                        continue;
+                    }
+                    Files.delete(target);
+                }
+                source.fetch(generation, entry.path, target);
+                if (!GenerationManifest.matches(target, entry)) {
+                    throw new IOException("Checksum mismatch on " + entry.path + " of generation " + generation);
+                }
+                fetched += entry.size;
+            }
+            latest.write(download.resolve(GenerationManifest.FILE_NAME));
+
+            Path ready = recordManagerService.getReplicaDirectory(generation);
+            RecordManagerService.deleteRecursively(ready);
+            Files.move(download, ready, StandardCopyOption.ATOMIC_MOVE);
+            dbManage.installGeneration(ready);
+            System.out.println("Replication: installed generation " + generation + " (" + fetched
+                + " bytes fetched, " + linked + " files reused)");
+        } finally {
+            RecordManagerService.deleteRecursively(download); // gone after the move unless something failed
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler == null) return;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
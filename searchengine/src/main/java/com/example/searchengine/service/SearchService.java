@@ -5,10 +5,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -18,28 +22,146 @@ import org.springframework.stereotype.Service;
 
 import com.example.searchengine.model.PageInfo;
 import com.example.searchengine.model.PageResult;
-import com.example.searchengine.model.Posting;
 import com.example.searchengine.service.utils.StopStem;
 import com.example.searchengine.database.DbManage;
-import com.example.searchengine.model.KeywordFrequency;
-
-import jdbm.htree.HTree;
-import jdbm.helper.FastIterator;
+import com.example.searchengine.database.index.DocStats;
+import com.example.searchengine.database.index.IndexSnapshot;
+import com.example.searchengine.database.index.LeapfrogIntersection;
+import com.example.searchengine.database.index.PostingCursor;
+import com.example.searchengine.database.index.ShardedIndex;
+import com.example.searchengine.database.index.StaticScores;
 
 @Service
 public class SearchService {
     private DbManage dbManage;
     private final StopStem stopStem;
+    private final ExecutorService shardPool; // scores the shards of a query in parallel
+    private volatile Vocabulary vocabulary; // shard node: see termStats
+    private volatile GlobalCorpus globalCorpus; // shard node: see search(SearchRequest)
 
     public SearchService(DbManage dataService) {
         this.dbManage = dataService;
         this.stopStem = new StopStem("stopwords.txt"); 
+        this.shardPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "search-shard");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
+    // the whole query reads one pinned snapshot, however the crawler changes the index meanwhile
     public List<PageResult> search(String query, boolean usePageRank) throws IOException {
+        try (IndexSnapshot snapshot = dbManage.acquireSnapshot()) {
+            return search(snapshot, query, usePageRank, null, null);
+        }
+    }
+
+    // shard node, phase 1: this node's page count and doc freq of each query term, and its vocabulary
+    // if the coordinator's copy is stale
+    public ShardProtocol.StatsReply termStats(ShardProtocol.StatsRequest request) throws IOException {
+        List<String> terms = new ArrayList<>();
+        processParsedQuery(parseQuery(request.query), terms, new ArrayList<>());
+        try (IndexSnapshot snapshot = dbManage.acquireSnapshot()) {
+            Map<String, Integer> docFreqs = new HashMap<>();
+            for (String term : terms) {
+                int wordId = snapshot.getWordId(term);
+                docFreqs.put(term, wordId == -1 ? 0 : snapshot.getDocFreq(wordId));
+            }
+            Vocabulary local = vocabulary(snapshot);
+            GlobalCorpus global = globalCorpus;
+            return new ShardProtocol.StatsReply(new ShardProtocol.TermStats(snapshot.getPageCount(), docFreqs),
+                local.fingerprint, request.vocabularyFingerprint == local.fingerprint ? null : local.stats,
+                global == null ? ShardProtocol.NONE : global.fingerprint);
+        }
+    }
+
+    // shard node, phase 2: this node's top results scored with the idf of all nodes (not cached).
+    // No PageRank: each node's is normalized by its own max
+    public List<PageResult> search(ShardProtocol.SearchRequest request) throws IOException {
+        GlobalCorpus global = globalCorpus;
+        if (request.globalVocabulary != null) {
+            global = new GlobalCorpus(request.globalVocabulary, request.globalFingerprint);
+            globalCorpus = global;
+        } else if (global == null || global.fingerprint != request.globalFingerprint) {
+            throw new IOException("Global vocabulary " + request.globalFingerprint + " is not held by this node");
+        }
+        try (IndexSnapshot snapshot = dbManage.acquireSnapshot()) {
+            return search(snapshot, request.query, false, request.stats, global.docStats(snapshot));
+        }
+    }
+
+    // this node's doc freq of every word, with its fingerprint; counted once per snapshot
+    private static class Vocabulary {
+        final IndexSnapshot snapshot;
+        final ShardProtocol.TermStats stats;
+        final long fingerprint;
+
+        Vocabulary(IndexSnapshot snapshot, ShardProtocol.TermStats stats) {
+            this.snapshot = snapshot;
+            this.stats = stats;
+            this.fingerprint = stats.fingerprint();
+        }
+    }
+
+    private Vocabulary vocabulary(IndexSnapshot snapshot) {
+        Vocabulary current = vocabulary;
+        if (current != null && current.snapshot == snapshot) return current;
+        Map<String, Integer> docFreqs = new HashMap<>();
+        for (String word : dbManage.getAllWords()) {
+            int wordId = snapshot.getWordId(word);
+            int docFreq = wordId == -1 ? 0 : snapshot.getDocFreq(wordId);
+            if (docFreq > 0) docFreqs.put(word, docFreq);
+        }
+        current = new Vocabulary(snapshot, new ShardProtocol.TermStats(snapshot.getPageCount(), docFreqs));
+        vocabulary = current;
+        return current;
+    }
+
+    // the global vocabulary last shipped by the coordinator, and the doc stats computed from it for
+    // one snapshot generation (the stored DocStats norms use this node's idf only, so they don't
+    // compare across nodes)
+    private static class GlobalCorpus {
+        final ShardProtocol.TermStats vocabulary;
+        final long fingerprint;
+        private volatile DocStats docStats = DocStats.EMPTY;
+
+        GlobalCorpus(ShardProtocol.TermStats vocabulary, long fingerprint) {
+            this.vocabulary = vocabulary;
+            this.fingerprint = fingerprint;
+        }
+
+        // built once per generation in one pass over the snapshot's pages, like the stored columns
+        DocStats docStats(IndexSnapshot snapshot) throws IOException {
+            DocStats current = docStats;
+            if (current.getGeneration() == snapshot.getGeneration()) return current;
+            synchronized (this) {
+                current = docStats;
+                if (current.getGeneration() == snapshot.getGeneration()) return current;
+                Map<Integer, Double> idf = new HashMap<>();
+                vocabulary.docFreqs.forEach((word, docFreq) -> {
+                    int wordId = snapshot.getWordId(word);
+                    if (wordId != -1 && docFreq > 0) idf.put(wordId, DocStats.idf(vocabulary.pageCount, docFreq));
+                });
+                DocStats.Builder builder = new DocStats.Builder(snapshot.getPageCount(), wordId -> idf.getOrDefault(wordId, 0.0));
+                IndexSnapshot.PageTables pages = snapshot.getPageTables();
+                for (int docId = 0; docId < snapshot.getPageCount(); docId++) {
+                    PageInfo pageInfo = pages.getPageInfo(docId);
+                    if (pageInfo != null) builder.add(docId, pageInfo.bodyWordList, pageInfo.titleWordList);
+                }
+                current = builder.build(snapshot.getGeneration());
+                docStats = current;
+                return current;
+            }
+        }
+    }
+
+    // globalStats / globalDocStats: corpus stats for the idf and the doc columns, null for this node's own
+    private List<PageResult> search(IndexSnapshot snapshot, String query, boolean usePageRank,
+            ShardProtocol.TermStats globalStats, DocStats globalDocStats) throws IOException {
         List<PageResult> results = new ArrayList<>(); // return rersults list
+        boolean cached = usePageRank && globalStats == null;
         
-        if(usePageRank){    // only store cache result for using pageRank
+        if(cached){    // only store cache result for using pageRank
             dbManage.printCache(); // print the cache for debug
             List<PageResult> cachedResults = dbManage.getCachedResults(query);
             if (cachedResults != null) {
@@ -48,7 +170,7 @@ public class SearchService {
             }
         }
 
-        int totalCrawledPages = dbManage.getPageCount();
+        int totalCrawledPages = snapshot.getPageCount();
         if (totalCrawledPages == 0) return results; // No pages to search
 
         // parse the query
@@ -69,61 +191,27 @@ public class SearchService {
         }
         ////////////////////////////// end debugging output
         
-        Map<Integer, Double> idfMap = computeIDFs(terms); // Precompute IDF for each term (Map<wordId, idf>)
-        Map<Integer, Map<Integer, Double>> docTfidfMap = computeTermWeight(terms, idfMap); // compute tf score for each doc
-        
-        // Calculate cosine similarity scores
-        Map<Integer, Double> scores = computeCosineSimilarity(docTfidfMap, idfMap, terms); // <doc id, scores>
+        Map<Integer, Double> idfMap = computeIDFs(snapshot, terms, globalStats); // Precompute IDF for each term (Map<wordId, idf>)
+        Map<Integer, Integer> phraseBoosts = computePhraseBoosts(snapshot, phrases); // <doc id, boost>
 
-        // support phrase search
-        applyPhraseBoosts(phrases, scores);
-        
-        // Incorporate PageRank if enabled
-        if (usePageRank) { incorporatePageRank(scores); }
-        
-        results = queryResult(scores);    // store the page into pageResult object for return
+        // score only the top 50 candidates, skipping docs whose upper bound cannot reach them
+        List<TopKEvaluator.Hit> hits = topK(snapshot, terms, idfMap, phraseBoosts, usePageRank, globalDocStats);
+        Map<Integer, Double> scores = new LinkedHashMap<>();
+        for (TopKEvaluator.Hit hit : hits) scores.put(hit.docId, hit.score);
+
+        results = queryResult(snapshot, scores);    // store the page into pageResult object for return
         results.sort((a, b) -> Double.compare(b.getScore(), a.getScore())); // sort by score
-        if (results.size() > 50) results = new ArrayList<>(results.subList(0, 50)); 
 
-        if(usePageRank) dbManage.putCachedResults(query, results);
+        if(cached) dbManage.putCachedResults(query, results, snapshot);
         return results;
     }
 
-    
-    private void incorporatePageRank(Map<Integer, Double> scores) throws IOException {
-        HTree pageRankTable = dbManage.getPageRankMap();
-        
-        // Get the max PageRank score for normalization
-        double maxPageRank = 1.0; // Default if no pages
-        FastIterator iter = pageRankTable.keys();
-        Integer pageId;
-        while ((pageId = (Integer) iter.next()) != null) {
-            Double pr = (Double) pageRankTable.get(pageId);
-            if (pr != null && pr > maxPageRank) {
-                maxPageRank = pr;
-            }
-        }
 
-        // Combine scores (70% content score, 30% PageRank)
+    // Combine scores (70% content score, 30% PageRank normalized by the max, from the static score column)
+    private static double blendPageRank(StaticScores staticScores, int docId, double contentScore) {
         final double pageRankWeight = 0.3;
         final double contentWeight = 0.7;
-        final double finalMaxPageRank = maxPageRank;
-        
-        scores.replaceAll((docId, contentScore) -> {
-            try {
-                Double pageRankScore = (Double) pageRankTable.get(docId);
-                if (pageRankScore == null) {
-                    return contentScore * contentWeight;
-                }
-                
-                // Normalize PageRank score and combine with content score
-                double normalizedPR = pageRankScore / finalMaxPageRank;
-                return (contentScore * contentWeight) + (normalizedPR * pageRankWeight);
-            } catch (IOException e) {
-                e.printStackTrace();
-                return contentScore * contentWeight;
-            }
-        });
+        return (contentScore * contentWeight) + (staticScores.score(docId) * pageRankWeight);
     }
 
 
@@ -180,201 +268,244 @@ public class SearchService {
     }
 
 
-    private Map<Integer, Double> computeIDFs(List<String> terms) throws IOException {
-        int totalDocs = dbManage.getPageCount();
+    private Map<Integer, Double> computeIDFs(IndexSnapshot snapshot, List<String> terms,
+            ShardProtocol.TermStats globalStats) throws IOException {
+        int totalDocs = globalStats == null ? snapshot.getPageCount() : globalStats.pageCount;
         //System.out.println("Total number of documents: " + totalDocs);
         Map<Integer, Double> idfMap = new HashMap<>(); // for store idf score
-        Set<Integer> docsWithTerm = new HashSet<>(); // for count the doc frequency
 
         for (String term : terms) {
-            Integer wordId = dbManage.getWordId(term);
+            Integer wordId = snapshot.getWordId(term);
             if (wordId == -1 || idfMap.containsKey(wordId)) { // term not exist in the database or already computed
                 continue;
             }
 
             // for each term, get the doc frequency (from body & title) -> cal. idf
-            docsWithTerm.clear();
-            List<Posting> titlePostings  = dbManage.getTitlePosting(wordId);
-            List<Posting> bodyPostings = dbManage.getBodyPosting(wordId);
-            addDocsFromPostings(docsWithTerm, titlePostings);
-            addDocsFromPostings(docsWithTerm, bodyPostings);
-            double idf = Math.log(1 + (double) totalDocs / (docsWithTerm.size())); // +1 for avoid div by 0 and smoothing effect
+            int docFreq = globalStats == null ? snapshot.getDocFreq(wordId) : globalStats.docFreq(term);
+            if (docFreq == 0) continue; // word no longer in any page: would give an infinite idf
+            double idf = DocStats.idf(totalDocs, docFreq); // +1 for avoid div by 0 and smoothing effect
             idfMap.put(wordId, idf);
 
             ///////////////////// Debug output showing both ID and term
             //System.out.printf("[DEBUG] Term: %s (ID:%d), DocFreq: %d, IDF: %.4f%n",
-            //term, wordId, docsWithTerm.size(), idf);
+            //term, wordId, docFreq, idf);
         }
         return idfMap;
     }
 
-    private void addDocsFromPostings(Set<Integer> docs, List<Posting> postings) {
-        if (postings != null) {
-            postings.forEach(p -> docs.add(p.getId()));
-        }
-    }
-
-    /**
-     * @param terms: list of term
-     * @return Map<doc id, Map<word id, tf score>>
-     * @throws IOException
-     */
-    private Map<Integer, Map<Integer, Double>> computeTermWeight(List<String> terms, Map<Integer, Double> idfMap) throws IOException {
-        Map<Integer, Map<Integer, Double>> docTfMap = new HashMap<>();
-        Set<String> termSet = new HashSet<>(); // for avoid double exist term
-
-        for (String term : terms) {
-            if(termSet.contains(term)) continue; // avoid double exist term
-            termSet.add(term);
-
-            Integer wordId = dbManage.getWordId(term); 
-            if (wordId == -1) continue; //! not handle double exist term !!
-
-            List<Posting> titlePostings  = dbManage.getTitlePosting(wordId);
-            List<Posting> bodyPostings = dbManage.getBodyPosting(wordId);
-            processPostings(docTfMap, titlePostings, wordId, 3.0); // boost title tf score 
-            processPostings(docTfMap, bodyPostings, wordId, 1.0);
-        }
-
-
-        // find the maxtf across the document -> cal. tf/maxtf
-        for (Map.Entry<Integer, Map<Integer, Double>> entry : docTfMap.entrySet()) {
-            int docId = entry.getKey();
-            Map<Integer, Double> termFreq = entry.getValue();
-            Map<Integer, Integer> textList =  dbManage.getBodyWordList(docId);
-            double maxTf = 1.0;  // init to 1 to avoid div by zero
+    // query term with its idf and query weight; title and body lists of the term share it
+    private static class QueryTerm {
+        final int wordId;
+        final double idf;
+        final double queryWeight;
 
-            if (textList != null) {
-                for (Map.Entry<Integer, Integer> wordEntry : textList.entrySet()) {
-                    double tf = (double) wordEntry.getValue();
-                    if (tf > maxTf) {
-                        maxTf = tf;
-                    }
-                }
-            }
-            //System.out.printf("\nDocument %d - Before normalization (maxTf=%.2f):\n", docId, maxTf); 
-            final double finalMaxTf = maxTf;
-            termFreq.replaceAll((wordId, tf) -> {
-                //System.out.printf("before nor: Word ID: %d, TF: %.2f -> ", wordId, tf);
-                double normalizedTf = 0.5 + 0.5 * tf / finalMaxTf;   // improved term weights (favors terms with small tf)
-                //System.out.printf("after nor tfidf: %.2f\n", normalizedTf * idfMap.get(wordId));
-                return normalizedTf * idfMap.get(wordId);
-            });         
+        QueryTerm(int wordId, double idf, double queryWeight) {
+            this.wordId = wordId;
+            this.idf = idf;
+            this.queryWeight = queryWeight;
         }
-        return docTfMap;
     }
 
-    // create the vector (word id, tf score) for each document
-    private void processPostings(Map<Integer, Map<Integer, Double>> docTfMap, List<Posting> postings, Integer wordId, double weight) {
-        if (postings == null) return;
-        for (Posting p : postings) {
-            int docId = p.getId();
-            Map<Integer, Double> termFreq = docTfMap.computeIfAbsent(docId, k -> new HashMap<>());
+    // list key: which term and how much one occurrence adds to its tf
+    private static class TermField {
+        final QueryTerm term;
+        final double tfWeight;
 
-            // Calculate weighted frequency and accumulate
-            double weightedFreq = p.getFreq() * weight;
-            termFreq.merge(wordId, weightedFreq, Double::sum);
+        TermField(QueryTerm term, double tfWeight) {
+            this.term = term;
+            this.tfWeight = tfWeight;
         }
     }
 
+    private static final Object PHRASE_KEY = new Object();
 
-    // compute cosine similarity for each document with the query
-    private Map<Integer, Double> computeCosineSimilarity(Map<Integer, Map<Integer, Double>> docTfidfMap, Map<Integer, Double> idfMap, List<String> terms) throws IOException {
-        Map<Integer, Double> scores = new HashMap<>(); // <doc id, score>
-        
+    /**
+     * Cosine similarity of the tf-idf vectors (plus phrase boost and PageRank), top 50 only.
+     * Doc weight of a term: (0.5 + 0.5 * tf / maxTf) * idf with tf = 3 * title freq + body freq.
+     * maxTf and the norm of the whole doc vector come from the DocStats columns; docs indexed
+     * since they were built fall back to the page info and a norm over the query terms.
+     * Upper bounds per list: since docNorm >= w, q * w / sqrt(docNorm) <= q * sqrt(w), and
+     * tf / maxTf <= 3 * title freq + (body freq > 0 ? 1 : 0) because maxTf >= body freq >= 1.
+     * With several shards each one is evaluated on the shard pool and their top 50s are merged.
+     * A shard node searching for a coordinator scores with columns built from the global idf (GlobalCorpus).
+     */
+    private List<TopKEvaluator.Hit> topK(IndexSnapshot snapshot, List<String> terms, Map<Integer, Double> idfMap,
+            Map<Integer, Integer> phraseBoosts, boolean usePageRank, DocStats globalDocStats) throws IOException {
         // 1. Create proper query vector with TF-IDF weights
-        Map<Integer, Double> queryVector = new HashMap<>();
+        Map<Integer, Double> queryVector = new LinkedHashMap<>();
         for (String term : terms) {
-            Integer wordId = dbManage.getWordId(term);
-            if (wordId != -1) {
+            Integer wordId = snapshot.getWordId(term);
+            if (wordId != -1 && idfMap.containsKey(wordId)) {
                 // Calculate query TF (term frequency in query)
                 double queryTf = Collections.frequency(terms, term);
-                // Query IDF is already in idfMap
                 queryVector.merge(wordId, queryTf * idfMap.get(wordId), Double::sum);
             }
         }
         double queryNorm = Math.sqrt(queryVector.values().stream()
                                 .mapToDouble(v -> v * v)
                                 .sum());
-        
-        for (Map.Entry<Integer, Map<Integer, Double>> entry : docTfidfMap.entrySet()) { 
-            int docId = entry.getKey(); // doc id
-            Map<Integer, Double> docVector = entry.getValue();  // <word id, tf*idf score>
+        double sqrtQueryNorm = Math.sqrt(queryNorm);
+
+        DocStats docStats = globalDocStats != null ? globalDocStats : snapshot.getDocStats();
+        StaticScores staticScores = snapshot.getStaticScores();
+        TopKEvaluator evaluator = new TopKEvaluator(50,
+            usePageRank ? content -> content * 0.7 + 0.3 : content -> content);
+        TopKEvaluator.DocScorer scorer = (docId, matching) -> {
+            double maxTf = docStats.maxTf(docId);
+            if (maxTf == 0) {
+                // not in the columns yet: find the maxtf across the document -> cal. tf/maxtf
+                PageInfo pageInfo = snapshot.getPageTables().getPageInfo(docId);
+                if (pageInfo == null) return null; // not shown in results
+                maxTf = DocStats.maxTf(pageInfo.bodyWordList);
+            }
+
+            // weighted tf per term, summed over title and body
+            Map<QueryTerm, Double> termFreq = new HashMap<>();
+            int phraseBoost = 0;
+            for (TopKEvaluator.ScoredList list : matching) {
+                if (list.key == PHRASE_KEY) {
+                    phraseBoost = list.cursor.freq();
+                } else {
+                    TermField field = (TermField) list.key;
+                    termFreq.merge(field.term, list.cursor.freq() * field.tfWeight, Double::sum);
+                }
+            }
 
-            // Calculate dot product (sum of doc's TF-IDF scores for query terms)
             double dotProduct = 0.0;
-            for (Map.Entry<Integer, Double> queryEntry : queryVector.entrySet()) {
-                Integer wordId = queryEntry.getKey();
-                double queryWeight = queryEntry.getValue();
-                double docWeight = docVector.getOrDefault(wordId, 0.0);
-                //System.out.println("wordId: " + wordId + ", queryWeight: " + queryWeight + ", docWeight: " + docWeight);
-                dotProduct += queryWeight * docWeight;
+            double normSquare = 0.0;
+            for (Map.Entry<QueryTerm, Double> entry : termFreq.entrySet()) {
+                QueryTerm term = entry.getKey();
+                double weight = DocStats.termWeight(entry.getValue(), maxTf, term.idf);
+                dotProduct += term.queryWeight * weight;
+                normSquare += weight * weight;
             }
+            // the full norm covers the query terms too; max() only matters while the columns lag the idf
+            double docNorm = Math.max(docStats.norm(docId), Math.sqrt(normSquare));
+            double cosine = dotProduct / (Math.sqrt(docNorm) * sqrtQueryNorm + 1e-8);
+
+            // phrase boost is additive rather than multiplicative to handle zero scores
+            double score = cosine + phraseBoost;
+            return usePageRank ? blendPageRank(staticScores, docId, score) : score;
+        };
+
+        // 2. Scatter: each shard evaluates its own lists; the idf above is global, so shard scores compare
+        int shardCount = snapshot.getShardCount();
+        if (shardCount == 1) {
+            return evaluator.evaluate(shardLists(snapshot, 0, queryVector, idfMap, sqrtQueryNorm, phraseBoosts), scorer);
+        }
+        List<Callable<List<TopKEvaluator.Hit>>> tasks = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            final int current = shard;
+            tasks.add(() -> evaluator.evaluate(
+                shardLists(snapshot, current, queryVector, idfMap, sqrtQueryNorm, phraseBoosts), scorer));
+        }
 
-            // Calculate document norm
-            double docNorm = Math.sqrt(docVector.values().stream()
-            .mapToDouble(v -> v * v)
-            .sum());
+        // 3. Gather: the global top 50 is among the shard top 50s
+        List<TopKEvaluator.Hit> hits = new ArrayList<>();
+        try {
+            for (Future<List<TopKEvaluator.Hit>> shardHits : shardPool.invokeAll(tasks)) {
+                hits.addAll(shardHits.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Search interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Shard search failed", e.getCause());
+        }
+        hits.sort(TopKEvaluator.ORDER);
+        return hits.size() > 50 ? new ArrayList<>(hits.subList(0, 50)) : hits;
+    }
 
-            double cosine = (dotProduct) / (Math.sqrt(docNorm) * Math.sqrt(queryNorm) + 1e-8);
-            scores.put(docId, cosine);
-            //System.out.printf("Doc %d - Cosine: %.4f (Dot: %.2f, DocNorm: %.2f, QueryNorm: %.2f)%n",
-            //docId, cosine, dotProduct, docNorm, queryNorm);
+    // one list per term and field of the shard, bounded by the largest freq in the list or block
+    private static List<TopKEvaluator.ScoredList> shardLists(IndexSnapshot snapshot, int shard,
+            Map<Integer, Double> queryVector, Map<Integer, Double> idfMap, double sqrtQueryNorm,
+            Map<Integer, Integer> phraseBoosts) {
+        List<TopKEvaluator.ScoredList> lists = new ArrayList<>();
+        for (Map.Entry<Integer, Double> entry : queryVector.entrySet()) {
+            QueryTerm term = new QueryTerm(entry.getKey(), idfMap.get(entry.getKey()), entry.getValue());
+            double scale = term.queryWeight * Math.sqrt(term.idf) / sqrtQueryNorm;
+            lists.add(new TopKEvaluator.ScoredList(snapshot.getTitleCursor(shard, term.wordId),
+                f -> f == 0 ? 0 : scale * Math.sqrt(0.5 + 1.5 * f), new TermField(term, 3.0))); // boost title tf score
+            lists.add(new TopKEvaluator.ScoredList(snapshot.getBodyCursor(shard, term.wordId),
+                f -> f == 0 ? 0 : scale, new TermField(term, 1.0)));
         }
-        return scores;
+        Map<Integer, Integer> shardBoosts = new HashMap<>();
+        phraseBoosts.forEach((docId, boost) -> {
+            if (ShardedIndex.shardOf(docId, snapshot.getShardCount()) == shard) shardBoosts.put(docId, boost);
+        });
+        if (!shardBoosts.isEmpty()) {
+            lists.add(new TopKEvaluator.ScoredList(new PhraseBoostCursor(shardBoosts), f -> f, PHRASE_KEY));
+        }
+        return lists;
     }
 
     /////////////////// support phrase search //////////////////////
-    private void applyPhraseBoosts(List<List<String>> phrases, Map<Integer, Double> scores) throws IOException {
+    // <doc id, boost> for docs holding at least one of the phrases
+    private Map<Integer, Integer> computePhraseBoosts(IndexSnapshot snapshot, List<List<String>> phrases) throws IOException {
+        Map<Integer, Integer> boosts = new HashMap<>();
         for (List<String> phrase : phrases) {
-            Set<Integer> candidateDocs = findDocumentsWithAllTerms(phrase);
-            for (int docId : candidateDocs) {
+            PostingCursor[] titleCursors = new PostingCursor[phrase.size()];
+            PostingCursor[] bodyCursors = new PostingCursor[phrase.size()];
+            LeapfrogIntersection candidateDocs = findDocumentsWithAllTerms(snapshot, phrase, titleCursors, bodyCursors);
+            if (candidateDocs == null) continue; // a phrase term is not in the database
+
+            int docId;
+            while ((docId = candidateDocs.nextDoc()) != PostingCursor.NO_MORE_DOCS) {
                 // Count phrase occurrences in both title and body
-                int titleCount = countPhraseOccurrences(docId, phrase, true);
-                int bodyCount = countPhraseOccurrences(docId, phrase, false);
-                int totalPhraseOccurrences = titleCount + bodyCount;
-    
-                if (totalPhraseOccurrences > 0) {
-                    double currentScore = scores.getOrDefault(docId, 0.0);
-                    double boost = (titleCount * 2.0) + bodyCount;
-                    double phraseScore = boost * 3; // Apply logarithmic scaling to prevent over-boosting
-                    
-                    // Additive boost rather than multiplicative to handle zero scores
-                    scores.put(docId, currentScore + phraseScore);
-    
-                    /*System.out.printf("Phrase '%s' in doc %d: %d title, %d body, boost=%.2f, score %.2f→%.2f%n",
-                        String.join(" ", phrase), docId, titleCount, bodyCount,
-                        phraseScore, currentScore, scores.get(docId));*/
+                int titleCount = countPhraseOccurrences(docId, titleCursors);
+                int bodyCount = countPhraseOccurrences(docId, bodyCursors);
+
+                if (titleCount + bodyCount > 0) {
+                    int boost = (titleCount * 2) + bodyCount;
+                    boosts.merge(docId, boost * 3, Integer::sum);
                 }
             }
         }
+        return boosts;
     }
-    
-    private int countPhraseOccurrences(int docId, List<String> phrase, boolean inTitle) throws IOException {
-        List<Integer> wordIds = new ArrayList<>();
-        for (String term : phrase) {
-            Integer wordId = dbManage.getWordId(term);
-            if (wordId == null || wordId == -1) return 0; // If any term is missing, no occurrences
-            wordIds.add(wordId);
+
+    // phrase boosts as a doc ordered list; the boost stands in for the freq
+    static class PhraseBoostCursor implements PostingCursor {
+        private final int[] docs;
+        private final int[] boosts;
+        private final int maxBoost;
+        private int index = -1;
+
+        PhraseBoostCursor(Map<Integer, Integer> boostMap) {
+            docs = boostMap.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            boosts = new int[docs.length];
+            int max = 0;
+            for (int i = 0; i < docs.length; i++) {
+                boosts[i] = boostMap.get(docs[i]);
+                max = Math.max(max, boosts[i]);
+            }
+            maxBoost = max;
         }
+
+        public int nextDoc() { index++; return docId(); }
+        public int docId() { return index < 0 ? -1 : index < docs.length ? docs[index] : NO_MORE_DOCS; }
+        public int freq() { return boosts[index]; }
+        public int[] positions() { return new int[0]; }
+        public int cost() { return docs.length; }
+        public int advanceShallow(int target) { return docs.length > 0 && docs[docs.length - 1] >= target ? docs[docs.length - 1] : NO_MORE_DOCS; }
+        public int blockMaxFreq() { return maxBoost; }
+        public int maxFreq() { return maxBoost; }
+    }
     
-        // Get positions for each term in the document section (title or body)
-        Map<Integer, List<Integer>> termPositions = new HashMap<>();
-        for (int i = 0; i < wordIds.size(); i++) {
-            List<Posting> postings = inTitle ? 
-                dbManage.getTitlePosting(wordIds.get(i)) : 
-                dbManage.getBodyPosting(wordIds.get(i));
-            termPositions.put(i, getPositionsForDoc(docId, postings));
+    // cursors are positioned on docId or past it (term only in the other field)
+    private int countPhraseOccurrences(int docId, PostingCursor[] cursors) {
+        int[][] termPositions = new int[cursors.length][];
+        for (int i = 0; i < cursors.length; i++) {
+            termPositions[i] = cursors[i].docId() == docId ? cursors[i].positions() : new int[0];
         }
-    
+
         // Count consecutive sequences
         int phraseCount = 0;
-        List<Integer> firstTermPositions = termPositions.get(0);
-        
-        for (int pos : firstTermPositions) {
+        for (int pos : termPositions[0]) {
             boolean fullMatch = true;
-            for (int i = 1; i < wordIds.size(); i++) {
-                if (!termPositions.get(i).contains(pos + i)) {
+            for (int i = 1; i < cursors.length; i++) {
+                if (Arrays.binarySearch(termPositions[i], pos + i) < 0) { // positions are sorted
                     fullMatch = false;
                     break;
                 }
@@ -383,98 +514,40 @@ public class SearchService {
                 phraseCount++;
             }
         }
-        
         return phraseCount;
     }
 
-    // get all doc with the phrase term exist
-    private Set<Integer> findDocumentsWithAllTerms(List<String> phrase) throws IOException {
-        Set<Integer> docs = new HashSet<>(); // doc id - contain all the phrase terms
-        boolean firstTerm = true;
-        
-        for (String term : phrase) {
-            Integer wordId = dbManage.getWordId(term);
-            if (wordId == -1) return Collections.emptySet();
-            
-            Set<Integer> termDocs = new HashSet<>(); // temp set - current term exist
-            addDocsFromPostings(termDocs, dbManage.getTitlePosting(wordId));
-            addDocsFromPostings(termDocs, dbManage.getBodyPosting(wordId));
-            
-            if (firstTerm) {
-                docs.addAll(termDocs);
-                firstTerm = false;
-            } else {
-                docs.retainAll(termDocs); // Intersection of documents
-            }
-            if (docs.isEmpty()) return docs; // Early exit if no common docs
-        }   
-        return docs;
-    }
-
-    // Helper method to extract positions for a specific document
-    private List<Integer> getPositionsForDoc(int docId, List<Posting> postings) {
-        List<Integer> positions = new ArrayList<>();
-        if (postings != null) {
-            for (Posting p : postings) {
-                if (p.getId() == docId) {
-                    positions.addAll(p.getPositions());
-                }
-            }
+    // docs with every phrase term (in title or body), intersected rarest term first;
+    // fills the per-term title/body cursors the phrase positions are read from, null if a term is unknown
+    private LeapfrogIntersection findDocumentsWithAllTerms(IndexSnapshot snapshot, List<String> phrase,
+            PostingCursor[] titleCursors, PostingCursor[] bodyCursors) throws IOException {
+        List<PostingCursor> termDocs = new ArrayList<>();
+        for (int i = 0; i < phrase.size(); i++) {
+            int wordId = snapshot.getWordId(phrase.get(i));
+            if (wordId == -1) return null;
+
+            titleCursors[i] = snapshot.getTitleCursor(wordId);
+            bodyCursors[i] = snapshot.getBodyCursor(wordId);
+            termDocs.add(PostingCursor.union(titleCursors[i], bodyCursors[i]));
         }
-        return positions;
+        return new LeapfrogIntersection(termDocs);
     }
     /////////////////////// end of phrase search support //////////////////////////
 
     
-    // handle the return of search result
-    public List<PageResult> queryResult(Map<Integer, Double> scores) throws IOException {
+    // handle the return of search result: page fields come from the snapshot that was searched
+    public List<PageResult> queryResult(IndexSnapshot snapshot, Map<Integer, Double> scores) throws IOException {
         List<PageResult> results = new ArrayList<>();
         for(Integer docId : scores.keySet()) {
-            PageInfo pageInfo = dbManage.getPageInfo(docId);
-            if (pageInfo != null) {
-                PageResult result = new PageResult();
-                result.setId(docId);
-                result.setScore(scores.get(docId));
-                result.setTitle(pageInfo.getTitle());
-                result.setUrl(pageInfo.getUrl());
-                result.setLastModified(pageInfo.getLastModified());
-                result.setSize(pageInfo.getSize());
-                result.setChildLinks(dbManage.getChildLinks(docId));
-                result.setParentLinks(dbManage.getParentLinks(docId)); // Parent links would need to be retrieved similarly
-                
-                // body word list for display
-                if (pageInfo.bodyWordList != null) {
-                    List<KeywordFrequency> keywords = new ArrayList<>();
-                    for (Map.Entry<Integer, Integer> wordEntry : pageInfo.bodyWordList.entrySet()) {
-                        String word = dbManage.getWord(wordEntry.getKey());
-                        if (word != null) {
-                            keywords.add(new KeywordFrequency(word, wordEntry.getValue()));
-                        }
-                    }
-                    // Sort by frequency in descending order
-                    keywords.sort((a, b) -> b.getFrequency().compareTo(a.getFrequency()));
-                    result.setKeywordsWithFrequency(keywords.stream().collect(Collectors.toList()));
-                }
-                
-                results.add(result);
-            }
+            PageResult result = snapshot.toResult(docId, scores.get(docId));
+            if (result != null) results.add(result);
         }
         return results;
     }
 
     // display all stemmed keywords for select
     public List<String> getAllKeywords() throws IOException {
-        List<String> keywords = new ArrayList<>();
-        HTree wordidMap = dbManage.getWordidMap();
-        FastIterator iter = wordidMap.keys();
-        Integer key;
-        while ((key = (Integer) iter.next()) != null) {
-            String word = dbManage.getWord(key);
-            if (word != null) {
-                keywords.add(word);
-            }
-        }
-        return keywords;
+        return dbManage.getAllWords();
     }
 
 
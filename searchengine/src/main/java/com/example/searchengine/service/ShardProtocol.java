@@ -0,0 +1,212 @@
+package com.example.searchengine.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.example.searchengine.database.index.VarInt;
+import com.example.searchengine.database.serializer.PageResultSerializer;
+import com.example.searchengine.model.PageResult;
+
+/**
+ * ShardProtocol.java
+ * Binary messages between a coordinator and its shard nodes (POST, application/octet-stream):
+ *   stats   request: query, fingerprint of the node's vocabulary the coordinator holds
+ *           response: the node's page count, (term, doc freq) for each query term, the fingerprint
+ *                     of its vocabulary (doc freq of every word) and the vocabulary itself if the
+ *                     coordinator's copy is stale, fingerprint of the global vocabulary it holds
+ *   search  request: query, page count and doc freqs summed over all nodes, fingerprint of the
+ *                    global vocabulary and the vocabulary itself if the node's copy is stale
+ *           response: the node's top results, scored with the global idf (no PageRank: each node's
+ *                     is normalized by its own max, so it doesn't compare across nodes)
+ * The doc norms of the cosine depend on the idf of every word of a doc, so the nodes need the
+ * global vocabulary, not just the query terms; it only travels when it changed.
+ * Every message starts with the protocol version.
+ */
+public final class ShardProtocol {
+    public static final String STATS_PATH = "/internal/shard/stats";
+    public static final String SEARCH_PATH = "/internal/shard/search";
+    private static final int VERSION = 2;
+
+    private static final PageResultSerializer resultSerializer = new PageResultSerializer();
+
+    private ShardProtocol() {
+    }
+
+    // corpus statistics the idf is computed from: of one node, or summed over the nodes
+    public static class TermStats {
+        public static final TermStats EMPTY = new TermStats(0, Collections.emptyMap());
+
+        public final int pageCount;
+        public final Map<String, Integer> docFreqs; // stemmed term -> docs containing it
+
+        public TermStats(int pageCount, Map<String, Integer> docFreqs) {
+            this.pageCount = pageCount;
+            this.docFreqs = docFreqs;
+        }
+
+        public int docFreq(String term) {
+            return docFreqs.getOrDefault(term, 0);
+        }
+
+        public TermStats plus(TermStats other) {
+            Map<String, Integer> sum = new HashMap<>(docFreqs);
+            other.docFreqs.forEach((term, docFreq) -> sum.merge(term, docFreq, Integer::sum));
+            return new TermStats(pageCount + other.pageCount, sum);
+        }
+
+        // content hash, so the two ends can tell whether they hold the same stats (never NONE)
+        public long fingerprint() {
+            long hash = pageCount;
+            for (Map.Entry<String, Integer> entry : new TreeMap<>(docFreqs).entrySet()) {
+                hash = hash * 1_000_003 + entry.getKey().hashCode();
+                hash = hash * 1_000_003 + entry.getValue();
+            }
+            return hash == NONE ? 1 : hash;
+        }
+    }
+
+    // fingerprint of stats not held yet
+    public static final long NONE = 0;
+
+    public static class StatsRequest {
+        public final String query;
+        public final long vocabularyFingerprint; // of the node's vocabulary the coordinator holds
+
+        public StatsRequest(String query, long vocabularyFingerprint) {
+            this.query = query;
+            this.vocabularyFingerprint = vocabularyFingerprint;
+        }
+    }
+
+    public static class StatsReply {
+        public final TermStats stats; // query terms
+        public final long vocabularyFingerprint;
+        public final TermStats vocabulary; // null if the coordinator holds it
+        public final long globalFingerprint; // of the global vocabulary the node holds
+
+        public StatsReply(TermStats stats, long vocabularyFingerprint, TermStats vocabulary, long globalFingerprint) {
+            this.stats = stats;
+            this.vocabularyFingerprint = vocabularyFingerprint;
+            this.vocabulary = vocabulary;
+            this.globalFingerprint = globalFingerprint;
+        }
+    }
+
+    public static class SearchRequest {
+        public final String query;
+        public final TermStats stats; // query terms, summed over the nodes
+        public final long globalFingerprint;
+        public final TermStats globalVocabulary; // null if the node holds it
+
+        public SearchRequest(String query, TermStats stats, long globalFingerprint, TermStats globalVocabulary) {
+            this.query = query;
+            this.stats = stats;
+            this.globalFingerprint = globalFingerprint;
+            this.globalVocabulary = globalVocabulary;
+        }
+    }
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] encode(Body body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(VERSION);
+            body.write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static DataInputStream open(byte[] message) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("Unsupported shard protocol version " + version);
+        return in;
+    }
+
+    public static byte[] encodeStatsRequest(StatsRequest request) throws IOException {
+        return encode(out -> {
+            out.writeUTF(request.query);
+            out.writeLong(request.vocabularyFingerprint);
+        });
+    }
+
+    public static StatsRequest decodeStatsRequest(byte[] message) throws IOException {
+        DataInputStream in = open(message);
+        return new StatsRequest(in.readUTF(), in.readLong());
+    }
+
+    public static byte[] encodeStats(StatsReply reply) throws IOException {
+        return encode(out -> {
+            writeStats(out, reply.stats);
+            out.writeLong(reply.vocabularyFingerprint);
+            writeOptionalStats(out, reply.vocabulary);
+            out.writeLong(reply.globalFingerprint);
+        });
+    }
+
+    public static StatsReply decodeStats(byte[] message) throws IOException {
+        DataInputStream in = open(message);
+        return new StatsReply(readStats(in), in.readLong(), readOptionalStats(in), in.readLong());
+    }
+
+    public static byte[] encodeSearchRequest(SearchRequest request) throws IOException {
+        return encode(out -> {
+            out.writeUTF(request.query);
+            writeStats(out, request.stats);
+            out.writeLong(request.globalFingerprint);
+            writeOptionalStats(out, request.globalVocabulary);
+        });
+    }
+
+    public static SearchRequest decodeSearchRequest(byte[] message) throws IOException {
+        DataInputStream in = open(message);
+        return new SearchRequest(in.readUTF(), readStats(in), in.readLong(), readOptionalStats(in));
+    }
+
+    public static byte[] encodeResults(List<PageResult> results) throws IOException {
+        return encode(out -> resultSerializer.writeList(out, results));
+    }
+
+    public static List<PageResult> decodeResults(byte[] message) throws IOException {
+        return resultSerializer.readList(open(message));
+    }
+
+    private static void writeStats(DataOutputStream out, TermStats stats) throws IOException {
+        VarInt.write(out, stats.pageCount);
+        VarInt.write(out, stats.docFreqs.size());
+        for (Map.Entry<String, Integer> entry : stats.docFreqs.entrySet()) {
+            out.writeUTF(entry.getKey());
+            VarInt.write(out, entry.getValue());
+        }
+    }
+
+    private static void writeOptionalStats(DataOutputStream out, TermStats stats) throws IOException {
+        out.writeBoolean(stats != null);
+        if (stats != null) writeStats(out, stats);
+    }
+
+    private static TermStats readOptionalStats(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readStats(in) : null;
+    }
+
+    private static TermStats readStats(DataInputStream in) throws IOException {
+        int pageCount = VarInt.read(in);
+        int size = VarInt.read(in);
+        Map<String, Integer> docFreqs = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            docFreqs.put(in.readUTF(), VarInt.read(in));
+        }
+        return new TermStats(pageCount, docFreqs);
+    }
+}
@@ -4,7 +4,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -13,15 +16,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.example.searchengine.database.DbManage;
-import com.example.searchengine.model.KeywordFrequency;
+import com.example.searchengine.database.index.DocStats;
+import com.example.searchengine.database.index.IndexSnapshot;
+import com.example.searchengine.database.index.PostingCursor;
+import com.example.searchengine.database.index.StaticScores;
 import com.example.searchengine.model.PageInfo;
 import com.example.searchengine.model.PageResult;
-import com.example.searchengine.model.Posting;
 import com.example.searchengine.service.utils.StopStem;
 
-import jdbm.helper.FastIterator;
-import jdbm.htree.HTree;
-
 @Service
 public class SoftBooleanSearchService {
     
@@ -35,7 +37,14 @@ public class SoftBooleanSearchService {
         this.stopStem = new StopStem("stopwords.txt");
     }
 
+    // the whole query reads one pinned snapshot
     public List<PageResult> extendedBooleanSearch(String query, boolean usePageRank, String operator) throws IOException {
+        try (IndexSnapshot snapshot = dbManage.acquireSnapshot()) {
+            return extendedBooleanSearch(snapshot, query, usePageRank, operator);
+        }
+    }
+
+    private List<PageResult> extendedBooleanSearch(IndexSnapshot snapshot, String query, boolean usePageRank, String operator) throws IOException {
         List<PageResult> results = new ArrayList<>(); // return rersults list
         System.out.println("Extended Boolean Search: " + query + ", operator: " + operator);
 
@@ -46,54 +55,96 @@ public class SoftBooleanSearchService {
             System.out.println("Parsed term: " + term);
         }
         
-        int totalCrawledPages = dbManage.getPageCount();
+        int totalCrawledPages = snapshot.getPageCount();
         if (totalCrawledPages == 0) return results; // No pages to search
 
         // Get normalized scores for each term (0-1 range)
         Map<Integer, Map<String, Double>> docTermScores = new HashMap<>(); // <doc id, <term, score>>
-        Map<String, Double> maxScores = new HashMap<>(); // <term, max score>
+        Map<String, Map<Integer, Double>> termDocs = new HashMap<>(); // <term, docs with the term>
         
         // First pass: get all term scores and find max scores
         for (String term : terms) {
-            List<PageResult> termResults = basicTermSearch(term); // get the tf score
-            double maxScore = termResults.stream()
-                .mapToDouble(PageResult::getScore)
+            if (termDocs.containsKey(term)) continue; // repeated term: same scores
+            Map<Integer, Double> termResults = basicTermSearch(snapshot, term); // get the tf score
+            double maxScore = termResults.values().stream()
+                .mapToDouble(Double::doubleValue)
                 .max()
                 .orElse(1.0);
-            maxScores.put(term, maxScore);
+            termDocs.put(term, termResults);
             
-            for (PageResult result : termResults) {
-                docTermScores.computeIfAbsent(result.getId(), k -> new HashMap<>())
-                    .put(term, result.getScore() / maxScore); // Normalize score
+            for (Map.Entry<Integer, Double> result : termResults.entrySet()) {
+                docTermScores.computeIfAbsent(result.getKey(), k -> new HashMap<>())
+                    .put(term, result.getValue() / maxScore); // Normalize score
             }
         }
         
         // Apply extended Boolean model
-        Map<Integer, Double> combinedScores = new HashMap<>();
-        for (Map.Entry<Integer, Map<String, Double>> entry : docTermScores.entrySet()) {
-            int docId = entry.getKey();
-            Map<String, Double> termScores = entry.getValue();
-            
-            double score;
-            if ("OR".equalsIgnoreCase(operator)) {
-                score = calculateOrScore(termScores, terms);
-            } else { // AND
-                score = calculateAndScore(termScores, terms);
+        Map<Integer, Double> combinedScores = null;
+        if (!"OR".equalsIgnoreCase(operator)) {
+            combinedScores = scoreFullMatches(snapshot, terms, termDocs, docTermScores, usePageRank);
+        }
+        if (combinedScores == null) {
+            combinedScores = new HashMap<>();
+            for (Map.Entry<Integer, Map<String, Double>> entry : docTermScores.entrySet()) {
+                int docId = entry.getKey();
+                Map<String, Double> termScores = entry.getValue();
+                
+                double score;
+                if ("OR".equalsIgnoreCase(operator)) {
+                    score = calculateOrScore(termScores, terms);
+                } else { // AND
+                    score = calculateAndScore(termScores, terms);
+                }
+                
+                combinedScores.put(docId, score);
             }
             
-            combinedScores.put(docId, score);
-        }
-        
-        // Apply PageRank if needed
-        if (usePageRank) {
-            applyPageRank(combinedScores);
+            // Apply PageRank if needed
+            if (usePageRank) {
+                applyPageRank(snapshot, combinedScores);
+            }
         }
         
-        results = convertToResults(combinedScores);
+        // only the top 50 are turned into results
+        Map<Integer, Double> topScores = new LinkedHashMap<>();
+        combinedScores.entrySet().stream()
+            .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed())
+            .limit(50)
+            .forEach(entry -> topScores.put(entry.getKey(), entry.getValue()));
+        results = convertToResults(snapshot, topScores);
         results.sort((a, b) -> Double.compare(b.getScore(), a.getScore())); // sort by score
-        if (results.size() > 50) results = new ArrayList<>(results.subList(0, 50)); 
         return results;
     }
+
+    /**
+     * AND scores of the docs holding every term, or null when docs missing a term could still rank.
+     * A doc missing one of the m terms scores at most 1 - sqrt(1/m), so once 50 docs
+     * with all terms beat that the partial matches never have to be scored.
+     */
+    private Map<Integer, Double> scoreFullMatches(IndexSnapshot snapshot, List<String> terms, Map<String, Map<Integer, Double>> termDocs,
+            Map<Integer, Map<String, Double>> docTermScores, boolean usePageRank) throws IOException {
+        // intersect starting from the rarest term
+        List<Map<Integer, Double>> lists = new ArrayList<>(termDocs.values());
+        lists.sort(Comparator.comparingInt(Map::size));
+        Map<Integer, Double> scores = new HashMap<>();
+        if (lists.isEmpty()) return null;
+        for (Integer docId : lists.get(0).keySet()) {
+            boolean inAll = true;
+            for (int i = 1; i < lists.size() && inAll; i++) {
+                inAll = lists.get(i).containsKey(docId);
+            }
+            if (inAll) scores.put(docId, calculateAndScore(docTermScores.get(docId), terms));
+        }
+        if (usePageRank) {
+            applyPageRank(snapshot, scores);
+        }
+
+        double partialCeiling = 1 - Math.sqrt(1.0 / terms.size());
+        if (usePageRank) partialCeiling = partialCeiling * 0.7 + 0.3;
+        final double ceiling = partialCeiling;
+        long competitive = scores.values().stream().filter(score -> score > ceiling).count();
+        return competitive >= 50 ? scores : null;
+    }
     
     private double calculateOrScore(Map<String, Double> termScores, List<String> terms) {
         double sumOfSquares = 0.0;
@@ -129,24 +180,30 @@ public class SoftBooleanSearchService {
             .collect(Collectors.toList());
     }
     
-    private List<PageResult> basicTermSearch(String term) throws IOException {
+    // <doc id, tf score> of the docs with the term (docs without page info are left out)
+    private Map<Integer, Double> basicTermSearch(IndexSnapshot snapshot, String term) throws IOException {
         // Use your existing single-term search logic
-        Integer wordId = dbManage.getWordId(term);
-        if (wordId == -1) return Collections.emptyList();
+        Integer wordId = snapshot.getWordId(term);
+        if (wordId == -1) return Collections.emptyMap();
         
-        // Get postings and compute scores (simplified version)
-        List<Posting> titlePostings = dbManage.getTitlePosting(wordId);
-        List<Posting> bodyPostings = dbManage.getBodyPosting(wordId);
-        
-        // Combine and score documents
+        // Combine and score documents (simplified version)
         Map<Integer, Double> scores = new HashMap<>();
-        processPostings(scores, titlePostings, 5.0); // title boost
-        processPostings(scores, bodyPostings, 1.0);
+        processPostings(scores, snapshot.getTitleCursor(wordId), 5.0); // title boost
+        processPostings(scores, snapshot.getBodyCursor(wordId), 1.0);
         
         // Normalize by maximum term frequency in each document
-        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
-            PageInfo pageInfo = dbManage.getPageInfo(entry.getKey());
-            if (pageInfo != null && pageInfo.bodyWordList != null && !pageInfo.bodyWordList.isEmpty()) {
+        DocStats docStats = snapshot.getDocStats();
+        Iterator<Map.Entry<Integer, Double>> iter = scores.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<Integer, Double> entry = iter.next();
+            if (docStats.contains(entry.getKey())) { // precomputed at index time (at least 1)
+                entry.setValue(entry.getValue() / docStats.maxTf(entry.getKey()));
+                continue;
+            }
+            PageInfo pageInfo = snapshot.getPageTables().getPageInfo(entry.getKey());
+            if (pageInfo == null) {
+                iter.remove();
+            } else if (pageInfo.bodyWordList != null && !pageInfo.bodyWordList.isEmpty()) {
                 // Find the maximum frequency in this document
                 int maxFreq = pageInfo.bodyWordList.values().stream()
                     .max(Integer::compare)
@@ -158,75 +215,26 @@ public class SoftBooleanSearchService {
             }
         }
 
-        return convertToResults(scores);
+        return scores;
     }
     
-    private void processPostings(Map<Integer, Double> scores, List<Posting> postings, double weight) {
-        if (postings == null) return;
-        for (Posting p : postings) {
-            scores.merge(p.getId(), p.getFreq() * weight, Double::sum);
+    private void processPostings(Map<Integer, Double> scores, PostingCursor postings, double weight) {
+        while (postings.nextDoc() != PostingCursor.NO_MORE_DOCS) {
+            scores.merge(postings.docId(), postings.freq() * weight, Double::sum);
         }
     }
    
-    private void applyPageRank(Map<Integer, Double> scores) throws IOException {
-        HTree pageRankTable = dbManage.getPageRankMap();
-        double maxPageRank = getMaxPageRank(pageRankTable);
-        
-        scores.replaceAll((docId, contentScore) -> {
-            try {
-                Double pageRankScore = (Double) pageRankTable.get(docId);
-                if (pageRankScore == null) return contentScore * 0.7;
-                
-                double normalizedPR = pageRankScore / maxPageRank;
-                return (contentScore * 0.7) + (normalizedPR * 0.3);
-            } catch (IOException e) {
-                return contentScore * 0.7;
-            }
-        });
-    }
-    
-    private double getMaxPageRank(HTree pageRankTable) throws IOException {
-        double max = 1.0;
-        FastIterator iter = pageRankTable.keys();
-        Integer pageId;
-        while ((pageId = (Integer) iter.next()) != null) {
-            Double pr = (Double) pageRankTable.get(pageId);
-            if (pr != null && pr > max) max = pr;
-        }
-        return max;
+    // PageRank normalized by the max comes from the static score column (0 for pages without one)
+    private void applyPageRank(IndexSnapshot snapshot, Map<Integer, Double> scores) {
+        StaticScores staticScores = snapshot.getStaticScores();
+        scores.replaceAll((docId, contentScore) -> (contentScore * 0.7) + (staticScores.score(docId) * 0.3));
     }
     
-    private List<PageResult> convertToResults(Map<Integer, Double> scores) throws IOException {
+    private List<PageResult> convertToResults(IndexSnapshot snapshot, Map<Integer, Double> scores) throws IOException {
         List<PageResult> results = new ArrayList<>();
         for(Integer docId : scores.keySet()) {
-            PageInfo pageInfo = dbManage.getPageInfo(docId);
-            if (pageInfo != null) {
-                PageResult result = new PageResult();
-                result.setId(docId);
-                result.setScore(scores.get(docId));
-                result.setTitle(pageInfo.getTitle());
-                result.setUrl(pageInfo.getUrl());
-                result.setLastModified(pageInfo.getLastModified());
-                result.setSize(pageInfo.getSize());
-                result.setChildLinks(dbManage.getChildLinks(docId));
-                result.setParentLinks(dbManage.getParentLinks(docId)); // Parent links would need to be retrieved similarly
-                
-                // body word list for display
-                if (pageInfo.bodyWordList != null) {
-                    List<KeywordFrequency> keywords = new ArrayList<>();
-                    for (Map.Entry<Integer, Integer> wordEntry : pageInfo.bodyWordList.entrySet()) {
-                        String word = dbManage.getWord(wordEntry.getKey());
-                        if (word != null) {
-                            keywords.add(new KeywordFrequency(word, wordEntry.getValue()));
-                        }
-                    }
-                    // Sort by frequency in descending order
-                    keywords.sort((a, b) -> b.getFrequency().compareTo(a.getFrequency()));
-                    result.setKeywordsWithFrequency(keywords.stream().collect(Collectors.toList()));
-                }
-                
-                results.add(result);
-            }
+            PageResult result = snapshot.toResult(docId, scores.get(docId)); // page fields come from the snapshot
+            if (result != null) results.add(result);
         }
         return results;
     }
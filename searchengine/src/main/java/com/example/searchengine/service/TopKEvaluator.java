@@ -0,0 +1,132 @@
+package com.example.searchengine.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntToDoubleFunction;
+
+import com.example.searchengine.database.index.PostingCursor;
+
+/**
+ * TopKEvaluator.java
+ * Document-at-a-time top-k evaluation with block-max WAND pruning.
+ * Each list carries a function turning a max freq into an upper bound of
+ * what the list can add to a doc's score; a doc is only scored exactly
+ * when the bounds of the lists on it can still beat the current k-th score.
+ */
+class TopKEvaluator {
+
+    // exact score of a doc; the lists positioned on it are passed in, null means "not a result"
+    interface DocScorer {
+        Double score(int docId, List<ScoredList> matching) throws IOException;
+    }
+
+    static class ScoredList {
+        final PostingCursor cursor;
+        final IntToDoubleFunction bound; // max freq -> upper bound of the contribution
+        final Object key;                // lets the scorer tell the lists apart
+        final double maxScore;
+
+        ScoredList(PostingCursor cursor, IntToDoubleFunction bound, Object key) {
+            this.cursor = cursor;
+            this.bound = bound;
+            this.key = key;
+            this.maxScore = bound.applyAsDouble(cursor.maxFreq());
+        }
+    }
+
+    static class Hit {
+        final int docId;
+        final double score;
+
+        Hit(int docId, double score) {
+            this.docId = docId;
+            this.score = score;
+        }
+    }
+
+    // best first; equal scores keep the lower doc id first
+    static final Comparator<Hit> ORDER = Comparator.comparingDouble((Hit h) -> -h.score).thenComparingInt(h -> h.docId);
+
+    private static final double SLACK = 1 + 1e-9; // keeps bounds safe against rounding in the exact score
+
+    private final int k;
+    private final DoubleUnaryOperator finalScore; // maps a content bound to a final score bound (e.g. PageRank blend)
+
+    TopKEvaluator(int k, DoubleUnaryOperator finalScore) {
+        this.k = k;
+        this.finalScore = finalScore;
+    }
+
+    List<Hit> evaluate(List<ScoredList> input, DocScorer scorer) throws IOException {
+        PriorityQueue<Hit> heap = new PriorityQueue<>(ORDER.reversed()); // worst hit on top
+        ScoredList[] lists = input.toArray(new ScoredList[0]);
+        for (ScoredList list : lists) list.cursor.nextDoc();
+
+        List<ScoredList> matching = new ArrayList<>();
+        while (true) {
+            Arrays.sort(lists, Comparator.comparingInt(l -> l.cursor.docId()));
+            double threshold = heap.size() < k ? Double.NEGATIVE_INFINITY : heap.peek().score;
+
+            // pivot: first list where the summed max scores could beat the threshold
+            double upper = 0;
+            int pivot = -1;
+            for (int i = 0; i < lists.length; i++) {
+                if (lists[i].cursor.docId() == PostingCursor.NO_MORE_DOCS) break;
+                upper += lists[i].maxScore;
+                if (competitive(upper, threshold)) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot < 0) break;
+            int pivotDoc = lists[pivot].cursor.docId();
+            while (pivot + 1 < lists.length && lists[pivot + 1].cursor.docId() == pivotDoc) pivot++;
+
+            // refine with the block maxima around the pivot doc
+            double blockUpper = 0;
+            int blockEnd = PostingCursor.NO_MORE_DOCS;
+            for (int i = 0; i <= pivot; i++) {
+                PostingCursor cursor = lists[i].cursor;
+                blockEnd = Math.min(blockEnd, cursor.advanceShallow(pivotDoc));
+                blockUpper += lists[i].bound.applyAsDouble(cursor.blockMaxFreq());
+            }
+
+            if (!competitive(blockUpper, threshold)) {
+                // nothing up to the end of these blocks can compete: jump past them
+                int next = blockEnd == PostingCursor.NO_MORE_DOCS ? blockEnd : blockEnd + 1;
+                if (pivot + 1 < lists.length) next = Math.min(next, lists[pivot + 1].cursor.docId());
+                for (int i = 0; i <= pivot; i++) {
+                    if (lists[i].cursor.docId() < next) lists[i].cursor.advance(next);
+                }
+            } else if (lists[0].cursor.docId() == pivotDoc) {
+                matching.clear();
+                for (int i = 0; i <= pivot; i++) matching.add(lists[i]);
+                Double score = scorer.score(pivotDoc, matching);
+                if (score != null) {
+                    heap.add(new Hit(pivotDoc, score));
+                    if (heap.size() > k) heap.poll();
+                }
+                for (int i = 0; i <= pivot; i++) lists[i].cursor.nextDoc();
+            } else {
+                // lists before the pivot are behind it: move them up
+                for (int i = 0; i < pivot; i++) {
+                    if (lists[i].cursor.docId() < pivotDoc) lists[i].cursor.advance(pivotDoc);
+                }
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(heap);
+        hits.sort(ORDER);
+        return hits;
+    }
+
+    // a later doc with a score equal to the threshold loses the tie, so it must be strictly better
+    private boolean competitive(double contentUpper, double threshold) {
+        return finalScore.applyAsDouble(contentUpper * SLACK) > threshold;
+    }
+}
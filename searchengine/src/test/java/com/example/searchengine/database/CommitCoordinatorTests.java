@@ -0,0 +1,184 @@
+package com.example.searchengine.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.searchengine.database.CommitCoordinator.Durability;
+
+class CommitCoordinatorTests {
+
+	private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+	private final AtomicInteger commits = new AtomicInteger();
+
+	// wait until the committer has run count times, at most two seconds
+	private void awaitCommits(int count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+		while (commits.get() < count && System.nanoTime() < deadline) Thread.sleep(5);
+		assertEquals(count, commits.get());
+	}
+
+	@Test
+	void batchSizeTriggersCommit() throws Exception {
+		try (CommitCoordinator coordinator = new CommitCoordinator(commits::incrementAndGet, Durability.BATCHED, 3, NEVER)) {
+			coordinator.commit();
+			coordinator.commit();
+			assertEquals(0, commits.get());
+			coordinator.commit();
+			assertEquals(1, commits.get()); // on the calling thread
+			coordinator.commit();
+			assertEquals(1, commits.get());
+			coordinator.commit(Durability.SYNC);
+			assertEquals(2, commits.get());
+			assertEquals(2, coordinator.getCommitCount());
+		}
+	}
+
+	@Test
+	void delayTriggersBackgroundCommit() throws Exception {
+		for (Durability durability : new Durability[] {Durability.BATCHED, Durability.ASYNC}) {
+			commits.set(0);
+			try (CommitCoordinator coordinator = new CommitCoordinator(commits::incrementAndGet, durability, 1000, 50)) {
+				long start = System.nanoTime();
+				coordinator.commit();
+				coordinator.commit();
+				assertEquals(0, commits.get());
+				awaitCommits(1); // both requests in one commit
+				assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50), durability + " committed early");
+				Thread.sleep(150);
+				assertEquals(1, commits.get()); // nothing pending, nothing committed
+			}
+		}
+	}
+
+	@Test
+	void delayIsMetOnceAWriterReleasesTheLock() throws Exception {
+		try (CommitCoordinator coordinator = new CommitCoordinator(commits::incrementAndGet, Durability.ASYNC, 1000, 20)) {
+			coordinator.commit();
+			CountDownLatch locked = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+			Thread writer = new Thread(() -> {
+				coordinator.getWriteLock().lock();
+				try {
+					locked.countDown();
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					coordinator.getWriteLock().unlock();
+				}
+			});
+			writer.start();
+			locked.await();
+			Thread.sleep(200); // a unit of work much longer than the delay
+			assertEquals(0, commits.get());
+			long released = System.nanoTime();
+			release.countDown();
+			awaitCommits(1);
+			assertTrue(System.nanoTime() - released < TimeUnit.MILLISECONDS.toNanos(100), "flusher did not wait for the lock");
+			writer.join();
+		}
+
+		// a writer that takes the lock again right after releasing it still lets the flusher in
+		commits.set(0);
+		try (CommitCoordinator coordinator = new CommitCoordinator(commits::incrementAndGet, Durability.ASYNC, 1000, 20)) {
+			for (int unit = 0; unit < 30; unit++) {
+				coordinator.getWriteLock().lock();
+				try {
+					coordinator.commit();
+					Thread.sleep(10);
+				} finally {
+					coordinator.getWriteLock().unlock();
+				}
+			}
+			assertTrue(commits.get() >= 5, "flusher starved: " + commits.get() + " commits");
+		}
+
+		// BATCHED: a writer that never lets go of the lock commits itself once the oldest request is overdue
+		commits.set(0);
+		try (CommitCoordinator coordinator = new CommitCoordinator(commits::incrementAndGet, Durability.BATCHED, 1000, 20)) {
+			coordinator.getWriteLock().lock();
+			try {
+				coordinator.commit();
+				Thread.sleep(50);
+				assertEquals(0, commits.get());
+				coordinator.commit();
+				assertEquals(1, commits.get());
+			} finally {
+				coordinator.getWriteLock().unlock();
+			}
+		}
+	}
+
+	@Test
+	void asyncRequestsDoNotWaitForTheWriteLock() throws Exception {
+		try (CommitCoordinator coordinator = new CommitCoordinator(commits::incrementAndGet, Durability.ASYNC, 1000, 20)) {
+			CountDownLatch locked = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+			Thread writer = new Thread(() -> {
+				coordinator.getWriteLock().lock();
+				try {
+					locked.countDown();
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					coordinator.getWriteLock().unlock();
+				}
+			});
+			writer.start();
+			locked.await();
+
+			// a search caching its results while the crawler holds the lock
+			Thread search = new Thread(() -> {
+				try {
+					for (int i = 0; i < 100; i++) coordinator.commit(Durability.ASYNC);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			search.start();
+			search.join(1000);
+			assertFalse(search.isAlive(), "ASYNC request waited for the writer");
+			assertEquals(0, commits.get());
+
+			release.countDown();
+			writer.join();
+			awaitCommits(1);
+		}
+	}
+
+	@Test
+	void aFailedCommitKeepsItsRequestsPending() throws Exception {
+		AtomicInteger failures = new AtomicInteger(1);
+		CommitCoordinator.Committer failingOnce = () -> {
+			if (failures.getAndDecrement() > 0) throw new IOException("disk full");
+			commits.incrementAndGet();
+		};
+		try (CommitCoordinator coordinator = new CommitCoordinator(failingOnce, Durability.ASYNC, 1000, 20)) {
+			coordinator.commit();
+			awaitCommits(1); // the failed background commit is retried on a later tick
+		}
+	}
+
+	@Test
+	void closeCommitsWhatIsPending() throws Exception {
+		CommitCoordinator coordinator = new CommitCoordinator(commits::incrementAndGet, Durability.ASYNC, 1, NEVER);
+		coordinator.commit();
+		coordinator.commit();
+		assertEquals(0, commits.get()); // ASYNC never commits on the caller
+		coordinator.close();
+		assertEquals(1, commits.get());
+		assertEquals(1, coordinator.getCommitCount());
+	}
+
+}
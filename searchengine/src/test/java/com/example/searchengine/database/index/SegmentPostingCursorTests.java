@@ -0,0 +1,154 @@
+package com.example.searchengine.database.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.searchengine.model.Posting;
+
+class SegmentPostingCursorTests {
+
+	@TempDir
+	Path dir;
+
+	// docs 0, 3, 6, ... with positions {doc, doc + 2} (doc 0 has none)
+	private Segment writeEveryThirdDoc(int count) throws Exception {
+		List<Posting> list = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			int doc = i * 3;
+			list.add(new Posting(doc, i % 7 + 1, doc == 0 ? new ArrayList<>() : new ArrayList<>(List.of(doc, doc + 2))));
+		}
+		SortedMap<Integer, List<Posting>> postings = new TreeMap<>();
+		postings.put(1, list);
+		Path file = dir.resolve("test.seg");
+		SegmentWriter.write(file, postings);
+		return new Segment(file);
+	}
+
+	@Test
+	void advanceSkipsAcrossBlocks() throws Exception {
+		Segment segment = writeEveryThirdDoc(1000); // 8 blocks of 128 docs
+		PostingCursor cursor = segment.cursor(1);
+		assertEquals(0, cursor.nextDoc());
+		assertEquals(3 * 130, cursor.advance(3 * 130)); // into block 1
+		assertEquals(130 % 7 + 1, cursor.freq());
+		assertEquals(3 * 700, cursor.advance(3 * 700 - 1)); // several blocks further, not a doc
+		assertEquals(3 * 700, cursor.advance(3 * 700)); // already there
+		assertEquals(3 * 701, cursor.nextDoc());
+		assertEquals(3 * 768, cursor.advance(3 * 767 + 1)); // first doc of the last block
+		assertEquals(3 * 999, cursor.advance(3 * 999));
+		assertEquals(PostingCursor.NO_MORE_DOCS, cursor.advance(3 * 999 + 1));
+
+		Random random = new Random(8);
+		for (int round = 0; round < 50; round++) {
+			PostingCursor skipping = segment.cursor(1);
+			int target = 0;
+			while (true) {
+				target += random.nextInt(600);
+				int expected = target > 3 * 999 ? PostingCursor.NO_MORE_DOCS : (target + 2) / 3 * 3;
+				assertEquals(expected, skipping.advance(target));
+				if (expected == PostingCursor.NO_MORE_DOCS) break;
+				assertEquals(expected / 3 % 7 + 1, skipping.freq());
+			}
+		}
+	}
+
+	@Test
+	void positionsAfterSkip() throws Exception {
+		Segment segment = writeEveryThirdDoc(600);
+
+		// positions never read before the jump: the stream is fetched at the block the cursor landed in
+		PostingCursor fresh = segment.cursor(1);
+		assertEquals(3 * 300, fresh.advance(3 * 300));
+		assertArrayEquals(new int[] {900, 902}, fresh.positions());
+
+		// positions read before the jump: the open stream is moved to the new block
+		PostingCursor read = segment.cursor(1);
+		read.nextDoc();
+		assertArrayEquals(new int[0], read.positions());
+		read.nextDoc();
+		assertArrayEquals(new int[] {3, 5}, read.positions());
+		assertEquals(3 * 256, read.advance(3 * 256)); // first doc of block 2
+		assertArrayEquals(new int[] {768, 770}, read.positions());
+		assertArrayEquals(new int[] {768, 770}, read.positions()); // same doc, not decoded twice
+		assertEquals(3 * 260, read.advance(3 * 260)); // within the block: passed docs are skipped in the stream
+		assertArrayEquals(new int[] {780, 782}, read.positions());
+		assertEquals(3 * 599, read.advance(3 * 599));
+		assertArrayEquals(new int[] {1797, 1799}, read.positions());
+	}
+
+	@Test
+	void leapfrogPhraseMatchesEqualLinearIntersection() throws Exception {
+		Random random = new Random(42);
+		try (SegmentedIndex index = new SegmentedIndex(dir, "body")) {
+			// three words over several segments and the buffer; docs re-indexed later win
+			for (int flush = 0; flush < 4; flush++) {
+				for (int n = 0; n < 1500; n++) {
+					int doc = random.nextInt(5000);
+					for (int word = 1; word <= 3; word++) {
+						if (random.nextInt(word + 1) != 0) continue; // word 1 common, word 3 rare
+						List<Integer> positions = new ArrayList<>();
+						for (int pos = random.nextInt(4); pos < 12; pos += 1 + random.nextInt(4)) positions.add(pos);
+						index.add(word, new Posting(doc, positions.size(), positions));
+					}
+				}
+				if (flush < 3) index.flush();
+			}
+
+			Set<Integer> expected = linearPhraseMatches(List.of(index.getPostings(1), index.getPostings(2), index.getPostings(3)));
+			Set<Integer> found = new HashSet<>();
+			List<PostingCursor> cursors = List.of(index.cursor(1), index.cursor(2), index.cursor(3));
+			LeapfrogIntersection intersection = new LeapfrogIntersection(cursors);
+			for (int doc = intersection.nextDoc(); doc != PostingCursor.NO_MORE_DOCS; doc = intersection.nextDoc()) {
+				if (isPhrase(cursors.get(0).positions(), cursors.get(1).positions(), cursors.get(2).positions())) {
+					found.add(doc);
+				}
+			}
+			assertEquals(expected, found);
+			assertTrue(!expected.isEmpty());
+		}
+	}
+
+	// docs holding the words at consecutive positions, found by walking every list in full
+	private static Set<Integer> linearPhraseMatches(List<List<Posting>> lists) {
+		Map<Integer, int[][]> byDoc = new HashMap<>();
+		for (int word = 0; word < lists.size(); word++) {
+			for (Posting p : lists.get(word)) {
+				int[] positions = p.getPositions().stream().mapToInt(Integer::intValue).toArray();
+				byDoc.computeIfAbsent(p.getId(), doc -> new int[lists.size()][])[word] = positions;
+			}
+		}
+		Set<Integer> matches = new HashSet<>();
+		byDoc.forEach((doc, positions) -> {
+			for (int[] list : positions) if (list == null) return;
+			if (isPhrase(positions[0], positions[1], positions[2])) matches.add(doc);
+		});
+		return matches;
+	}
+
+	private static boolean isPhrase(int[] first, int[] second, int[] third) {
+		Set<Integer> seconds = new HashSet<>();
+		for (int pos : second) seconds.add(pos);
+		Set<Integer> thirds = new HashSet<>();
+		for (int pos : third) thirds.add(pos);
+		for (int pos : first) {
+			if (seconds.contains(pos + 1) && thirds.contains(pos + 2)) return true;
+		}
+		return false;
+	}
+
+}
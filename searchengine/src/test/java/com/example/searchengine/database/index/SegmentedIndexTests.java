@@ -0,0 +1,129 @@
+package com.example.searchengine.database.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.searchengine.model.Posting;
+
+class SegmentedIndexTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void postingsSurviveRebuildAndReopen() throws Exception {
+		SortedMap<Integer, List<Posting>> postings = new TreeMap<>();
+		postings.put(7, new ArrayList<>(List.of(
+				new Posting(300, 2, new ArrayList<>(List.of(4, 9))),
+				new Posting(5, 1, new ArrayList<>(List.of(0))))));
+		postings.put(2, new ArrayList<>(List.of(new Posting(5, 3, new ArrayList<>(List.of(1, 2, 200))))));
+
+		try (SegmentedIndex index = new SegmentedIndex(dir, "body")) {
+			index.rebuild(postings);
+		}
+
+		try (SegmentedIndex index = new SegmentedIndex(dir, "body")) {
+			List<Posting> word7 = index.getPostings(7);
+			assertEquals(2, word7.size());
+			assertEquals(5, word7.get(0).getId()); // sorted by doc id
+			assertEquals(300, word7.get(1).getId());
+			assertEquals(List.of(4, 9), word7.get(1).getPositions());
+			assertEquals(List.of(1, 2, 200), index.getPostings(2).get(0).getPositions());
+			assertNull(index.getPostings(3));
+		}
+	}
+
+	@Test
+	void blockBoundsCoverEveryPosting() throws Exception {
+		List<Posting> list = new ArrayList<>();
+		for (int doc = 0; doc < 300; doc++) {
+			list.add(new Posting(doc * 2, doc == 250 ? 9 : 1, new ArrayList<>()));
+		}
+		SortedMap<Integer, List<Posting>> postings = new TreeMap<>();
+		postings.put(1, list);
+
+		try (SegmentedIndex index = new SegmentedIndex(dir, "body")) {
+			index.rebuild(postings);
+			PostingCursor cursor = index.cursor(1);
+			assertEquals(9, cursor.maxFreq());
+			assertEquals(254, cursor.advanceShallow(0)); // first block: docs 0..127
+			assertEquals(1, cursor.blockMaxFreq());
+			assertEquals(510, cursor.advanceShallow(500)); // second block: docs 256..510
+			assertEquals(9, cursor.blockMaxFreq());
+			assertEquals(598, cursor.advanceShallow(520));
+			assertEquals(1, cursor.blockMaxFreq());
+			assertEquals(PostingCursor.NO_MORE_DOCS, cursor.advanceShallow(599));
+		}
+	}
+
+	@Test
+	void shardsHoldDisjointDocsAndMergeInDocOrder() throws Exception {
+		try (ShardedIndex index = new ShardedIndex(dir, "body", 3)) {
+			for (int doc = 0; doc < 10; doc++) {
+				index.add(4, new Posting(doc, doc + 1, new ArrayList<>(List.of(doc))));
+			}
+			index.flush();
+			List<List<Segment>> shards = index.getSegments();
+			assertEquals(3, shards.size());
+			for (int shard = 0; shard < 3; shard++) {
+				PostingCursor cursor = SegmentedIndex.cursor(shards.get(shard), 4);
+				while (cursor.nextDoc() != PostingCursor.NO_MORE_DOCS) {
+					assertEquals(shard, ShardedIndex.shardOf(cursor.docId(), 3));
+				}
+			}
+
+			PostingCursor all = ShardedIndex.cursor(shards, 4);
+			for (int doc = 0; doc < 10; doc++) {
+				assertEquals(doc, all.nextDoc());
+				assertEquals(doc + 1, all.freq());
+			}
+			assertEquals(PostingCursor.NO_MORE_DOCS, all.nextDoc());
+			assertEquals(10, index.getPostings(4).size());
+		}
+		assertEquals(3, ShardedIndex.shardCount(dir, 8)); // layout wins over the configured count
+		assertEquals(8, ShardedIndex.shardCount(dir.resolve("none"), 8)); // new index: configured count
+	}
+
+	@Test
+	void tierMergeKeepsNewestPostingOfEachDoc() throws Exception {
+		try (SegmentedIndex index = new SegmentedIndex(dir, "body")) {
+			for (int flush = 0; flush < 10; flush++) {
+				for (int doc = 0; doc < 200; doc++) {
+					if (doc % 10 == flush) index.add(3, new Posting(doc, flush + 1, new ArrayList<>(List.of(flush, doc))));
+				}
+				index.add(5 + flush, new Posting(1000 + flush, 1, new ArrayList<>(List.of(0))));
+				index.add(3, new Posting(7, flush + 1, new ArrayList<>(List.of(flush)))); // re-indexed every flush
+				index.flush();
+			}
+			assertEquals(1, index.getSegmentCount()); // ten small segments share the lowest tier
+
+			PostingCursor cursor = index.cursor(3);
+			for (int doc = 0; doc < 200; doc++) {
+				assertEquals(doc, cursor.nextDoc());
+				int flush = doc == 7 ? 9 : doc % 10;
+				assertEquals(flush + 1, cursor.freq());
+				assertArrayEquals(doc == 7 ? new int[] {9} : new int[] {flush, doc}, cursor.positions());
+			}
+			assertEquals(PostingCursor.NO_MORE_DOCS, cursor.nextDoc());
+			for (int flush = 0; flush < 10; flush++) {
+				assertEquals(List.of(0), index.getPostings(5 + flush).get(0).getPositions());
+			}
+		}
+		try (Stream<Path> files = Files.list(dir)) {
+			assertEquals(List.of("body.manifest", "body_10.pos", "body_10.seg"), files.map(f -> f.getFileName().toString()).sorted().toList());
+		}
+	}
+
+}
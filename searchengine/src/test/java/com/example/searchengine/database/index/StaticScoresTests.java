@@ -0,0 +1,83 @@
+package com.example.searchengine.database.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StaticScoresTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void scoresAreNormalizedAndSurviveWriteAndLoad() throws Exception {
+		// docs 1 and 4 have no score; 9 and -1 are outside the column (ids past the page counter)
+		StaticScores built = StaticScores.of(6, new int[] {0, 2, 3, 5, 9, -1}, new double[] {0.2, 0.8, 0.4, 0, 5.0, 7.0}, 12);
+		built.write(dir.resolve("static.scores"));
+		StaticScores loaded = StaticScores.load(dir.resolve("static.scores"));
+		assertFalse(Files.exists(dir.resolve("static.scores.tmp")), "temp file left behind");
+
+		for (StaticScores scores : List.of(built, loaded)) {
+			assertEquals(12, scores.getGeneration());
+			assertEquals(0.2 / 0.8, scores.score(0), 1e-12);
+			assertEquals(1.0, scores.score(2), 1e-12);
+			assertEquals(0.5, scores.score(3), 1e-12);
+			assertTrue(scores.contains(5), "a zero score is still a score");
+			assertEquals(0.0, scores.score(5));
+			for (int docId : new int[] {1, 4, 6, 9, -1}) {
+				assertFalse(scores.contains(docId), "doc " + docId);
+				assertEquals(0.0, scores.score(docId), "doc " + docId);
+			}
+		}
+	}
+
+	@Test
+	void allZeroScoresDoNotDivideByZero() {
+		StaticScores scores = StaticScores.of(2, new int[] {0, 1}, new double[] {0, 0}, 1);
+		assertTrue(scores.contains(0));
+		assertEquals(0.0, scores.score(0));
+		assertEquals(0.0, scores.score(1));
+	}
+
+	@Test
+	void aVersionOneFileIsOfAnUnknownGeneration() throws Exception {
+		Path file = dir.resolve("static.scores");
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+			out.writeInt(0x5353434F);
+			out.writeInt(1);
+			out.writeInt(2);
+			out.writeDouble(1.0);
+			out.writeDouble(Double.NaN);
+		}
+		StaticScores loaded = StaticScores.load(file);
+		assertEquals(-1, loaded.getGeneration());
+		assertEquals(1.0, loaded.score(0));
+		assertFalse(loaded.contains(1));
+	}
+
+	@Test
+	void otherFilesAreRejected() throws Exception {
+		Path file = dir.resolve("static.scores");
+		Files.write(file, new byte[] {0, 0, 0, 1, 0, 0, 0, 2});
+		IOException rejected = assertThrows(IOException.class, () -> StaticScores.load(file));
+		assertTrue(rejected.getMessage().contains("Not a static scores file"), rejected.getMessage());
+
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+			out.writeInt(0x5353434F);
+			out.writeInt(3);
+		}
+		rejected = assertThrows(IOException.class, () -> StaticScores.load(file));
+		assertTrue(rejected.getMessage().contains("Unsupported static scores version 3"), rejected.getMessage());
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.example.searchengine.database.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TermDictionaryTests {
+
+	@TempDir
+	Path dir;
+
+	// 100 words sharing long prefixes, ids with gaps (3 * n + 1)
+	private static Map<String, Integer> words() {
+		Map<String, Integer> words = new HashMap<>();
+		for (int n = 0; n < 100; n++) {
+			words.put("comput" + (char) ('a' + n / 10) + (n % 10 == 0 ? "" : "er" + n % 10), 3 * n + 1);
+		}
+		words.put("café", 400); // multi-byte UTF-8 sorts after every ASCII word with the same prefix
+		words.put("cafe", 401);
+		return words;
+	}
+
+	@Test
+	void blockHeadsAndTailsResolveBothWays() throws Exception {
+		Map<String, Integer> words = words();
+		TermDictionary built = TermDictionary.build(words);
+		built.write(dir.resolve("words.dict"));
+		TermDictionary loaded = TermDictionary.load(dir.resolve("words.dict"));
+
+		for (TermDictionary dictionary : List.of(built, loaded)) {
+			assertEquals(words.size(), dictionary.size());
+			List<String> sorted = new ArrayList<>();
+			dictionary.forEach((word, id) -> {
+				assertEquals((int) words.get(word), id);
+				sorted.add(word);
+			});
+			assertEquals(words.size(), sorted.size());
+
+			// first and last word of every block of 16, and every word in between
+			for (int ordinal = 0; ordinal < sorted.size(); ordinal++) {
+				String word = sorted.get(ordinal);
+				int id = words.get(word);
+				assertEquals(id, dictionary.getWordId(word), "ordinal " + ordinal);
+				assertEquals(word, dictionary.getWord(id), "ordinal " + ordinal);
+			}
+			assertEquals("cafe", sorted.get(0));
+			assertEquals("café", sorted.get(1));
+		}
+	}
+
+	@Test
+	void missingWordsAndIds() {
+		TermDictionary dictionary = TermDictionary.build(words());
+
+		assertEquals(-1, dictionary.getWordId("")); // before the first word
+		assertEquals(-1, dictionary.getWordId("aaa"));
+		assertEquals(-1, dictionary.getWordId("zzz")); // after the last word
+		assertEquals(-1, dictionary.getWordId("comput")); // prefix of a block head
+		assertEquals(-1, dictionary.getWordId("computaer")); // between two words of a block
+		assertEquals(-1, dictionary.getWordId("computber99")); // extends the last word of a block
+		assertEquals(-1, dictionary.getWordId("computjer9x")); // extends the last word
+
+		assertNull(dictionary.getWord(-1));
+		assertNull(dictionary.getWord(0)); // gap below the first id
+		assertNull(dictionary.getWord(2)); // gap between ids
+		assertNull(dictionary.getWord(402)); // past the id space
+		assertNull(dictionary.getWord(Integer.MAX_VALUE));
+
+		assertEquals(-1, TermDictionary.EMPTY.getWordId("computa"));
+		assertNull(TermDictionary.EMPTY.getWord(0));
+		assertEquals(0, TermDictionary.EMPTY.size());
+	}
+
+}
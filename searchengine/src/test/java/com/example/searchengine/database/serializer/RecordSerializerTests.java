@@ -0,0 +1,145 @@
+package com.example.searchengine.database.serializer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.searchengine.database.IndexMetadata;
+import com.example.searchengine.model.KeywordFrequency;
+import com.example.searchengine.model.PageInfo;
+import com.example.searchengine.model.PageResult;
+
+class RecordSerializerTests {
+
+	@SuppressWarnings("unchecked")
+	private static <T> T roundTrip(RecordSerializer<T> serializer, T value) throws Exception {
+		return (T) serializer.deserialize(serializer.serialize(value));
+	}
+
+	// longer than the 64KB writeUTF allows, with multi-byte characters
+	private static String longText() {
+		return "crème brûlée ".repeat(6000);
+	}
+
+	@Test
+	void scalarsAndStrings() throws Exception {
+		assertEquals(0.15, roundTrip(new DoubleSerializer(), 0.15), 0);
+		assertEquals(Double.MIN_VALUE, roundTrip(new DoubleSerializer(), Double.MIN_VALUE), 0);
+		for (int value : new int[] {0, 1, 127, 128, 300_000, Integer.MAX_VALUE}) {
+			assertEquals(value, (int) roundTrip(new IntegerSerializer(), value));
+		}
+		assertEquals("https://example.com/a?b=c", roundTrip(new StringSerializer(), "https://example.com/a?b=c"));
+		assertEquals("", roundTrip(new StringSerializer(), ""));
+		assertNull(roundTrip(new StringSerializer(), null));
+		assertEquals(longText(), roundTrip(new StringSerializer(), longText()));
+	}
+
+	@Test
+	void lists() throws Exception {
+		List<Integer> ids = List.of(5, 0, 200_000, 5, 129);
+		assertEquals(ids, roundTrip(new IntListSerializer(), new ArrayList<>(ids))); // order and duplicates kept
+		assertEquals(List.of(), roundTrip(new IntListSerializer(), new ArrayList<>()));
+
+		List<KeywordFrequency> keywords = roundTrip(new KeywordListSerializer(),
+				List.of(new KeywordFrequency("search", 12), new KeywordFrequency("ünïcode", 1), new KeywordFrequency("", 0)));
+		assertEquals(3, keywords.size());
+		assertEquals("search", keywords.get(0).getKeyword());
+		assertEquals(12, (int) keywords.get(0).getFrequency());
+		assertEquals("ünïcode", keywords.get(1).getKeyword());
+		assertEquals("", keywords.get(2).getKeyword());
+		assertEquals(0, (int) keywords.get(2).getFrequency());
+	}
+
+	@Test
+	void indexMetadata() throws Exception {
+		IndexMetadata metadata = roundTrip(new IndexMetadataSerializer(),
+				new IndexMetadata(301, 12_000, 299, 5_000_000_000L, 42));
+		assertEquals(301, metadata.pageidCounter);
+		assertEquals(12_000, metadata.wordidCounter);
+		assertEquals(299, metadata.indexedPageCount);
+		assertEquals(5_000_000_000L, metadata.totalTokens);
+		assertEquals(42, metadata.generation);
+	}
+
+	@Test
+	void pageInfo() throws Exception {
+		PageInfo page = new PageInfo("https://example.com/");
+		page.title = "Example — home";
+		page.size = 70_000;
+		page.lastModified = new Date(1_700_000_000_000L);
+		page.bodyWordList = Map.of(1, 3, 400_000, 1);
+		page.titleWordList = Map.of();
+		PageInfo copy = roundTrip(new PageInfoSerializer(), page);
+		assertEquals(page.url, copy.url);
+		assertEquals(page.title, copy.title);
+		assertEquals(page.size, copy.size);
+		assertEquals(page.lastModified, copy.lastModified);
+		assertEquals(page.bodyWordList, copy.bodyWordList);
+		assertEquals(Map.of(), copy.titleWordList); // empty stays empty, not null
+
+		PageInfo bare = roundTrip(new PageInfoSerializer(), new PageInfo(longText()));
+		assertEquals(longText(), bare.url);
+		assertNull(bare.title);
+		assertNull(bare.lastModified);
+		assertNull(bare.bodyWordList);
+		assertNull(bare.titleWordList);
+	}
+
+	@Test
+	void pageResults() throws Exception {
+		PageResult full = new PageResult();
+		full.setId(7);
+		full.setScore(0.875);
+		full.setTitle("Title");
+		full.setUrl("https://example.com/7");
+		full.setLastModified(new Date(1_000L));
+		full.setSize(1234);
+		full.setKeywordsWithFrequency(List.of(new KeywordFrequency("seven", 7)));
+		full.setChildLinks(List.of("https://example.com/8", "https://example.com/9"));
+		full.setParentLinks(List.of());
+
+		PageResultSerializer serializer = new PageResultSerializer();
+		PageResult copy = roundTrip(serializer, full);
+		assertEquals(7, (int) copy.getId());
+		assertEquals(0.875, copy.getScore(), 0);
+		assertEquals("Title", copy.getTitle());
+		assertEquals("https://example.com/7", copy.getUrl());
+		assertEquals(new Date(1_000L), copy.getLastModified());
+		assertEquals(1234, copy.getSize());
+		assertEquals("seven", copy.getKeywordsWithFrequency().get(0).getKeyword());
+		assertEquals(full.getChildLinks(), copy.getChildLinks());
+		assertEquals(List.of(), copy.getParentLinks());
+
+		PageResult empty = roundTrip(serializer, new PageResult());
+		assertNull(empty.getId());
+		assertNull(empty.getTitle());
+		assertNull(empty.getLastModified());
+		assertNull(empty.getKeywordsWithFrequency());
+		assertNull(empty.getChildLinks());
+		assertNull(empty.getParentLinks());
+
+		// the list form used between search nodes
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			serializer.writeList(out, List.of(full, new PageResult(), full));
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			List<PageResult> results = serializer.readList(in);
+			assertEquals(3, results.size());
+			assertEquals(7, (int) results.get(2).getId());
+			assertNull(results.get(1).getUrl());
+			assertEquals(-1, in.read()); // nothing left over
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.example.searchengine.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Locale;
+
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+class FetchedPageTests {
+
+	private HttpServer server;
+	private String base;
+
+	@BeforeEach
+	void startServer() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.start();
+		base = "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	// serves html at path; a null lastModified sends no header, chunked sends no Content-Length
+	private void serve(String path, String html, String lastModified, boolean chunked) {
+		byte[] body = html.getBytes(StandardCharsets.UTF_8);
+		server.createContext(path, exchange -> {
+			exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+			if (lastModified != null) exchange.getResponseHeaders().set("Last-Modified", lastModified);
+			exchange.sendResponseHeaders(200, chunked ? 0 : body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+	}
+
+	private static long time(String httpDate) throws Exception {
+		return new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US).parse(httpDate).getTime();
+	}
+
+	@Test
+	void titleBodyLinksAndHeadersComeFromOneDownload() throws Exception {
+		String html = "<html><head><title>Apple orchard</title></head><body><p>apples and pears</p>"
+				+ "<a href=\"/about\">about</a> <a href=\"mailto:grower@a.example\">mail</a>"
+				+ " <a href=\"https://b.example/\">b</a></body></html>";
+		serve("/", html, "Wed, 21 Oct 2015 07:28:00 GMT", false);
+
+		FetchedPage page = FetchedPage.of(base + "/", Jsoup.connect(base + "/").get());
+		assertEquals(base + "/", page.getUrl());
+		assertEquals("Apple orchard", page.getTitle());
+		assertTrue(page.getBodyText().contains("apples and pears"), page.getBodyText());
+		assertEquals(List.of(base + "/about", "https://b.example/"), page.getLinks()); // absolute, http(s) only
+		assertEquals(time("Wed, 21 Oct 2015 07:28:00 GMT"), page.getLastModified().getTime());
+		assertEquals(html.getBytes(StandardCharsets.UTF_8).length, page.getSize()); // the Content-Length
+	}
+
+	@Test
+	void withoutHeadersTheMetaTagAndTheHtmlAreUsed() throws Exception {
+		String html = "<html><head><title>Pears</title>"
+				+ "<meta name=\"last-modified\" content=\"Thu, 01 Jan 2015 00:00:00 GMT\"></head><body>pears</body></html>";
+		serve("/pears", html, null, true);
+
+		FetchedPage page = FetchedPage.of(base + "/pears", Jsoup.connect(base + "/pears").get());
+		assertEquals(time("Thu, 01 Jan 2015 00:00:00 GMT"), page.getLastModified().getTime());
+		assertTrue(page.getSize() > 0, "size " + page.getSize());
+		assertEquals(List.of(), page.getLinks());
+
+		serve("/plain", "<html><body>no date</body></html>", null, true);
+		FetchedPage plain = FetchedPage.of(base + "/plain", Jsoup.connect(base + "/plain").get());
+		assertNull(plain.getLastModified());
+		assertEquals("", plain.getTitle());
+	}
+
+}
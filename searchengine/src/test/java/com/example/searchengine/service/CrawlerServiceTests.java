@@ -0,0 +1,72 @@
+package com.example.searchengine.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.searchengine.model.FetchedPage;
+import com.sun.net.httpserver.HttpServer;
+
+class CrawlerServiceTests {
+
+	private HttpServer server;
+	private String base;
+	private final AtomicInteger requests = new AtomicInteger();
+
+	@BeforeEach
+	void startServer() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.start();
+		base = "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	// answers 503 to the first `failures` requests, then serves the page
+	private void serve(String path, int failures) {
+		byte[] body = "<html><head><title>Apple</title></head><body>apple orchard</body></html>".getBytes(StandardCharsets.UTF_8);
+		server.createContext(path, exchange -> {
+			if (requests.incrementAndGet() <= failures) {
+				exchange.sendResponseHeaders(503, -1);
+			} else {
+				exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+			}
+			exchange.close();
+		});
+	}
+
+	// fetchPage touches neither the database nor the indexer
+	private static CrawlerService crawler() {
+		return new CrawlerService(null, null, null, false, 1, 1, 0);
+	}
+
+	@Test
+	void aFailedFetchIsRetried() throws Exception {
+		serve("/", 2);
+		FetchedPage page = crawler().fetchPage(base + "/");
+		assertEquals(3, requests.get());
+		assertEquals("Apple", page.getTitle());
+		assertEquals("apple orchard", page.getBodyText());
+	}
+
+	@Test
+	void aFetchIsGivenUpAfterThreeAttempts() throws Exception {
+		serve("/", Integer.MAX_VALUE);
+		assertThrows(IOException.class, () -> crawler().fetchPage(base + "/"));
+		assertEquals(3, requests.get());
+	}
+
+}
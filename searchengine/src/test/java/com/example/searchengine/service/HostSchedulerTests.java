@@ -0,0 +1,98 @@
+package com.example.searchengine.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class HostSchedulerTests {
+
+	private static long in(long millis) {
+		return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	private static long millisSince(long start) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	@Test
+	void fetchesOfOneHostStartHostDelayApart() throws Exception {
+		HostScheduler scheduler = new HostScheduler(10, 2, 300, () -> 100);
+		scheduler.offer("https://a.example/1");
+		scheduler.offer("https://a.example/2");
+		scheduler.offer("https://b.example/1");
+
+		long start = System.nanoTime();
+		assertEquals("https://a.example/1", scheduler.take(in(5000)));
+		// another host is not held back by a's delay
+		assertEquals("https://b.example/1", scheduler.take(in(5000)));
+		assertTrue(millisSince(start) < 300, "b waited " + millisSince(start) + " ms");
+		assertEquals("https://a.example/2", scheduler.take(in(5000)));
+		assertTrue(millisSince(start) >= 300, "a fetched again after " + millisSince(start) + " ms");
+	}
+
+	@Test
+	void aHostHasAtMostMaxPerHostFetchesInFlight() throws Exception {
+		HostScheduler scheduler = new HostScheduler(10, 1, 0, () -> 100);
+		scheduler.offer("https://a.example/1");
+		scheduler.offer("https://a.example/2");
+		scheduler.offer("https://b.example/1");
+
+		assertEquals("https://a.example/1", scheduler.take(in(5000)));
+		assertEquals("https://b.example/1", scheduler.take(in(5000)));
+		assertNull(scheduler.take(in(100)), "a second fetch of a.example");
+		scheduler.done("https://a.example/1");
+		assertEquals("https://a.example/2", scheduler.take(in(5000)));
+		assertEquals(2, scheduler.getActiveCount());
+	}
+
+	@Test
+	void atMostMaxConnectionsFetchesInFlight() throws Exception {
+		HostScheduler scheduler = new HostScheduler(2, 5, 0, () -> 100);
+		for (String host : new String[] {"a", "b", "c"}) scheduler.offer("https://" + host + ".example/");
+
+		String first = scheduler.take(in(5000));
+		String second = scheduler.take(in(5000));
+		assertEquals(2, scheduler.getActiveCount());
+		assertNull(scheduler.take(in(100)), "a third fetch in flight");
+
+		// a waiting take is woken by done()
+		Thread finisher = Thread.ofVirtual().start(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			scheduler.done(first);
+		});
+		long start = System.nanoTime();
+		String third = scheduler.take(in(5000));
+		finisher.join();
+		assertTrue(third != null && !third.equals(first) && !third.equals(second), "third " + third);
+		assertTrue(millisSince(start) < 2000, "woken after " + millisSince(start) + " ms");
+		assertEquals(2, scheduler.getActiveCount());
+		assertEquals(3, scheduler.getHostCount());
+
+		scheduler.done(second);
+		scheduler.done(third);
+		assertNull(scheduler.take(in(5000)), "nothing queued or in flight");
+	}
+
+	@Test
+	void noMoreFetchesInFlightThanTheBudgetAllows() throws Exception {
+		int[] budget = {1};
+		HostScheduler scheduler = new HostScheduler(10, 5, 0, () -> budget[0]);
+		scheduler.offer("https://a.example/");
+		scheduler.offer("https://b.example/");
+
+		assertEquals("https://a.example/", scheduler.take(in(5000)));
+		assertNull(scheduler.take(in(100)), "fetching past the budget");
+		budget[0] = 0; // the page got crawled
+		scheduler.done("https://a.example/");
+		assertNull(scheduler.take(in(5000)), "budget used up");
+	}
+
+}
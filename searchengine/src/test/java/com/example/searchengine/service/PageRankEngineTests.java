@@ -0,0 +1,146 @@
+package com.example.searchengine.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.searchengine.database.index.LinkGraph;
+
+class PageRankEngineTests {
+
+	@TempDir
+	Path dir;
+
+	private static final double DAMPING = 0.85;
+	private static final double TOLERANCE = 1e-12;
+
+	// children per page id; null = not crawled
+	private LinkGraph graph(List<List<Integer>> children, String name) throws Exception {
+		LinkGraph.Builder builder = new LinkGraph.Builder(children.size());
+		for (int id = 0; id < children.size(); id++) {
+			if (children.get(id) == null) continue;
+			builder.setCrawled(id);
+			builder.setChildren(id, children.get(id));
+		}
+		Path file = dir.resolve(name);
+		builder.write(file, 1);
+		return LinkGraph.open(file);
+	}
+
+	// 0 -> 1, 2; 1 -> 2; 2 -> 0; 3 -> 2, 5 (5 never crawled); 4 dangling; 5 uncrawled; 6 -> 4
+	private static List<List<Integer>> fixedGraph() {
+		List<List<Integer>> children = new ArrayList<>();
+		children.add(new ArrayList<>(List.of(1, 2)));
+		children.add(new ArrayList<>(List.of(2)));
+		children.add(new ArrayList<>(List.of(0)));
+		children.add(new ArrayList<>(List.of(2, 5)));
+		children.add(new ArrayList<>());
+		children.add(null);
+		children.add(new ArrayList<>(List.of(4)));
+		return children;
+	}
+
+	private static List<List<Integer>> randomGraph(Random random, int pages) {
+		List<List<Integer>> children = new ArrayList<>();
+		for (int id = 0; id < pages; id++) {
+			if (random.nextInt(20) == 0) {
+				children.add(null);
+				continue;
+			}
+			List<Integer> links = new ArrayList<>();
+			int degree = random.nextInt(8) == 0 ? 0 : 1 + random.nextInt(6); // some dangling pages
+			for (int k = 0; k < degree; k++) links.add(random.nextInt(pages));
+			children.add(links);
+		}
+		return children;
+	}
+
+	// dense power iteration on the crawled pages, dangling rank spread evenly
+	private static double[] reference(List<List<Integer>> children) {
+		int[] dense = new int[children.size()];
+		int n = 0;
+		for (int id = 0; id < children.size(); id++) dense[id] = children.get(id) == null ? -1 : n++;
+		double[] rank = new double[n];
+		Arrays.fill(rank, 1.0 / n);
+		for (int iteration = 0; iteration < 2000; iteration++) {
+			double[] next = new double[n];
+			double dangling = 0;
+			for (int id = 0; id < children.size(); id++) {
+				if (dense[id] < 0) continue;
+				List<Integer> out = children.get(id).stream().filter(c -> dense[c] >= 0).distinct().toList();
+				if (out.isEmpty()) dangling += rank[dense[id]];
+				for (int child : out) next[dense[child]] += DAMPING * rank[dense[id]] / out.size();
+			}
+			for (int i = 0; i < n; i++) next[i] += (1 - DAMPING) / n + DAMPING * dangling / n;
+			rank = next;
+		}
+		return rank;
+	}
+
+	@Test
+	void strategiesConvergeToTheSameScores() throws Exception {
+		List<List<List<Integer>>> graphs = List.of(fixedGraph(), randomGraph(new Random(14), 400));
+		for (int g = 0; g < graphs.size(); g++) {
+			PageRankEngine engine = new PageRankEngine(graph(graphs.get(g), "graph" + g));
+			double[] expected = reference(graphs.get(g));
+			for (PageRankEngine.Strategy strategy : PageRankEngine.Strategy.values()) {
+				double[] rank = engine.compute(strategy, DAMPING, 1000, TOLERANCE);
+				assertArrayEquals(expected, rank, 1e-9, strategy + " on graph " + g);
+				assertEquals(1.0, Arrays.stream(rank).sum(), 1e-9);
+				assertTrue(engine.getResidual() < TOLERANCE, strategy + " stopped at " + engine.getResidual());
+				assertEquals(engine.getIterations(), engine.getResidualHistory().size());
+			}
+		}
+		// dense order skips the uncrawled page
+		PageRankEngine engine = new PageRankEngine(graph(fixedGraph(), "fixed"));
+		assertArrayEquals(new int[] {0, 1, 2, 3, 4, 6}, engine.getPageIds());
+	}
+
+	@Test
+	void incrementalUpdateMatchesFullRecompute() throws Exception {
+		Random random = new Random(16);
+		List<List<Integer>> before = randomGraph(random, 500);
+		PageRankEngine first = new PageRankEngine(graph(before, "before"));
+		double[] firstRank = first.compute(PageRankEngine.Strategy.JACOBI, DAMPING, 1000, TOLERANCE);
+		double[] byPageId = new double[before.size() + 10];
+		Arrays.fill(byPageId, Double.NaN);
+		for (int i = 0; i < firstRank.length; i++) byPageId[first.getPageIds()[i]] = firstRank[i];
+
+		// a recrawl: new links on a few pages, a dangling page gains links, and new pages appear
+		List<List<Integer>> after = new ArrayList<>(before);
+		for (int n = 0; n < 10; n++) {
+			int id = random.nextInt(before.size());
+			if (after.get(id) == null) continue;
+			List<Integer> links = new ArrayList<>(after.get(id));
+			links.add(random.nextInt(before.size() + 10));
+			after.set(id, links);
+		}
+		for (int id = 0; id < before.size(); id++) {
+			if (after.get(id) != null && after.get(id).isEmpty()) {
+				after.set(id, new ArrayList<>(List.of(0)));
+				break;
+			}
+		}
+		for (int n = 0; n < 10; n++) after.add(new ArrayList<>(List.of(random.nextInt(before.size()))));
+
+		PageRankEngine second = new PageRankEngine(graph(after, "after"));
+		double[] previous = new double[second.getPageIds().length];
+		for (int i = 0; i < previous.length; i++) previous[i] = byPageId[second.getPageIds()[i]];
+		double[] updated = second.update(previous, DAMPING, 1000, TOLERANCE);
+		assertTrue(second.getResidual() < TOLERANCE, "residual " + second.getResidual());
+		double[] full = second.compute(PageRankEngine.Strategy.JACOBI, DAMPING, 1000, TOLERANCE);
+
+		assertArrayEquals(full, updated, 1e-9);
+		assertArrayEquals(reference(after), updated, 1e-9);
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.example.searchengine.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.searchengine.database.CommitCoordinator.Durability;
+import com.example.searchengine.database.DbManage;
+import com.example.searchengine.model.FetchedPage;
+import com.example.searchengine.model.PageInfo;
+
+class PageRankServiceTests {
+
+	@TempDir
+	Path dir;
+
+	private static void index(DbManage db, String url, String... links) throws IOException {
+		FetchedPage page = new FetchedPage(url, url, "page " + url, List.of(links), new Date(0), 10);
+		PageInfo pageInfo = new PageInfo(url);
+		pageInfo.extractInfo(page);
+		int docId = db.addPage(url);
+		new IndexerService(db).indexPage(page, docId, pageInfo);
+		db.addPageIndex(docId, pageInfo);
+		db.updateParentChildMap(page.getLinks(), url);
+	}
+
+	@Test
+	void scoreTableIsDurableBeforeTheStaticScoreColumn() throws Exception {
+		// batched commits that never come due: only SYNC commits reach the disk
+		DbManage db = new DbManage(new RecordManagerService(dir, "none"), "batched", 1000, 3_600_000, 1);
+		index(db, "https://a.example/", "https://a.example/b", "https://a.example/c");
+		index(db, "https://a.example/b", "https://a.example/c");
+		index(db, "https://a.example/c", "https://a.example/");
+		db.commit(Durability.SYNC);
+		db.rebuildDocColumns();
+		db.rebuildLinkGraph();
+		new PageRankService(db, 0.85, 100, 0.0001, "gauss_seidel").computePageRank();
+
+		// a crash: the store is opened again from what was committed, the first one is never closed
+		DbManage reopened = new DbManage(new RecordManagerService(dir, "none"), "batched", 1000, 3_600_000, 1);
+		try {
+			double max = 0;
+			double[] stored = new double[3];
+			for (int docId = 0; docId < 3; docId++) {
+				Double score = (Double) reopened.getPageRankMap().get(docId);
+				assertNotNull(score, "no committed score for doc " + docId);
+				stored[docId] = score;
+				max = Math.max(max, score);
+			}
+			for (int docId = 0; docId < 3; docId++) {
+				assertEquals(stored[docId] / max, reopened.getStaticScores().score(docId), 1e-12, "doc " + docId);
+			}
+		} finally {
+			reopened.close();
+		}
+	}
+
+}
@@ -0,0 +1,194 @@
+package com.example.searchengine.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.searchengine.database.DbManage;
+import com.example.searchengine.database.SerializedHTree;
+import com.example.searchengine.database.index.IndexSnapshot;
+import com.example.searchengine.database.index.PostingCursor;
+import com.example.searchengine.database.serializer.IntListSerializer;
+import com.example.searchengine.database.serializer.PageInfoSerializer;
+import com.example.searchengine.model.PageInfo;
+import com.example.searchengine.model.Posting;
+
+import jdbm.helper.FastIterator;
+import jdbm.htree.HTree;
+
+class RecordManagerServiceTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void legacyTablesAreMigratedOnce() throws Exception {
+		// a database of an older version: values stored by JDBM's default (java.io) serialization
+		RecordManagerService old = new RecordManagerService(dir, "none");
+		HTree legacyPages = old.getOrCreateHTree("pageIndex");
+		for (int docId = 0; docId < 50; docId++) {
+			PageInfo page = new PageInfo("https://example.com/" + docId);
+			page.title = "Page " + docId;
+			page.size = docId * 10;
+			page.lastModified = docId % 2 == 0 ? new Date(docId * 1000L) : null;
+			page.bodyWordList = new HashMap<>(Map.of(docId, 2, 1000 + docId, 1));
+			legacyPages.put(docId, page);
+		}
+		old.getOrCreateHTree("parentChildMap").put(1, new ArrayList<>(List.of(2, 3, 4)));
+		old.commit();
+		old.close();
+
+		RecordManagerService upgraded = new RecordManagerService(dir, "none");
+		SerializedHTree pages = upgraded.getOrCreateHTree("pageIndex", new PageInfoSerializer());
+		SerializedHTree links = upgraded.getOrCreateHTree("parentChildMap", new IntListSerializer());
+		assertStored(pages, links);
+		HTree raw = upgraded.getOrCreateHTree("pageIndex");
+		FastIterator keys = raw.keys();
+		Object key;
+		int count = 0;
+		while ((key = keys.next()) != null) {
+			assertTrue(raw.get(key) instanceof byte[], "compact value for " + key);
+			count++;
+		}
+		assertEquals(50, count);
+
+		// a record written in the new format, then reopen: migrated and new records both read back
+		PageInfo added = new PageInfo("https://example.com/new");
+		pages.put(50, added);
+		upgraded.commit();
+		upgraded.close();
+
+		RecordManagerService reopened = new RecordManagerService(dir, "none");
+		pages = reopened.getOrCreateHTree("pageIndex", new PageInfoSerializer());
+		assertStored(pages, reopened.getOrCreateHTree("parentChildMap", new IntListSerializer()));
+		assertEquals("https://example.com/new", ((PageInfo) pages.get(50)).url);
+		assertNull(pages.get(51));
+		reopened.close();
+	}
+
+	@Test
+	void legacyPostingsAreImportedAndTheirTreesDropped() throws Exception {
+		// postings of a database from before the segment format
+		RecordManagerService old = new RecordManagerService(dir, "none");
+		old.getOrCreateHTree("bodyIndex").put(7, new ArrayList<>(List.of(new Posting(0, 2, List.of(1, 4)), new Posting(3, 1, List.of(0)))));
+		old.getOrCreateHTree("titleIndex").put(7, new ArrayList<>(List.of(new Posting(3, 1, List.of(0)))));
+		old.commit();
+		old.close();
+
+		RecordManagerService upgraded = new RecordManagerService(dir, "none");
+		DbManage db = new DbManage(upgraded, "sync", 1, 1000, 1);
+		assertNull(upgraded.getHTree("bodyIndex"));
+		assertNull(upgraded.getHTree("titleIndex"));
+		try (IndexSnapshot snapshot = db.acquireSnapshot()) {
+			PostingCursor body = snapshot.getBodyCursor(7);
+			assertEquals(0, body.nextDoc());
+			assertEquals(2, body.freq());
+			assertEquals(3, body.nextDoc());
+			assertEquals(3, snapshot.getTitleCursor(7).nextDoc());
+		}
+		db.close();
+
+		// reopened: the postings are in the segments only
+		RecordManagerService reopened = new RecordManagerService(dir, "none");
+		db = new DbManage(reopened, "sync", 1, 1000, 1);
+		assertNull(reopened.getHTree("bodyIndex"));
+		try (IndexSnapshot snapshot = db.acquireSnapshot()) {
+			assertEquals(0, snapshot.getBodyCursor(7).nextDoc());
+		}
+		db.close();
+	}
+
+	// a live store holding "live", then a bulk load that staged "staged" and an index file
+	private RecordManagerService stageBulkLoad() throws Exception {
+		RecordManagerService service = new RecordManagerService(dir, "none");
+		service.getOrCreateHTree("pages").put("home", "live");
+		service.commit();
+		service.beginBulkLoad();
+		service.getOrCreateHTree("pages").put("home", "staged");
+		Files.createDirectories(service.getIndexDirectory());
+		Files.writeString(service.getIndexDirectory().resolve("body.seg"), "staged");
+		return service;
+	}
+
+	private Object stored(RecordManagerService service) throws Exception {
+		return service.getOrCreateHTree("pages").get("home");
+	}
+
+	@Test
+	void startupInstallsACompleteBulkLoad() throws Exception {
+		RecordManagerService crashed = stageBulkLoad();
+		crashed.commit(); // the process died after writing the marker, before the swap
+		Files.createFile(dir.resolve("crawlerDb.bulk/COMPLETE"));
+
+		RecordManagerService restarted = new RecordManagerService(dir, "none");
+		assertEquals("staged", stored(restarted));
+		assertEquals("staged", Files.readString(restarted.getIndexDirectory().resolve("body.seg")));
+		assertFalse(Files.exists(dir.resolve("crawlerDb.bulk")));
+		restarted.close();
+	}
+
+	@Test
+	void startupDropsAnUnfinishedBulkLoad() throws Exception {
+		RecordManagerService crashed = stageBulkLoad();
+		crashed.commit(); // the process died mid-load: no marker
+
+		RecordManagerService restarted = new RecordManagerService(dir, "none");
+		assertEquals("live", stored(restarted));
+		assertFalse(Files.exists(restarted.getIndexDirectory()));
+		assertFalse(Files.exists(dir.resolve("crawlerDb.bulk")));
+		restarted.close();
+	}
+
+	@Test
+	void abortAfterAFailedSwapInstallsTheCompleteStore() throws Exception {
+		// the live .db cannot be replaced: a non-empty directory in its place
+		Path blocker = dir.resolve("crawlerDb.db");
+		RecordManagerService service = stageBulkLoad();
+		Files.delete(blocker);
+		Files.createDirectories(blocker.resolve("in-use"));
+		assertThrows(IOException.class, service::finishBulkLoad);
+		assertTrue(Files.exists(dir.resolve("crawlerDb.bulk/COMPLETE")));
+
+		// the swap keeps failing: the complete store is kept for the next start
+		assertThrows(IOException.class, service::abortBulkLoad);
+		assertTrue(Files.exists(dir.resolve("crawlerDb.bulk/COMPLETE")));
+		service.close();
+
+		// the next attempt gets through and installs it, as a restart would
+		RecordManagerService.deleteRecursively(blocker);
+		assertTrue(service.abortBulkLoad());
+		assertFalse(service.isBulkLoading());
+		assertEquals("staged", stored(service));
+		assertEquals("staged", Files.readString(service.getIndexDirectory().resolve("body.seg")));
+		assertFalse(Files.exists(dir.resolve("crawlerDb.bulk")));
+		service.close();
+	}
+
+	private static void assertStored(SerializedHTree pages, SerializedHTree links) throws Exception {
+		for (int docId = 0; docId < 50; docId++) {
+			PageInfo page = (PageInfo) pages.get(docId);
+			assertEquals("https://example.com/" + docId, page.url);
+			assertEquals("Page " + docId, page.title);
+			assertEquals(docId * 10, page.size);
+			assertEquals(docId % 2 == 0 ? new Date(docId * 1000L) : null, page.lastModified);
+			assertEquals(Map.of(docId, 2, 1000 + docId, 1), page.bodyWordList);
+			assertNull(page.titleWordList);
+		}
+		assertEquals(List.of(2, 3, 4), links.get(1));
+	}
+
+}
@@ -0,0 +1,231 @@
+package com.example.searchengine.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.searchengine.database.CommitCoordinator.Durability;
+import com.example.searchengine.database.DbManage;
+import com.example.searchengine.database.GenerationManifest;
+import com.example.searchengine.model.FetchedPage;
+import com.example.searchengine.model.PageInfo;
+import com.example.searchengine.model.PageResult;
+
+class ReplicationServiceTests {
+
+	@TempDir
+	Path dir;
+
+	private final List<DbManage> opened = new ArrayList<>();
+	private final Map<String, RecordManagerService> stores = new HashMap<>();
+	private final List<ReplicationService> services = new ArrayList<>();
+
+	@AfterEach
+	void closeStores() throws IOException {
+		for (ReplicationService service : services) service.destroy();
+		for (DbManage db : opened) db.close();
+	}
+
+	private DbManage open(String name, String role) throws IOException {
+		Files.createDirectories(dir.resolve(name));
+		stores.put(name, new RecordManagerService(dir.resolve(name), role));
+		DbManage db = new DbManage(stores.get(name), "sync", 1, 1000, 1);
+		opened.add(db);
+		return db;
+	}
+
+	// publish() and pull() are called by the test: the scheduled runs are an hour away
+	private ReplicationService replication(DbManage db, String name, String role, String source) throws IOException {
+		ReplicationService service = new ReplicationService(db, stores.get(name), role, source, 3_600_000, 2);
+		services.add(service);
+		return service;
+	}
+
+	// a crawl of the given pages, with the derived columns rebuilt and PageRank run as at its end
+	private static void crawl(DbManage db, String... urlsAndBodies) throws IOException {
+		index(db, urlsAndBodies);
+		pageRank(db);
+	}
+
+	private static void index(DbManage db, String... urlsAndBodies) throws IOException {
+		for (int i = 0; i < urlsAndBodies.length; i += 2) {
+			String url = urlsAndBodies[i];
+			FetchedPage page = new FetchedPage(url, url, urlsAndBodies[i + 1], List.of(), new Date(0), 10);
+			PageInfo pageInfo = new PageInfo(url);
+			pageInfo.extractInfo(page);
+			int docId = db.addPage(url);
+			new IndexerService(db).indexPage(page, docId, pageInfo);
+			db.addPageIndex(docId, pageInfo);
+			db.commit();
+		}
+		db.commit(Durability.SYNC);
+		db.rebuildTermDictionary();
+		db.rebuildDocColumns();
+		db.rebuildLinkGraph();
+	}
+
+	private static void pageRank(DbManage db) throws IOException {
+		new PageRankService(db, 0.85, 100, 0.0001, "gauss_seidel").computePageRank();
+	}
+
+	private static List<String> urls(DbManage db, String query) throws IOException {
+		return new SearchService(db).search(query, false).stream().map(PageResult::getUrl).sorted().toList();
+	}
+
+	// replace, not overwrite: published index files are hard links to the primary's own
+	private static void replace(Path file, byte[] content) throws IOException {
+		Files.delete(file);
+		Files.write(file, content);
+	}
+
+	@Test
+	void replicaInstallsVerifiedGenerationsAndRejectsACorruptedOne() throws Exception {
+		DbManage primaryDb = open("primary", "primary");
+		ReplicationService primary = replication(primaryDb, "primary", "primary", "");
+		Path published = dir.resolve("primary").resolve("crawlerDb.published");
+		DbManage replicaDb = open("replica", "replica");
+		ReplicationService replica = replication(replicaDb, "replica", "replica", published.toString());
+
+		crawl(primaryDb, "https://a.example/", "apple orchard", "https://a.example/about", "apple growers");
+		primary.publish();
+		replica.pull();
+		assertEquals(primaryDb.getGeneration(), replicaDb.getGeneration());
+		assertEquals(List.of("https://a.example/", "https://a.example/about"), urls(replicaDb, "apple"));
+
+		// the next generation lists index files the replica already has: they are linked, not fetched,
+		// so damaging the published copies of those does not matter
+		Map<String, GenerationManifest.Entry> first = new HashMap<>();
+		Path firstManifest = published.resolve(GenerationManifest.directoryName(primaryDb.getGeneration()))
+				.resolve(GenerationManifest.FILE_NAME);
+		for (GenerationManifest.Entry entry : GenerationManifest.read(firstManifest).getEntries()) first.put(entry.path, entry);
+		crawl(primaryDb, "https://b.example/", "banana split");
+		primary.publish();
+		long second = primaryDb.getGeneration();
+		Path secondDirectory = published.resolve(GenerationManifest.directoryName(second));
+		int unchanged = 0;
+		for (GenerationManifest.Entry entry : GenerationManifest.read(secondDirectory.resolve(GenerationManifest.FILE_NAME)).getEntries()) {
+			GenerationManifest.Entry previous = first.get(entry.path);
+			if (entry.path.startsWith("crawlerDb.index/") && previous != null && previous.checksum == entry.checksum) {
+				replace(GenerationManifest.resolve(secondDirectory, entry.path), new byte[(int) entry.size]);
+				unchanged++;
+			}
+		}
+		assertTrue(unchanged > 0, "no index file carried over");
+		replica.pull();
+		assertEquals(second, replicaDb.getGeneration());
+		assertEquals(List.of("https://b.example/"), urls(replicaDb, "banana"));
+		assertEquals(List.of("https://a.example/", "https://a.example/about"), urls(replicaDb, "apple"));
+
+		// a manifest whose checksum does not match the file: the generation is rejected, the old one served
+		crawl(primaryDb, "https://c.example/", "cherry pie");
+		primary.publish();
+		Path latest = published.resolve("latest.manifest");
+		GenerationManifest third = GenerationManifest.read(latest);
+		List<GenerationManifest.Entry> corrupted = new ArrayList<>();
+		for (GenerationManifest.Entry entry : third.getEntries()) {
+			corrupted.add(entry.path.equals("crawlerDb.db") ? new GenerationManifest.Entry(entry.path, entry.size, entry.checksum ^ 1) : entry);
+		}
+		replace(latest, new GenerationManifest(third.getGeneration(), corrupted).toBytes());
+		IOException rejected = assertThrows(IOException.class, replica::pull);
+		assertTrue(rejected.getMessage().contains("Checksum mismatch on crawlerDb.db"), rejected.getMessage());
+		assertEquals(second, replicaDb.getGeneration());
+		assertEquals(List.of(), urls(replicaDb, "cherry"));
+		assertEquals(List.of("https://b.example/"), urls(replicaDb, "banana"));
+		Path download = dir.resolve("replica").resolve("crawlerDb.replica");
+		try (var generations = Files.list(download)) {
+			assertFalse(generations.anyMatch(path -> path.getFileName().toString().startsWith(
+					GenerationManifest.directoryName(third.getGeneration()))), "partial download left behind");
+		}
+
+		// fixed at the source: installed on the next pull
+		third.write(latest);
+		replica.pull();
+		assertEquals(third.getGeneration(), replicaDb.getGeneration());
+		assertEquals(List.of("https://c.example/"), urls(replicaDb, "cherry"));
+	}
+
+	private static Map<String, String> files(GenerationManifest manifest) {
+		Map<String, String> files = new HashMap<>();
+		for (GenerationManifest.Entry entry : manifest.getEntries()) files.put(entry.path, entry.size + ":" + entry.checksum);
+		return files;
+	}
+
+	// what the installed store holds now, against the manifest it was verified with
+	private void assertStoreAsShipped() throws IOException {
+		Path store = stores.get("replica").getStoreDirectory();
+		assertEquals(files(GenerationManifest.read(store.resolve(GenerationManifest.FILE_NAME))),
+				files(GenerationManifest.build(0, store)));
+	}
+
+	@Test
+	void replicaWritesNothingIntoAShippedGeneration() throws Exception {
+		DbManage primaryDb = open("primary", "primary");
+		ReplicationService primary = replication(primaryDb, "primary", "primary", "");
+		Path published = dir.resolve("primary").resolve("crawlerDb.published");
+		DbManage replicaDb = open("replica", "replica");
+		ReplicationService replica = replication(replicaDb, "replica", "replica", published.toString());
+
+		crawl(primaryDb, "https://a.example/", "apple orchard", "https://a.example/about", "apple growers");
+		primary.publish();
+		replica.pull();
+		long first = replicaDb.getGeneration();
+		assertStoreAsShipped();
+
+		// a generation whose doc columns the replica would have to rebuild: rejected, the previous one served
+		crawl(primaryDb, "https://b.example/", "banana split");
+		primary.publish();
+		long second = primaryDb.getGeneration();
+		Path shipped = published.resolve(GenerationManifest.directoryName(second));
+		Files.delete(shipped.resolve("crawlerDb.index").resolve("docstats.col")); // a link: the primary keeps its own
+		GenerationManifest incomplete = GenerationManifest.build(second, shipped);
+		incomplete.write(shipped.resolve(GenerationManifest.FILE_NAME));
+		replace(published.resolve("latest.manifest"), incomplete.toBytes());
+
+		IOException rejected = assertThrows(IOException.class, replica::pull);
+		assertTrue(rejected.getMessage().contains("without current doc columns"), rejected.getMessage());
+		assertEquals(first, replicaDb.getGeneration());
+		assertEquals(List.of("https://a.example/", "https://a.example/about"), urls(replicaDb, "apple"));
+		assertEquals(List.of(), urls(replicaDb, "banana"));
+		assertFalse(Files.exists(stores.get("replica").getReplicaDirectory(second)), "rejected generation kept");
+		assertStoreAsShipped();
+	}
+
+	@Test
+	void generationsAreExportedOnceTheirPageRankIsWritten() throws Exception {
+		DbManage primaryDb = open("primary", "primary");
+		ReplicationService primary = replication(primaryDb, "primary", "primary", "");
+		Path published = dir.resolve("primary").resolve("crawlerDb.published");
+		DbManage replicaDb = open("replica", "replica");
+		ReplicationService replica = replication(replicaDb, "replica", "replica", published.toString());
+
+		// the crawl is over, PageRank has not run yet: nothing to publish
+		index(primaryDb, "https://a.example/", "apple orchard", "https://a.example/about", "apple growers");
+		primary.publish();
+		assertFalse(Files.exists(published.resolve("latest.manifest")), "published before PageRank");
+
+		pageRank(primaryDb);
+		primary.publish();
+		replica.pull();
+		assertEquals(primaryDb.getGeneration(), replicaDb.getGeneration());
+		for (String url : List.of("https://a.example/", "https://a.example/about")) {
+			int docId = replicaDb.getPageId(url);
+			assertTrue(replicaDb.getStaticScores().contains(docId), "no score shipped for " + url);
+			assertEquals(primaryDb.getStaticScores().score(docId), replicaDb.getStaticScores().score(docId), 0);
+		}
+	}
+
+}
@@ -0,0 +1,223 @@
+package com.example.searchengine.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.searchengine.database.CommitCoordinator.Durability;
+import com.example.searchengine.database.DbManage;
+import com.example.searchengine.database.index.IndexSnapshot;
+import com.example.searchengine.model.FetchedPage;
+import com.example.searchengine.model.KeywordFrequency;
+import com.example.searchengine.model.PageInfo;
+import com.example.searchengine.model.PageResult;
+
+class SearchServiceTests {
+
+	@TempDir
+	Path dir;
+
+	private final List<DbManage> opened = new ArrayList<>();
+
+	@AfterEach
+	void closeStores() throws IOException {
+		for (DbManage db : opened) db.close();
+	}
+
+	private DbManage open(String name, String role) throws IOException {
+		Files.createDirectories(dir.resolve(name));
+		DbManage db = new DbManage(new RecordManagerService(dir.resolve(name), role), "sync", 1, 1000, 1);
+		opened.add(db);
+		return db;
+	}
+
+	// what the crawler does with one fetched page
+	private static void index(DbManage db, String url, String title, String body, String... links) throws IOException {
+		FetchedPage page = new FetchedPage(url, title, body, List.of(links), new Date(0), body.length());
+		PageInfo pageInfo = new PageInfo(url);
+		pageInfo.extractInfo(page);
+		int docId = db.containsIndexedUrl(url) ? db.getPageId(url) : db.addPage(url);
+		new IndexerService(db).indexPage(page, docId, pageInfo);
+		db.addPageIndex(docId, pageInfo);
+		db.updateParentChildMap(page.getLinks(), url);
+		db.commit();
+	}
+
+	// the end of a crawl: the derived columns and the link graph are rebuilt, then PageRank runs
+	private static void finishCrawl(DbManage db) throws IOException {
+		db.commit(Durability.SYNC);
+		db.rebuildTermDictionary();
+		db.rebuildDocColumns();
+		db.rebuildLinkGraph();
+		new PageRankService(db, 0.85, 100, 0.0001, "gauss_seidel").computePageRank();
+	}
+
+	private void ship(DbManage primary, DbManage replica, String name) throws IOException {
+		Path generation = dir.resolve(name);
+		assertTrue(primary.exportGeneration(-1, generation) >= 0);
+		replica.installGeneration(generation);
+	}
+
+	private static List<String> keywords(PageResult result) {
+		return result.getKeywordsWithFrequency().stream().map(KeywordFrequency::getKeyword).toList();
+	}
+
+	@Test
+	void pinnedSnapshotHydratesItsOwnGeneration() throws Exception {
+		DbManage replica = open("replica", "replica");
+		DbManage first = open("first", "none");
+		index(first, "https://a.example/", "Apple", "apple orchard", "https://a.example/about");
+		index(first, "https://a.example/about", "About", "apple growers");
+		finishCrawl(first);
+		ship(first, replica, "generation-a");
+
+		try (IndexSnapshot pinned = replica.acquireSnapshot()) {
+			// the next generation comes from a primary that started over: doc 0 is another page
+			DbManage second = open("second", "none");
+			index(second, "https://b.example/", "Banana", "banana split");
+			finishCrawl(second);
+			ship(second, replica, "generation-b");
+
+			PageResult apple = pinned.toResult(0, 1.0);
+			assertEquals("Apple", apple.getTitle());
+			assertEquals("https://a.example/", apple.getUrl());
+			assertEquals(List.of("https://a.example/about"), apple.getChildLinks());
+			assertTrue(keywords(apple).contains("orchard"), "keywords " + keywords(apple));
+			assertEquals(List.of("https://a.example/"), pinned.toResult(1, 1.0).getParentLinks());
+			assertEquals(1.0, pinned.toResult(1, 1.0).getScore(), 0);
+
+			try (IndexSnapshot current = replica.acquireSnapshot()) {
+				PageResult banana = current.toResult(0, 1.0);
+				assertEquals("Banana", banana.getTitle());
+				assertTrue(keywords(banana).contains("banana"), "keywords " + keywords(banana));
+				assertEquals(List.of(), banana.getChildLinks());
+				assertNull(current.toResult(1, 1.0));
+			}
+		}
+	}
+
+	@Test
+	void pagesIndexedMidCrawlComeFromThePageTables() throws Exception {
+		DbManage db = open("primary", "none");
+		index(db, "https://a.example/", "Apple", "apple orchard", "https://a.example/about");
+		finishCrawl(db);
+		index(db, "https://a.example/about", "About", "apple growers", "https://a.example/");
+
+		// committed but not in the columns or the link graph yet
+		try (IndexSnapshot snapshot = db.acquireSnapshot()) {
+			PageResult about = snapshot.toResult(1, 1.0);
+			assertEquals("About", about.getTitle());
+			assertEquals("https://a.example/about", about.getUrl());
+			assertEquals(List.of("https://a.example/"), about.getChildLinks());
+			assertEquals(List.of("https://a.example/about"), snapshot.toResult(0, 1.0).getParentLinks());
+			assertNull(snapshot.toResult(2, 1.0));
+		}
+	}
+
+	private static final String[] WORDS = {"apple", "banana", "cherry", "durian", "elder", "fig", "grape", "honeydew",
+			"kiwi", "lemon", "mango", "nectarine", "olive", "papaya", "quince", "raspberry"};
+
+	// a page whose words lean towards one end of WORDS, so the idf of each node differs from the global one
+	private static void randomPage(Random random, DbManage db, String url, boolean leanLow) throws IOException {
+		StringBuilder title = new StringBuilder();
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < 1 + random.nextInt(2); i++) title.append(word(random, leanLow)).append(' ');
+		for (int i = 0; i < 5 + random.nextInt(30); i++) body.append(word(random, leanLow)).append(' ');
+		index(db, url, title.toString().trim(), body.toString().trim());
+	}
+
+	private static String word(Random random, boolean leanLow) {
+		int index = (int) (WORDS.length * Math.pow(random.nextDouble(), 2.5));
+		return WORDS[leanLow ? index : WORDS.length - 1 - index];
+	}
+
+	// what ShardController does with a message, without HTTP
+	private static DistributedSearchService.Transport direct(Map<String, SearchService> nodes) {
+		return (node, path, body) -> {
+			try {
+				SearchService service = nodes.get(node);
+				byte[] reply = path.equals(ShardProtocol.STATS_PATH)
+						? ShardProtocol.encodeStats(service.termStats(ShardProtocol.decodeStatsRequest(body)))
+						: ShardProtocol.encodeResults(service.search(ShardProtocol.decodeSearchRequest(body)));
+				return CompletableFuture.completedFuture(reply);
+			} catch (IOException e) {
+				return CompletableFuture.failedFuture(e);
+			}
+		};
+	}
+
+	private static Map<String, Double> scores(List<PageResult> results) {
+		Map<String, Double> scores = new LinkedHashMap<>();
+		for (PageResult result : results) scores.put(result.getUrl(), result.getScore());
+		return scores;
+	}
+
+	private static void assertSameRanking(List<PageResult> expected, List<PageResult> actual, String query) {
+		Map<String, Double> expectedScores = scores(expected);
+		Map<String, Double> actualScores = scores(actual);
+		assertEquals(expectedScores.keySet(), actualScores.keySet(), query);
+		for (Map.Entry<String, Double> entry : expectedScores.entrySet()) {
+			assertEquals(entry.getValue(), actualScores.get(entry.getKey()), 1e-9, query + ": " + entry.getKey());
+		}
+		for (int i = 1; i < actual.size(); i++) {
+			assertTrue(actual.get(i - 1).getScore() >= actual.get(i).getScore(), query + " out of order at " + i);
+		}
+	}
+
+	@Test
+	void twoNodesRankLikeOneIndexOverBoth() throws Exception {
+		DbManage single = open("single", "none");
+		Map<String, DbManage> nodes = new HashMap<>(Map.of("http://a", open("a", "none"), "http://b", open("b", "none")));
+		Random random = new Random(22);
+		for (int page = 0; page < 60; page++) {
+			String node = page % 3 == 0 ? "http://b" : "http://a"; // uneven halves
+			String url = "https://" + node.substring(7) + ".example/" + page;
+			long seed = random.nextLong();
+			randomPage(new Random(seed), single, url, node.equals("http://a"));
+			randomPage(new Random(seed), nodes.get(node), url, node.equals("http://a"));
+		}
+		finishCrawl(single);
+		for (DbManage node : nodes.values()) finishCrawl(node);
+
+		SearchService union = new SearchService(single);
+		Map<String, SearchService> shardNodes = new HashMap<>();
+		nodes.forEach((node, db) -> shardNodes.put(node, new SearchService(db)));
+		DistributedSearchService coordinator = new DistributedSearchService("coordinator", "http://a,http://b", 2000,
+				direct(shardNodes));
+
+		List<String> queries = List.of("apple", "quince", "apple raspberry", "banana cherry olive",
+				"\"apple banana\" kiwi", "mango mango fig");
+		for (String query : queries) {
+			DistributedSearchService.Result distributed = coordinator.search(query);
+			assertTrue(!distributed.isPartial(), query + " left out " + distributed.failedNodes);
+			assertTrue(!distributed.results.isEmpty(), query);
+			assertSameRanking(union.search(query, false), distributed.results, query);
+		}
+
+		// a recrawl on one node changes the global vocabulary: the nodes get the new one
+		randomPage(new Random(7), single, "https://b.example/new", false);
+		randomPage(new Random(7), nodes.get("http://b"), "https://b.example/new", false);
+		finishCrawl(single);
+		finishCrawl(nodes.get("http://b"));
+		for (String query : queries) {
+			assertSameRanking(union.search(query, false), coordinator.search(query).results, query);
+		}
+	}
+
+}
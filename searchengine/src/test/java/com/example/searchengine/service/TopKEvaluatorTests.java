@@ -0,0 +1,125 @@
+package com.example.searchengine.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.searchengine.database.index.PostingCursor;
+import com.example.searchengine.database.index.SegmentedIndex;
+import com.example.searchengine.model.Posting;
+
+class TopKEvaluatorTests {
+
+	@TempDir
+	Path dir;
+
+	private static final int DOCS = 3000;
+
+	// every list adds weight * freq; weights, freqs and PageRank eighths keep all sums exact
+	@Test
+	void blockMaxWandMatchesBruteForce() throws Exception {
+		for (int seed = 0; seed < 6; seed++) {
+			Random random = new Random(seed);
+			try (SegmentedIndex title = new SegmentedIndex(dir.resolve("s" + seed), "title");
+					SegmentedIndex body = new SegmentedIndex(dir.resolve("s" + seed), "body")) {
+				// three terms over several flushed segments (so merged cursors) and the unflushed buffer
+				for (int flush = 0; flush < 3; flush++) {
+					for (int term = 0; term < 3; term++) {
+						int docs = (term + 1) * 400;
+						for (int n = 0; n < docs; n++) {
+							int doc = random.nextInt(DOCS);
+							int freq = random.nextInt(20) == 0 ? 8 + random.nextInt(8) : 1 + random.nextInt(3);
+							(random.nextInt(4) == 0 ? title : body).add(term, new Posting(doc, freq, new ArrayList<>()));
+						}
+					}
+					if (flush < 2) {
+						title.flush();
+						body.flush();
+					}
+				}
+				Map<Integer, Integer> phraseBoosts = new HashMap<>();
+				for (int n = 0; n < 40; n++) phraseBoosts.put(random.nextInt(DOCS), 3 * (1 + random.nextInt(4)));
+				double[] pageRank = new double[DOCS];
+				for (int doc = 0; doc < DOCS; doc++) pageRank[doc] = random.nextInt(9) / 8.0;
+
+				for (boolean usePageRank : new boolean[] {false, true}) {
+					for (int k : new int[] {1, 10, 50}) {
+						List<TopKEvaluator.Hit> expected = bruteForce(title, body, phraseBoosts, pageRank, usePageRank, k);
+						List<TopKEvaluator.Hit> actual = evaluate(title, body, phraseBoosts, pageRank, usePageRank, k);
+						String context = "seed " + seed + ", k " + k + ", pageRank " + usePageRank;
+						assertEquals(expected.size(), actual.size(), context);
+						for (int i = 0; i < expected.size(); i++) {
+							assertEquals(expected.get(i).docId, actual.get(i).docId, context + ", rank " + i);
+							assertEquals(expected.get(i).score, actual.get(i).score, 0, context + ", rank " + i);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static final Object PHRASE = new Object();
+
+	private static int weight(int term, boolean isTitle) {
+		return (term + 1) * (isTitle ? 3 : 1);
+	}
+
+	private static double blend(double content, double pageRank, boolean usePageRank) {
+		return usePageRank ? content * 0.7 + pageRank * 0.3 : content;
+	}
+
+	private static List<TopKEvaluator.Hit> evaluate(SegmentedIndex title, SegmentedIndex body,
+			Map<Integer, Integer> phraseBoosts, double[] pageRank, boolean usePageRank, int k) throws Exception {
+		List<TopKEvaluator.ScoredList> lists = new ArrayList<>();
+		for (int term = 0; term < 3; term++) {
+			int titleWeight = weight(term, true);
+			int bodyWeight = weight(term, false);
+			lists.add(new TopKEvaluator.ScoredList(title.cursor(term), f -> titleWeight * f, titleWeight));
+			lists.add(new TopKEvaluator.ScoredList(body.cursor(term), f -> bodyWeight * f, bodyWeight));
+		}
+		lists.add(new TopKEvaluator.ScoredList(new SearchService.PhraseBoostCursor(phraseBoosts), f -> f, PHRASE));
+
+		TopKEvaluator evaluator = new TopKEvaluator(k, usePageRank ? content -> content * 0.7 + 0.3 : content -> content);
+		return evaluator.evaluate(lists, (docId, matching) -> {
+			double content = 0;
+			for (TopKEvaluator.ScoredList list : matching) {
+				content += (list.key == PHRASE ? 1 : (Integer) list.key) * list.cursor.freq();
+			}
+			return blend(content, pageRank[docId], usePageRank);
+		});
+	}
+
+	// score every doc of every list, sort, cut
+	private static List<TopKEvaluator.Hit> bruteForce(SegmentedIndex title, SegmentedIndex body,
+			Map<Integer, Integer> phraseBoosts, double[] pageRank, boolean usePageRank, int k) {
+		Map<Integer, Double> content = new HashMap<>();
+		for (int term = 0; term < 3; term++) {
+			addAll(content, title.cursor(term), weight(term, true));
+			addAll(content, body.cursor(term), weight(term, false));
+		}
+		phraseBoosts.forEach((doc, boost) -> content.merge(doc, (double) boost, Double::sum));
+
+		List<TopKEvaluator.Hit> hits = new ArrayList<>();
+		for (int doc : new TreeSet<>(content.keySet())) {
+			hits.add(new TopKEvaluator.Hit(doc, blend(content.get(doc), pageRank[doc], usePageRank)));
+		}
+		hits.sort(TopKEvaluator.ORDER);
+		return hits.size() > k ? hits.subList(0, k) : hits;
+	}
+
+	private static void addAll(Map<Integer, Double> content, PostingCursor cursor, int weight) {
+		while (cursor.nextDoc() != PostingCursor.NO_MORE_DOCS) {
+			content.merge(cursor.docId(), (double) weight * cursor.freq(), Double::sum);
+		}
+	}
+
+}